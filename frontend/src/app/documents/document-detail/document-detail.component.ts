@@ -1,4 +1,4 @@
-import {Component, OnInit} from '@angular/core';
+import {Component, OnDestroy, OnInit} from '@angular/core';
 import {CommonModule} from '@angular/common';
 import {FormsModule} from '@angular/forms';
 import {ActivatedRoute, Router, RouterLink} from '@angular/router';
@@ -59,6 +59,10 @@ import {Document, DocumentService, FileVersion} from '../../services/document.se
 
         <h2 style="margin-bottom: 1rem;">Versões do Arquivo</h2>
 
+        <div *ngIf="previewUrl" style="margin-bottom: 1.5rem; text-align: center;">
+          <img [src]="previewUrl" alt="Prévia da versão mais recente" style="max-width: 100%; max-height: 600px; border: 1px solid #ddd;">
+        </div>
+
         <div *ngIf="loadingVersions" class="loading">
           <div class="spinner"></div>
         </div>
@@ -66,6 +70,7 @@ import {Document, DocumentService, FileVersion} from '../../services/document.se
         <table *ngIf="!loadingVersions && versions.length > 0" class="table">
           <thead>
             <tr>
+              <th>Prévia</th>
               <th>Nome do Arquivo</th>
               <th>Tipo</th>
               <th>Tamanho</th>
@@ -76,13 +81,16 @@ import {Document, DocumentService, FileVersion} from '../../services/document.se
           </thead>
           <tbody>
             <tr *ngFor="let version of versions">
+              <td>
+                <img *ngIf="thumbnailUrls[version.id]" [src]="thumbnailUrls[version.id]" alt="Miniatura" style="max-width: 64px; max-height: 64px;">
+              </td>
               <td>{{ version.fileName }}</td>
               <td>{{ version.contentType }}</td>
               <td>{{ (version.fileSize / 1024).toFixed(2) }} KB</td>
               <td>{{ version.uploadedByUsername }}</td>
               <td>{{ version.uploadedAt | date: 'dd/MM/yyyy HH:mm' }}</td>
               <td>
-                <button (click)="downloadVersion(version.id)" class="btn btn-secondary" style="padding: 0.5rem; margin-right: 0.5rem;">
+                <button (click)="downloadVersion(version)" class="btn btn-secondary" style="padding: 0.5rem; margin-right: 0.5rem;">
                   Download
                 </button>
                 <button (click)="deleteVersion(version.id)" class="btn btn-danger" style="padding: 0.5rem;">
@@ -101,7 +109,7 @@ import {Document, DocumentService, FileVersion} from '../../services/document.se
   `,
   styles: []
 })
-export class DocumentDetailComponent implements OnInit {
+export class DocumentDetailComponent implements OnInit, OnDestroy {
   document: Document | null = null;
   versions: FileVersion[] = [];
   isLoading: boolean = false;
@@ -110,6 +118,8 @@ export class DocumentDetailComponent implements OnInit {
   selectedFile: File | null = null;
   uploadSuccess: boolean = false;
   uploadError: string = '';
+  previewUrl: string | null = null;
+  thumbnailUrls: { [versionId: number]: string } = {};
 
   constructor(
     private route: ActivatedRoute,
@@ -125,6 +135,10 @@ export class DocumentDetailComponent implements OnInit {
     });
   }
 
+  ngOnDestroy(): void {
+    this.releaseRenditions();
+  }
+
   loadDocument(id: number): void {
     this.isLoading = true;
     this.documentService.getDocument(id).subscribe({
@@ -145,6 +159,7 @@ export class DocumentDetailComponent implements OnInit {
       next: (versions: any) => {
         this.versions = versions;
         this.loadingVersions = false;
+        this.loadRenditions();
       },
       error: (error: any) => {
         console.error('Erro ao carregar versões:', error);
@@ -153,6 +168,35 @@ export class DocumentDetailComponent implements OnInit {
     });
   }
 
+  /**
+   * Miniaturas e prévia vêm das rendições geradas no servidor, sem baixar os arquivos originais
+   * Versões ainda sem rendição (404) ficam sem imagem
+   */
+  loadRenditions(): void {
+    this.releaseRenditions();
+    this.versions.forEach((version, index) => {
+      if (index === 0) {
+        this.documentService.getRendition(version.id, 'preview').subscribe({
+          next: (blob: Blob) => this.previewUrl = window.URL.createObjectURL(blob),
+          error: () => this.previewUrl = null
+        });
+      }
+      this.documentService.getRendition(version.id, 'thumbnail').subscribe({
+        next: (blob: Blob) => this.thumbnailUrls[version.id] = window.URL.createObjectURL(blob),
+        error: () => {}
+      });
+    });
+  }
+
+  private releaseRenditions(): void {
+    if (this.previewUrl) {
+      window.URL.revokeObjectURL(this.previewUrl);
+      this.previewUrl = null;
+    }
+    Object.values(this.thumbnailUrls).forEach(url => window.URL.revokeObjectURL(url));
+    this.thumbnailUrls = {};
+  }
+
   onFileSelected(event: any): void {
     const files = event.target.files;
     if (files && files.length > 0) {
@@ -182,13 +226,13 @@ export class DocumentDetailComponent implements OnInit {
     });
   }
 
-  downloadVersion(versionId: number): void {
-    this.documentService.downloadFile(versionId).subscribe({
+  downloadVersion(version: FileVersion): void {
+    this.documentService.downloadFile(version.id).subscribe({
       next: (blob: any) => {
         const url = window.URL.createObjectURL(blob);
         const link = document.createElement('a');
         link.href = url;
-        link.download = 'file';
+        link.download = version.fileName;
         link.click();
         window.URL.revokeObjectURL(url);
       },
@@ -25,6 +25,7 @@ export interface FileVersion {
   fileName: string;
   contentType: string;
   fileSize: number;
+  checksum?: string;
   uploadedByUsername: string;
   uploadedAt: string;
 }
@@ -108,6 +109,15 @@ export class DocumentService {
     });
   }
 
+  /**
+   * Miniatura ou prévia gerada no servidor; 404 enquanto ainda não foi gerada
+   */
+  getRendition(versionId: number, kind: 'thumbnail' | 'preview'): Observable<Blob> {
+    return this.http.get(`${this.apiUrl}/versions/${versionId}/renditions/${kind}`, {
+      responseType: 'blob'
+    });
+  }
+
   deleteVersion(versionId: number): Observable<void> {
     return this.http.delete<void>(`${this.apiUrl}/versions/${versionId}`);
   }
@@ -1,5 +1,6 @@
 package br.com.gabrielvogado.desafiouds.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -33,6 +34,7 @@ public class AsyncConfig {
 
     /**
      * Thread pool dedicado para upload de arquivos
+     * A fila é limitada: com ela cheia a submissão é rejeitada e o upload assíncrono responde 503
      */
     @Bean(name = "uploadExecutor")
     public Executor uploadExecutor() {
@@ -46,5 +48,42 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
 
+    /**
+     * Thread pool da geração de rendições (miniaturas e prévias)
+     * Poucas threads, pois a renderização é pesada em CPU; com a fila cheia o job continua pendente no banco
+     */
+    @Bean(name = "renditionExecutor")
+    public Executor renditionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("rendition-task-");
+        executor.setAwaitTerminationSeconds(60);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Thread pool do hash de senhas (BCrypt), fora das threads do Tomcat
+     * Cada hash ocupa um núcleo inteiro, então o pool é pequeno e a fila limitada: com ela cheia o login é recusado
+     * na hora com 503 em vez de prender threads de requisição. 0 threads usa metade dos núcleos
+     */
+    @Bean(name = "passwordHashExecutor")
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${auth.password.hash-threads:0}") int threads,
+            @Value("${auth.password.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setAwaitTerminationSeconds(10);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
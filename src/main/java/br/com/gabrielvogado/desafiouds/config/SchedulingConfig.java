@@ -0,0 +1,46 @@
+package br.com.gabrielvogado.desafiouds.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Habilita as tarefas agendadas de manutenção (limpeza de sessões de upload, armazenamento)
+ * Dois schedulers: o padrão atende as tarefas curtas e frequentes (épocas de tokens, buckets do rate limit,
+ * despacho de rendições, expiração de sessões); as manutenções longas do armazenamento, que dormem para respeitar
+ * limites de I/O, rodam no maintenanceScheduler e não atrasam as demais
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceScheduler";
+
+    /**
+     * Scheduler padrão do @Scheduled (pelo nome taskScheduler)
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduling.pool-size:4}") int poolSize) {
+        return scheduler(poolSize, "scheduled-");
+    }
+
+    /**
+     * Camadas, reconciliação, compactação por delta e retenção; poucas threads, pois cada uma tem seu próprio limite
+     * de ritmo e não convém que todas disputem o disco ao mesmo tempo
+     */
+    @Bean(name = MAINTENANCE_SCHEDULER)
+    public ThreadPoolTaskScheduler maintenanceScheduler(@Value("${scheduling.maintenance.pool-size:2}") int poolSize) {
+        return scheduler(poolSize, "maintenance-");
+    }
+
+    private static ThreadPoolTaskScheduler scheduler(int poolSize, String threadNamePrefix) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+}
@@ -1,12 +1,24 @@
 package br.com.gabrielvogado.desafiouds.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.Duration;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
+    /**
+     * Tempo máximo de uma resposta assíncrona; as exportações em ZIP (StreamingResponseBody) são as únicas e
+     * precisam de mais que os 30s padrão do Tomcat, que cortariam o arquivo no meio com status 200
+     * O padrão transmite file.export.max-bytes (2 GiB) mesmo a pouco mais de 1 MB/s
+     */
+    @Value("${file.export.timeout:PT30M}")
+    private Duration exportTimeout;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/assets/**")
@@ -14,5 +26,9 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
         registry.addResourceHandler("/").addResourceLocations("classpath:/static/index.html");
     }
-}
 
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(exportTimeout.toMillis());
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.gabrielvogado.desafiouds.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+
+/**
+ * Respostas condicionais (304) decididas antes de montar o corpo
+ */
+final class ConditionalRequests {
+
+    /**
+     * Clientes podem guardar a resposta, mas precisam revalidá-la a cada uso
+     */
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    /**
+     * Conteúdo que nunca muda para a mesma URL; o cliente guarda sem revalidar
+     */
+    static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Confere If-None-Match/If-Modified-Since; quando true o 304 já está montado e o controller deve devolver null
+     */
+    static boolean checkNotModified(ServletWebRequest webRequest, String etag, long lastModified, String... vary) {
+        return checkNotModified(webRequest, etag, lastModified, REVALIDATE, vary);
+    }
+
+    static boolean checkNotModified(ServletWebRequest webRequest, String etag, long lastModified,
+                                    CacheControl cacheControl, String... vary) {
+        if (!webRequest.checkNotModified(etag, lastModified)) {
+            return false;
+        }
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            if (vary.length > 0) {
+                response.setHeader(HttpHeaders.VARY, String.join(", ", vary));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * true quando o Accept-Encoding aceita gzip (e não com q=0)
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase("gzip")) {
+                return tokens.length == 1 || !tokens[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
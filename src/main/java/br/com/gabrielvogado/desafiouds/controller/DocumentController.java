@@ -4,12 +4,14 @@ import br.com.gabrielvogado.desafiouds.dto.DocumentCreateRequest;
 import br.com.gabrielvogado.desafiouds.dto.DocumentDTO;
 import br.com.gabrielvogado.desafiouds.model.Document;
 import br.com.gabrielvogado.desafiouds.service.DocumentService;
+import br.com.gabrielvogado.desafiouds.service.EntityTags;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -20,9 +22,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/documents")
@@ -43,9 +49,16 @@ public class DocumentController {
     @GetMapping("/{id}")
     public ResponseEntity<DocumentDTO> getDocumentById(
             @PathVariable Long id,
+            ServletWebRequest webRequest,
             Authentication authentication) {
+        LocalDateTime lastModified = documentService.getLastModified(id, authentication.getName());
+        if (ConditionalRequests.checkNotModified(webRequest,
+                EntityTags.document(id, lastModified), EntityTags.toEpochMilli(lastModified))) {
+            return null;
+        }
+
         DocumentDTO response = documentService.getDocumentById(id, authentication.getName());
-        return ResponseEntity.ok(response);
+        return withValidators(ResponseEntity.ok(), response);
     }
 
     @GetMapping
@@ -68,13 +81,17 @@ public class DocumentController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Com If-Match, a atualização só é aplicada se o documento não mudou desde a leitura (senão 412)
+     */
     @PutMapping("/{id}")
     public ResponseEntity<DocumentDTO> updateDocument(
             @PathVariable Long id,
             @Valid @RequestBody DocumentCreateRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication) {
-        DocumentDTO response = documentService.updateDocument(id, request, authentication.getName());
-        return ResponseEntity.ok(response);
+        DocumentDTO response = documentService.updateDocument(id, request, authentication.getName(), ifMatch);
+        return withValidators(ResponseEntity.ok(), response);
     }
 
     @DeleteMapping("/{id}")
@@ -91,7 +108,15 @@ public class DocumentController {
             @RequestParam Document.DocumentStatus status,
             Authentication authentication) {
         DocumentDTO response = documentService.changeStatus(id, status, authentication.getName());
-        return ResponseEntity.ok(response);
+        return withValidators(ResponseEntity.ok(), response);
+    }
+
+    private static ResponseEntity<DocumentDTO> withValidators(ResponseEntity.BodyBuilder builder, DocumentDTO document) {
+        return builder
+                .eTag(EntityTags.document(document.getId(), document.getUpdatedAt()))
+                .lastModified(EntityTags.toEpochMilli(document.getUpdatedAt()))
+                .cacheControl(ConditionalRequests.REVALIDATE)
+                .body(document);
     }
 }
 
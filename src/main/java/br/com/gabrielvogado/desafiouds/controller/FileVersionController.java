@@ -1,11 +1,29 @@
 package br.com.gabrielvogado.desafiouds.controller;
 
+import br.com.gabrielvogado.desafiouds.dto.ExportEntry;
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
 import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.SignedUrlDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadByHashRequest;
+import br.com.gabrielvogado.desafiouds.dto.UploadStatusDTO;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.security.CustomUserDetails;
+import br.com.gabrielvogado.desafiouds.security.DownloadUrlSigner;
+import br.com.gabrielvogado.desafiouds.service.AsyncUploadService;
+import br.com.gabrielvogado.desafiouds.service.BatchUploadService;
+import br.com.gabrielvogado.desafiouds.service.EntityTags;
 import br.com.gabrielvogado.desafiouds.service.FileService;
+import br.com.gabrielvogado.desafiouds.service.RenditionService;
+import br.com.gabrielvogado.desafiouds.service.VersionExportService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -13,12 +31,18 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -29,6 +53,21 @@ public class FileVersionController {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private AsyncUploadService asyncUploadService;
+
+    @Autowired
+    private BatchUploadService batchUploadService;
+
+    @Autowired
+    private VersionExportService versionExportService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+
     @PostMapping("/{documentId}/versions/upload")
     public ResponseEntity<FileVersionDTO> uploadFile(
             @PathVariable Long documentId,
@@ -38,12 +77,74 @@ public class FileVersionController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Upload sem bytes: o cliente envia SHA-256 e tamanho e, se o servidor já tiver o conteúdo, a versão é criada
+     * Responde 404 quando não há correspondência; nesse caso o cliente faz o upload normal
+     */
+    @PostMapping("/{documentId}/versions/upload-by-hash")
+    public ResponseEntity<FileVersionDTO> uploadByHash(
+            @PathVariable Long documentId,
+            @Valid @RequestBody UploadByHashRequest request,
+            Authentication authentication) {
+        FileVersionDTO response = fileService.uploadByHash(documentId, request, authentication.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Upload assíncrono: responde 202 assim que o conteúdo é recebido, com o status em Location
+     * A versão é criada em segundo plano; o cliente acompanha por GET /documents/uploads/{uploadId}
+     */
+    @PostMapping(value = "/{documentId}/versions/upload", params = "async=true")
+    public ResponseEntity<UploadStatusDTO> uploadFileAsync(
+            @PathVariable Long documentId,
+            @RequestParam("file") MultipartFile file,
+            Authentication authentication) {
+        UploadStatusDTO response = asyncUploadService.submit(documentId, file, authentication.getName());
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/documents/uploads/{uploadId}")
+                .buildAndExpand(response.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(response);
+    }
+
+    /**
+     * Vários arquivos em uma requisição: documentIds com um id para todos os arquivos ou um id por arquivo
+     * Todas as versões são criadas ou nenhuma
+     */
+    @PostMapping("/versions/upload/batch")
+    public ResponseEntity<List<FileVersionDTO>> uploadFiles(
+            @RequestParam List<Long> documentIds,
+            @RequestParam("files") List<MultipartFile> files,
+            Authentication authentication) {
+        List<FileVersionDTO> response = batchUploadService.upload(documentIds, files, authentication.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadStatusDTO> getUploadStatus(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        UploadStatusDTO response = asyncUploadService.getStatus(uploadId, authentication.getName());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(response);
+    }
+
     @GetMapping("/{documentId}/versions")
     public ResponseEntity<List<FileVersionDTO>> getVersionHistory(
             @PathVariable Long documentId,
+            ServletWebRequest webRequest,
             Authentication authentication) {
+        String etag = fileService.getVersionHistoryTag(documentId, authentication.getName());
+        if (ConditionalRequests.checkNotModified(webRequest, etag, -1)) {
+            return null;
+        }
+
         List<FileVersionDTO> response = fileService.getVersionHistory(documentId, authentication.getName());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ConditionalRequests.REVALIDATE)
+                .body(response);
     }
 
     @GetMapping("/{documentId}/versions/latest")
@@ -51,23 +152,123 @@ public class FileVersionController {
             @PathVariable Long documentId,
             Authentication authentication) {
         FileVersionDTO response = fileService.getLatestVersion(documentId, authentication.getName());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .eTag(EntityTags.fileVersionMetadata(response.getId()))
+                .cacheControl(ConditionalRequests.REVALIDATE)
+                .body(response);
     }
 
+    /**
+     * Transmite o arquivo a partir do disco com memória constante
+     * Requisições com Range (inclusive múltiplos intervalos) recebem 206 Partial Content e requisições
+     * condicionais são respondidas com 304 a partir dos metadados, antes de abrir o arquivo
+     */
     @GetMapping("/versions/{versionId}/download")
-    public ResponseEntity<byte[]> downloadFile(
+    public ResponseEntity<Resource> downloadFile(
             @PathVariable Long versionId,
-            Authentication authentication) throws IOException {
-        byte[] fileContent = fileService.downloadFile(versionId, authentication.getName());
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            ServletWebRequest webRequest,
+            Authentication authentication) {
+        FileDownload metadata = fileService.prepareDownload(versionId, authentication.getName());
 
-        // Get file info to set proper filename in response
-        return ResponseEntity.ok()
+        // Cada representação tem sua ETag; o cliente revalida a que tiver guardado
+        String identityTag = EntityTags.fileVersion(versionId, metadata.getChecksum(), false);
+        String gzipTag = EntityTags.fileVersion(versionId, metadata.getChecksum(), true);
+        String cachedTag = ifNoneMatch != null && ifNoneMatch.contains(gzipTag) ? gzipTag : identityTag;
+        long lastModified = EntityTags.toEpochMilli(metadata.getUploadedAt());
+        if (ConditionalRequests.checkNotModified(webRequest, cachedTag, lastModified, HttpHeaders.ACCEPT_ENCODING)) {
+            return null;
+        }
+
+        // Intervalos são sempre servidos sobre o conteúdo original
+        boolean acceptGzip = range == null && ConditionalRequests.acceptsGzip(acceptEncoding);
+        FileDownload download = fileService.openDownload(metadata, acceptGzip, userId(authentication), role(authentication));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
-                        .filename("file")
+                        .filename(download.getFileName(), StandardCharsets.UTF_8)
                         .build()
                         .toString())
-                .header(HttpHeaders.CONTENT_TYPE, "application/octet-stream")
-                .body(fileContent);
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(download.getContentEncoding() != null ? gzipTag : identityTag)
+                .lastModified(lastModified)
+                .cacheControl(ConditionalRequests.REVALIDATE)
+                .contentType(MediaType.parseMediaType(download.getContentType()));
+        if (download.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, download.getContentEncoding());
+        }
+        return response.body(download.getResource());
+    }
+
+    /**
+     * Miniatura (thumbnail) ou prévia da primeira página (preview) gerada em segundo plano após o upload
+     * A rendição de uma versão nunca muda, então a resposta pode ficar no cache do cliente por um ano;
+     * enquanto não foi gerada a resposta é 404
+     */
+    @GetMapping("/versions/{versionId}/renditions/{kind}")
+    public ResponseEntity<Resource> getRendition(
+            @PathVariable Long versionId,
+            @PathVariable String kind,
+            ServletWebRequest webRequest,
+            Authentication authentication) {
+        fileService.prepareDownload(versionId, authentication.getName());
+        FileDownload metadata = renditionService.getRendition(versionId, kind);
+
+        String etag = EntityTags.rendition(metadata.getFileKey());
+        if (ConditionalRequests.checkNotModified(webRequest, etag, -1, ConditionalRequests.IMMUTABLE)) {
+            return null;
+        }
+
+        FileDownload rendition = renditionService.openRendition(metadata, userId(authentication), role(authentication));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                        .filename(rendition.getFileName(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .eTag(etag)
+                .cacheControl(ConditionalRequests.IMMUTABLE)
+                .contentType(MediaType.parseMediaType(rendition.getContentType()))
+                .body(rendition.getResource());
+    }
+
+    /**
+     * Todas as versões do documento em um ZIP transmitido enquanto é montado
+     */
+    @GetMapping("/{documentId}/versions/export")
+    public ResponseEntity<StreamingResponseBody> exportVersions(
+            @PathVariable Long documentId,
+            Authentication authentication) {
+        return zipResponse("document-" + documentId + "-versions.zip",
+                versionExportService.prepareExport(List.of(documentId), authentication.getName()), authentication);
+    }
+
+    /**
+     * Versões de vários documentos em um único ZIP, uma pasta por documento
+     */
+    @GetMapping("/versions/export")
+    public ResponseEntity<StreamingResponseBody> exportDocuments(
+            @RequestParam List<Long> documentIds,
+            Authentication authentication) {
+        return zipResponse("documents-versions.zip",
+                versionExportService.prepareExport(documentIds, authentication.getName()), authentication);
+    }
+
+    /**
+     * URL de download assinada e de curta duração, servida por GET /files/{versionId} sem consultar a versão no banco
+     */
+    @GetMapping("/versions/{versionId}/download-url")
+    public ResponseEntity<SignedUrlDTO> createDownloadUrl(
+            @PathVariable Long versionId,
+            Authentication authentication) {
+        FileDownload metadata = fileService.prepareDownload(versionId, authentication.getName());
+        SignedUrlDTO response = downloadUrlSigner.sign(metadata, userId(authentication), role(authentication),
+                ServletUriComponentsBuilder.fromCurrentContextPath());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(response);
     }
 
     @DeleteMapping("/versions/{versionId}")
@@ -77,5 +278,37 @@ public class FileVersionController {
         fileService.deleteFileVersion(versionId, authentication.getName());
         return ResponseEntity.noContent().build();
     }
-}
 
+    private ResponseEntity<StreamingResponseBody> zipResponse(String fileName, List<ExportEntry> entries,
+                                                              Authentication authentication) {
+        Long userId = userId(authentication);
+        User.UserRole role = role(authentication);
+        StreamingResponseBody body = out -> versionExportService.writeZip(entries, out, userId, role);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    /**
+     * Id do usuário autenticado, que identifica seu bucket de banda e vai nas URLs assinadas
+     */
+    private static Long userId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof CustomUserDetails details && details.getUser().getId() != null) {
+            return details.getUser().getId();
+        }
+        throw new UnauthorizedException("Authenticated user id is not available");
+    }
+
+    /**
+     * Papel do usuário autenticado, já carregado pelo JwtAuthenticationFilter
+     */
+    private static User.UserRole role(Authentication authentication) {
+        return authentication.getPrincipal() instanceof CustomUserDetails details
+                ? details.getUser().getRole()
+                : User.UserRole.USER;
+    }
+}
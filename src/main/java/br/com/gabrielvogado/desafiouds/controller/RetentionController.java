@@ -0,0 +1,92 @@
+package br.com.gabrielvogado.desafiouds.controller;
+
+import br.com.gabrielvogado.desafiouds.dto.RetentionPolicyDTO;
+import br.com.gabrielvogado.desafiouds.dto.RetentionPolicyRequest;
+import br.com.gabrielvogado.desafiouds.dto.RetentionReport;
+import br.com.gabrielvogado.desafiouds.service.RetentionService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/documents")
+@CrossOrigin(origins = {"http://localhost:4200", "http://localhost:3000", "http://localhost:5173"})
+public class RetentionController {
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @GetMapping("/{documentId}/retention")
+    public ResponseEntity<RetentionPolicyDTO> getDocumentPolicy(
+            @PathVariable Long documentId,
+            Authentication authentication) {
+        return ResponseEntity.ok(retentionService.getDocumentPolicy(documentId, authentication.getName()));
+    }
+
+    @PutMapping("/{documentId}/retention")
+    public ResponseEntity<RetentionPolicyDTO> setDocumentPolicy(
+            @PathVariable Long documentId,
+            @Valid @RequestBody RetentionPolicyRequest request,
+            Authentication authentication) {
+        return ResponseEntity.ok(retentionService.setDocumentPolicy(documentId, request, authentication.getName()));
+    }
+
+    @DeleteMapping("/{documentId}/retention")
+    public ResponseEntity<Void> deleteDocumentPolicy(
+            @PathVariable Long documentId,
+            Authentication authentication) {
+        retentionService.deleteDocumentPolicy(documentId, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Versões que a política em vigor (do documento ou global) removeria
+     */
+    @GetMapping("/{documentId}/retention/preview")
+    public ResponseEntity<RetentionReport> previewDocument(
+            @PathVariable Long documentId,
+            Authentication authentication) {
+        return ResponseEntity.ok(retentionService.previewDocument(documentId, authentication.getName()));
+    }
+
+    @GetMapping("/retention")
+    public ResponseEntity<RetentionPolicyDTO> getGlobalPolicy(Authentication authentication) {
+        return ResponseEntity.ok(retentionService.getGlobalPolicy(authentication.getName()));
+    }
+
+    @PutMapping("/retention")
+    public ResponseEntity<RetentionPolicyDTO> setGlobalPolicy(
+            @Valid @RequestBody RetentionPolicyRequest request,
+            Authentication authentication) {
+        return ResponseEntity.ok(retentionService.setGlobalPolicy(request, authentication.getName()));
+    }
+
+    @DeleteMapping("/retention")
+    public ResponseEntity<Void> deleteGlobalPolicy(Authentication authentication) {
+        retentionService.deleteGlobalPolicy(authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Relatório (dry-run) do que a próxima poda removeria em todos os documentos
+     */
+    @GetMapping("/retention/report")
+    public ResponseEntity<RetentionReport> report(Authentication authentication) {
+        return ResponseEntity.ok(retentionService.prune(true, authentication.getName()));
+    }
+
+    @PostMapping("/retention/prune")
+    public ResponseEntity<RetentionReport> prune(Authentication authentication) {
+        return ResponseEntity.ok(retentionService.prune(false, authentication.getName()));
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.gabrielvogado.desafiouds.controller;
+
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.security.DownloadUrlSigner;
+import br.com.gabrielvogado.desafiouds.service.EntityTags;
+import br.com.gabrielvogado.desafiouds.service.FileService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Downloads por URL pré-assinada (GET /documents/versions/{versionId}/download-url)
+ * A autorização é só a assinatura: sem JWT, sem consulta de usuário ou versão. A resposta pode ficar em caches
+ * compartilhados até a URL expirar, já que a própria URL é a credencial
+ */
+@RestController
+@RequestMapping("/files")
+public class SignedDownloadController {
+
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+
+    @Autowired
+    private FileService fileService;
+
+    @GetMapping("/{versionId}")
+    public ResponseEntity<Resource> download(
+            @PathVariable Long versionId,
+            @RequestParam String key,
+            @RequestParam String name,
+            @RequestParam String type,
+            @RequestParam long size,
+            @RequestParam Long sub,
+            @RequestParam User.UserRole tier,
+            @RequestParam long expires,
+            @RequestParam String signature,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            ServletWebRequest webRequest) {
+        FileDownload metadata = downloadUrlSigner.verify(versionId, key, name, type, size, sub, tier, expires, signature);
+        CacheControl cacheControl = CacheControl
+                .maxAge(Duration.ofSeconds(Math.max(0, expires - Instant.now().getEpochSecond())))
+                .cachePublic();
+
+        String identityTag = EntityTags.fileVersion(versionId, key, false);
+        String gzipTag = EntityTags.fileVersion(versionId, key, true);
+        String cachedTag = ifNoneMatch != null && ifNoneMatch.contains(gzipTag) ? gzipTag : identityTag;
+        if (ConditionalRequests.checkNotModified(webRequest, cachedTag, -1, cacheControl, HttpHeaders.ACCEPT_ENCODING)) {
+            return null;
+        }
+
+        boolean acceptGzip = range == null && ConditionalRequests.acceptsGzip(acceptEncoding);
+        FileDownload download = fileService.openDownload(metadata, acceptGzip, sub, tier);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(download.getFileName(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(download.getContentEncoding() != null ? gzipTag : identityTag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(download.getContentType()));
+        if (download.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, download.getContentEncoding());
+        }
+        return response.body(download.getResource());
+    }
+}
@@ -0,0 +1,82 @@
+package br.com.gabrielvogado.desafiouds.controller;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionCreateRequest;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionDTO;
+import br.com.gabrielvogado.desafiouds.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/documents")
+@CrossOrigin(origins = {"http://localhost:4200", "http://localhost:3000", "http://localhost:5173"})
+public class UploadSessionController {
+
+    public static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-Sha256";
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @PostMapping("/{documentId}/upload-sessions")
+    public ResponseEntity<UploadSessionDTO> createSession(
+            @PathVariable Long documentId,
+            @Valid @RequestBody UploadSessionCreateRequest request,
+            Authentication authentication) {
+        UploadSessionDTO response = uploadSessionService.createSession(documentId, request, authentication.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionDTO> getSession(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        UploadSessionDTO response = uploadSessionService.getSession(sessionId, authentication.getName());
+        return ResponseEntity.ok(response);
+    }
+
+    @PutMapping("/upload-sessions/{sessionId}/chunks/{index}")
+    public ResponseEntity<Void> putChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            @RequestHeader(CHUNK_CHECKSUM_HEADER) String checksum,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+        try (InputStream body = request.getInputStream()) {
+            uploadSessionService.putChunk(sessionId, index, body, checksum, authentication.getName());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/upload-sessions/{sessionId}/commit")
+    public ResponseEntity<FileVersionDTO> commit(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        FileVersionDTO response = uploadSessionService.commit(sessionId, authentication.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<Void> abort(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        uploadSessionService.abort(sessionId, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.gabrielvogado.desafiouds.controller;
+
+import br.com.gabrielvogado.desafiouds.service.AuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/users")
+@CrossOrigin(origins = {"http://localhost:4200", "http://localhost:3000", "http://localhost:5173"})
+public class UserController {
+
+    @Autowired
+    private AuthService authService;
+
+    /**
+     * Encerra todas as sessões do usuário: os tokens emitidos até aqui deixam de ser aceitos
+     */
+    @PostMapping("/{userId}/tokens/revoke")
+    public ResponseEntity<Void> revokeTokens(
+            @PathVariable Long userId,
+            Authentication authentication) {
+        authService.revokeTokens(userId, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
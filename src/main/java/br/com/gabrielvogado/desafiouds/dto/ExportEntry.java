@@ -0,0 +1,25 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Versão a incluir em uma exportação ZIP, já autorizada; o conteúdo só é aberto durante a escrita do arquivo
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class ExportEntry {
+
+    private final Long documentId;
+    private final String documentTitle;
+    private final int versionNumber;
+    private final Long versionId;
+    private final String fileKey;
+    private final String fileName;
+    private final String contentType;
+    private final LocalDateTime uploadedAt;
+}
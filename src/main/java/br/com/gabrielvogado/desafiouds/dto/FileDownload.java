@@ -0,0 +1,33 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.core.io.Resource;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conteúdo de uma versão pronto para ser transmitido, sem carregar o arquivo em memória
+ * Antes de openDownload carrega apenas os metadados, suficientes para responder requisições condicionais
+ */
+@Getter
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class FileDownload {
+
+    private final Long versionId;
+    private final String fileKey;
+    private final Resource resource;
+    private final String fileName;
+    private final String contentType;
+    private final long contentLength;
+
+    /**
+     * "gzip" quando o recurso contém os bytes comprimidos guardados, null para o conteúdo original
+     */
+    private final String contentEncoding;
+
+    private final String checksum;
+    private final LocalDateTime uploadedAt;
+}
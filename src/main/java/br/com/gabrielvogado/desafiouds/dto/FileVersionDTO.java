@@ -18,6 +18,7 @@ public class FileVersionDTO {
     private String fileName;
     private String contentType;
     private Long fileSize;
+    private String checksum;
     private String uploadedByUsername;
     private LocalDateTime uploadedAt;
 }
@@ -0,0 +1,24 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Política de retenção; documentId é null na política global
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetentionPolicyDTO {
+
+    private Long documentId;
+    private Integer keepLast;
+    private Integer keepDailyDays;
+    private Integer keepMonthlyMonths;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,31 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetentionPolicyRequest {
+
+    @Min(value = 1, message = "Keep last must be at least 1")
+    private Integer keepLast;
+
+    @Min(value = 1, message = "Keep daily days must be at least 1")
+    private Integer keepDailyDays;
+
+    @Min(value = 1, message = "Keep monthly months must be at least 1")
+    private Integer keepMonthlyMonths;
+
+    @JsonIgnore
+    @AssertTrue(message = "At least one retention rule is required")
+    public boolean isAnyRuleSet() {
+        return keepLast != null || keepDailyDays != null || keepMonthlyMonths != null;
+    }
+}
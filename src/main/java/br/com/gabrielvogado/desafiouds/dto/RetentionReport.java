@@ -0,0 +1,39 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de uma execução das políticas de retenção
+ * Em dry-run nada é removido e versionsDeleted fica zerado; documents lista no máximo file.retention.report-max-documents
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetentionReport {
+
+    private boolean dryRun;
+    private int documentsScanned;
+    private int versionsExpired;
+    private int versionsDeleted;
+    private long bytesExpired;
+
+    @Builder.Default
+    private List<DocumentEntry> documents = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DocumentEntry {
+        private Long documentId;
+        private List<Long> expiredVersionIds;
+        private long bytes;
+    }
+}
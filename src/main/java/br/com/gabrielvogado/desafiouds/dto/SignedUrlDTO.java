@@ -0,0 +1,22 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * URL de download assinada, válida até expiresAt sem token de autenticação
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SignedUrlDTO {
+
+    private Long versionId;
+    private String url;
+    private Instant expiresAt;
+}
@@ -0,0 +1,28 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadByHashRequest {
+
+    @NotBlank(message = "SHA-256 is required")
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "SHA-256 must have 64 hexadecimal digits")
+    private String sha256;
+
+    @NotNull(message = "Size is required")
+    @Positive(message = "Size must be positive")
+    private Long size;
+
+    @NotBlank(message = "File name is required")
+    private String fileName;
+}
@@ -0,0 +1,37 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionCreateRequest {
+
+    /**
+     * Teto absoluto de uma parte; file.upload-session.max-chunk-size pode reduzi-lo
+     */
+    public static final int MAX_CHUNK_SIZE = 67108864;
+
+    @NotBlank(message = "File name is required")
+    private String fileName;
+
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+
+    @NotNull(message = "Total size is required")
+    @Positive(message = "Total size must be positive")
+    private Long totalSize;
+
+    @Min(value = 65536, message = "Chunk size must be at least 64 KB")
+    @Max(value = MAX_CHUNK_SIZE, message = "Chunk size must be at most 64 MB")
+    private Integer chunkSize;
+}
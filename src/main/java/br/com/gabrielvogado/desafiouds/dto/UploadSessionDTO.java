@@ -0,0 +1,28 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import br.com.gabrielvogado.desafiouds.model.UploadSession;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionDTO {
+
+    private String id;
+    private Long documentId;
+    private String fileName;
+    private String contentType;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private List<Integer> receivedChunks;
+    private UploadSession.State state;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,35 @@
+package br.com.gabrielvogado.desafiouds.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Situação de um upload assíncrono; version é preenchida quando o processamento termina
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class UploadStatusDTO {
+
+    private String id;
+    private Long documentId;
+    private String fileName;
+    private State state;
+    private FileVersionDTO version;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public enum State {
+        PENDING, PROCESSING, COMPLETED, FAILED
+    }
+
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+}
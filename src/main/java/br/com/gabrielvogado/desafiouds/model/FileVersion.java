@@ -9,6 +9,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -25,8 +26,12 @@ import java.time.LocalDateTime;
 @Builder
 public class FileVersion {
 
+    /**
+     * Ids reservados em blocos da sequence, para que várias versões sejam inseridas em um único lote JDBC
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_versions_id_gen")
+    @SequenceGenerator(name = "file_versions_id_gen", sequenceName = "file_versions_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -45,6 +50,9 @@ public class FileVersion {
     @Column(nullable = false)
     private Long fileSize;
 
+    @Column(length = 64)
+    private String checksum;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "uploaded_by", nullable = false)
     private User uploadedBy;
@@ -52,6 +60,18 @@ public class FileVersion {
     @Column(name = "uploaded_at", nullable = false, updatable = false)
     private LocalDateTime uploadedAt;
 
+    /**
+     * Último download, gravado em lotes; define quando o conteúdo pode ir para a camada fria
+     */
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+
+    /**
+     * Sessão de upload em partes que criou a versão; um commit repetido encontra a versão por ela
+     */
+    @Column(name = "upload_session_id", length = 36, unique = true)
+    private String uploadSessionId;
+
     @PrePersist
     protected void onCreate() {
         uploadedAt = LocalDateTime.now();
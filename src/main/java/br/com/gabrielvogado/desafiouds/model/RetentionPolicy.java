@@ -0,0 +1,72 @@
+package br.com.gabrielvogado.desafiouds.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Regras de retenção de versões de um documento, ou de todos quando documentId é null (política global)
+ * Uma versão é mantida se qualquer regra a mantiver; a versão mais recente nunca é removida.
+ * A política do documento substitui a global por inteiro.
+ */
+@Entity
+@Table(name = "retention_policies")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetentionPolicy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", unique = true)
+    private Long documentId;
+
+    /**
+     * Quantidade de versões mais recentes mantidas
+     */
+    @Column(name = "keep_last")
+    private Integer keepLast;
+
+    /**
+     * Dias, contando hoje, em que a versão mais recente de cada dia é mantida
+     */
+    @Column(name = "keep_daily_days")
+    private Integer keepDailyDays;
+
+    /**
+     * Meses, contando o atual, em que a versão mais recente de cada mês é mantida
+     */
+    @Column(name = "keep_monthly_months")
+    private Integer keepMonthlyMonths;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.gabrielvogado.desafiouds.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conteúdo armazenado uma única vez, identificado pelo SHA-256
+ * Cada FileVersion que aponta para o blob conta uma referência, assim como cada blob guardado como delta sobre ele
+ */
+@Entity
+@Table(name = "blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    @Builder.Default
+    private Encoding encoding = Encoding.FULL;
+
+    /**
+     * Blob a partir do qual o delta é aplicado (apenas para encoding DELTA)
+     */
+    @Column(name = "base_hash", length = 64)
+    private String baseHash;
+
+    @Column(name = "stored_size")
+    private Long storedSize;
+
+    @Column(name = "delta_checked_at")
+    private LocalDateTime deltaCheckedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    @Builder.Default
+    private Tier tier = Tier.HOT;
+
+    /**
+     * Posição da entrada no pacote da camada fria (apenas para tier COLD)
+     */
+    @Column(name = "pack_id")
+    private Integer packId;
+
+    @Column(name = "pack_offset")
+    private Long packOffset;
+
+    @Column(name = "pack_length")
+    private Long packLength;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public enum Encoding {
+        FULL, GZIP, DELTA
+    }
+
+    public enum Tier {
+        HOT, COLD
+    }
+}
@@ -0,0 +1,97 @@
+package br.com.gabrielvogado.desafiouds.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Upload em partes de um arquivo grande
+ * As partes recebidas ficam em disco; a sessão guarda apenas o que é preciso para validá-las e montar a versão
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_id", nullable = false)
+    private Document document;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "created_by", nullable = false)
+    private User createdBy;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long totalSize;
+
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Column(nullable = false)
+    private Integer chunkCount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private State state = State.OPEN;
+
+    /**
+     * Início do commit em andamento; um commit interrompido libera a sessão depois de file.upload-session.commit-timeout
+     */
+    @Column(name = "commit_started_at")
+    private LocalDateTime commitStartedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (state == null) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Tamanho esperado da parte: todas têm chunkSize, exceto a última, que leva o restante
+     */
+    public long expectedChunkLength(int index) {
+        if (index < chunkCount - 1) {
+            return chunkSize;
+        }
+        return totalSize - (long) chunkSize * (chunkCount - 1);
+    }
+
+    public enum State {
+        OPEN, COMMITTING, COMMITTED
+    }
+}
@@ -42,6 +42,13 @@ public class User {
     @Column(nullable = false)
     private UserRole role;
 
+    /**
+     * Época dos tokens do usuário: tokens emitidos com uma época menor deixam de valer
+     */
+    @Column(name = "token_epoch", nullable = false)
+    @Builder.Default
+    private Integer tokenEpoch = 0;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -50,6 +57,9 @@ public class User {
 
     @PrePersist
     protected void onCreate() {
+        if (tokenEpoch == null) {
+            tokenEpoch = 0;
+        }
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
     }
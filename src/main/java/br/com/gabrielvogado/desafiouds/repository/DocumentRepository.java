@@ -2,13 +2,18 @@ package br.com.gabrielvogado.desafiouds.repository;
 
 import br.com.gabrielvogado.desafiouds.model.Document;
 import br.com.gabrielvogado.desafiouds.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     Page<Document> findByOwner(User owner, Pageable pageable);
@@ -21,5 +26,22 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 
     @Query("SELECT d FROM Document d WHERE d.owner = :owner AND LOWER(d.title) LIKE LOWER(CONCAT('%', :title, '%')) AND d.status = :status")
     Page<Document> findByOwnerAndTitleContainingAndStatus(@Param("owner") User owner, @Param("title") String title, @Param("status") Document.DocumentStatus status, Pageable pageable);
-}
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id = :id")
+    Optional<Document> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Apenas o necessário para autorizar e responder a uma requisição condicional
+     */
+    @Query("SELECT d.id AS id, d.owner.id AS ownerId, d.updatedAt AS updatedAt FROM Document d WHERE d.id = :id")
+    Optional<DocumentStamp> findStampById(@Param("id") Long id);
+
+    interface DocumentStamp {
+        Long getId();
+
+        Long getOwnerId();
+
+        LocalDateTime getUpdatedAt();
+    }
+}
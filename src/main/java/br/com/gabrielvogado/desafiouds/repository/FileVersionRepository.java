@@ -1,11 +1,16 @@
 package br.com.gabrielvogado.desafiouds.repository;
 
 import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +19,80 @@ public interface FileVersionRepository extends JpaRepository<FileVersion, Long>
     @Query("SELECT fv FROM FileVersion fv WHERE fv.document.id = :documentId ORDER BY fv.uploadedAt DESC")
     List<FileVersion> findByDocumentIdOrderByUploadedAtDesc(@Param("documentId") Long documentId);
 
+    /**
+     * Trava a linha da versão, serializando a exclusão com a gravação das suas rendições
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT fv FROM FileVersion fv WHERE fv.id = :id")
+    Optional<FileVersion> findForUpdateById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT fv FROM FileVersion fv WHERE fv.id IN :ids")
+    List<FileVersion> findForUpdateByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Dados das versões necessários para aplicar as políticas de retenção, sem carregar as entidades
+     */
+    @Query("SELECT fv.id AS id, fv.document.id AS documentId, fv.fileSize AS fileSize, fv.uploadedAt AS uploadedAt " +
+            "FROM FileVersion fv WHERE fv.document.id IN :documentIds ORDER BY fv.uploadedAt DESC, fv.id DESC")
+    List<VersionStamp> findStampsByDocumentIdIn(@Param("documentIds") Collection<Long> documentIds);
+
     @Query(value = "SELECT * FROM file_versions fv WHERE fv.document_id = :documentId ORDER BY fv.uploaded_at DESC LIMIT 1", nativeQuery = true)
     Optional<FileVersion> findLatestByDocumentId(@Param("documentId") Long documentId);
-}
 
+    @Query("SELECT fv FROM FileVersion fv JOIN FETCH fv.document WHERE fv.document.id IN :documentIds " +
+            "ORDER BY fv.document.id, fv.uploadedAt, fv.id")
+    List<FileVersion> findByDocumentIdsOrderByUploadedAt(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Trava todas as versões do documento antes de apagá-lo, pelo mesmo motivo de findForUpdateById
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT fv FROM FileVersion fv WHERE fv.document.id = :documentId")
+    List<FileVersion> findForUpdateByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT COUNT(fv) AS count, MAX(fv.id) AS latestId FROM FileVersion fv WHERE fv.document.id = :documentId")
+    VersionStats findStatsByDocumentId(@Param("documentId") Long documentId);
+
+    boolean existsByFileKey(String fileKey);
+
+    @Query("SELECT fv FROM FileVersion fv JOIN FETCH fv.uploadedBy WHERE fv.uploadSessionId = :sessionId")
+    Optional<FileVersion> findByUploadSessionId(@Param("sessionId") String sessionId);
+
+    /**
+     * Versão com o conteúdo informado, para criar outra versão sobre o mesmo blob sem receber os bytes
+     */
+    Optional<FileVersion> findFirstByFileKeyAndFileSizeOrderByIdDesc(String fileKey, Long fileSize);
+
+    Optional<FileVersion> findFirstByFileKeyAndFileSizeAndDocumentOwnerIdOrderByIdDesc(String fileKey, Long fileSize, Long ownerId);
+
+    @Query("SELECT DISTINCT fv.fileKey FROM FileVersion fv WHERE fv.fileKey IN :fileKeys")
+    List<String> findExistingFileKeys(@Param("fileKeys") Collection<String> fileKeys);
+
+    /**
+     * Chaves referenciadas em ordem, a partir de after, para percorrer a tabela em lotes pelo índice de file_key
+     */
+    @Query(value = "SELECT DISTINCT fv.file_key FROM file_versions fv WHERE fv.file_key > :after " +
+            "ORDER BY fv.file_key LIMIT :limit", nativeQuery = true)
+    List<String> findFileKeysAfter(@Param("after") String after, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE FileVersion fv SET fv.lastAccessedAt = :accessedAt WHERE fv.id IN :ids")
+    int updateLastAccessedAt(@Param("ids") Collection<Long> ids, @Param("accessedAt") LocalDateTime accessedAt);
+
+    interface VersionStamp {
+        Long getId();
+
+        Long getDocumentId();
+
+        Long getFileSize();
+
+        LocalDateTime getUploadedAt();
+    }
+
+    interface VersionStats {
+        long getCount();
+
+        Long getLatestId();
+    }
+}
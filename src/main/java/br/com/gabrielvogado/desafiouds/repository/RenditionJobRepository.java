@@ -0,0 +1,44 @@
+package br.com.gabrielvogado.desafiouds.repository;
+
+import br.com.gabrielvogado.desafiouds.model.RenditionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RenditionJobRepository extends JpaRepository<RenditionJob, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO rendition_jobs (file_version_id, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (:versionId, 'PENDING', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (file_version_id) DO NOTHING", nativeQuery = true)
+    int enqueue(@Param("versionId") Long versionId);
+
+    @Query(value = "SELECT j.file_version_id FROM rendition_jobs j WHERE j.status = 'PENDING' " +
+            "AND j.next_attempt_at <= :now ORDER BY j.next_attempt_at LIMIT :limit", nativeQuery = true)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Marca o job como em processamento; 0 quando outro worker já o pegou
+     */
+    @Modifying
+    @Query("UPDATE RenditionJob j SET j.status = br.com.gabrielvogado.desafiouds.model.RenditionJob.Status.PROCESSING, " +
+            "j.startedAt = :now, j.attempts = j.attempts + 1 " +
+            "WHERE j.fileVersionId = :versionId " +
+            "AND j.status = br.com.gabrielvogado.desafiouds.model.RenditionJob.Status.PENDING")
+    int claim(@Param("versionId") Long versionId, @Param("now") LocalDateTime now);
+
+    /**
+     * Devolve à fila jobs presos em processamento, de workers que pararam no meio
+     */
+    @Modifying
+    @Query("UPDATE RenditionJob j SET j.status = br.com.gabrielvogado.desafiouds.model.RenditionJob.Status.PENDING " +
+            "WHERE j.status = br.com.gabrielvogado.desafiouds.model.RenditionJob.Status.PROCESSING " +
+            "AND j.startedAt < :startedBefore")
+    int releaseStale(@Param("startedBefore") LocalDateTime startedBefore);
+}
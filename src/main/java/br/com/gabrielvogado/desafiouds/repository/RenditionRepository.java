@@ -0,0 +1,16 @@
+package br.com.gabrielvogado.desafiouds.repository;
+
+import br.com.gabrielvogado.desafiouds.model.Rendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RenditionRepository extends JpaRepository<Rendition, Long> {
+    Optional<Rendition> findByFileVersionIdAndKind(Long fileVersionId, Rendition.Kind kind);
+
+    List<Rendition> findByFileVersionIdIn(Collection<Long> fileVersionIds);
+}
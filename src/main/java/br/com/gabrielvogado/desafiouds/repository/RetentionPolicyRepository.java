@@ -0,0 +1,33 @@
+package br.com.gabrielvogado.desafiouds.repository;
+
+import br.com.gabrielvogado.desafiouds.model.RetentionPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RetentionPolicyRepository extends JpaRepository<RetentionPolicy, Long> {
+
+    Optional<RetentionPolicy> findByDocumentId(Long documentId);
+
+    List<RetentionPolicy> findByDocumentIdIn(Collection<Long> documentIds);
+
+    @Query("SELECT p FROM RetentionPolicy p WHERE p.documentId IS NULL")
+    Optional<RetentionPolicy> findGlobal();
+
+    /**
+     * Documentos com mais de uma versão sujeitos a alguma política, em ordem de id a partir de after
+     * Sem política global, apenas os que têm política própria
+     */
+    @Query(value = "SELECT d.id FROM documents d WHERE d.id > :after " +
+            "AND (:hasGlobal OR EXISTS (SELECT 1 FROM retention_policies p WHERE p.document_id = d.id)) " +
+            "AND (SELECT COUNT(*) FROM file_versions v WHERE v.document_id = d.id) > 1 " +
+            "ORDER BY d.id LIMIT :limit", nativeQuery = true)
+    List<Long> findDocumentIdsToPrune(@Param("hasGlobal") boolean hasGlobal, @Param("after") long after,
+                                      @Param("limit") int limit);
+}
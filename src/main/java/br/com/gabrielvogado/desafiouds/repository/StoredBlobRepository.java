@@ -0,0 +1,163 @@
+package br.com.gabrielvogado.desafiouds.repository;
+
+import br.com.gabrielvogado.desafiouds.model.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO blobs (hash, size, ref_count, encoding, stored_size, created_at) " +
+            "VALUES (:hash, :size, 1, :encoding, :storedSize, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (hash) DO UPDATE SET ref_count = blobs.ref_count + 1", nativeQuery = true)
+    int acquire(@Param("hash") String hash, @Param("size") long size,
+                @Param("encoding") String encoding, @Param("storedSize") long storedSize);
+
+    @Query("SELECT b.encoding FROM StoredBlob b WHERE b.hash = :hash")
+    StoredBlob.Encoding findEncoding(@Param("hash") String hash);
+
+    @Query("SELECT b.size FROM StoredBlob b WHERE b.hash = :hash")
+    Long findSize(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.hash = :hash")
+    int decrementRefCount(@Param("hash") String hash);
+
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.hash = :hash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1 WHERE b.hash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    @Query("SELECT b.baseHash FROM StoredBlob b WHERE b.hash = :hash")
+    String findBaseHash(@Param("hash") String hash);
+
+    /**
+     * Blobs completos de versões que já têm sucessora com conteúdo diferente, mais antigos primeiro
+     * Só entram blobs usados por uma única versão, para que a versão mais recente de outro documento nunca vire delta
+     */
+    @Query(value = "SELECT b.hash AS hash, n.file_key AS baseHash FROM blobs b " +
+            "JOIN file_versions v ON v.file_key = b.hash " +
+            "JOIN LATERAL (SELECT s.file_key FROM file_versions s WHERE s.document_id = v.document_id " +
+            "AND s.uploaded_at > v.uploaded_at ORDER BY s.uploaded_at, s.id LIMIT 1) n ON TRUE " +
+            "JOIN blobs base ON base.hash = n.file_key " +
+            "WHERE b.encoding <> 'DELTA' AND b.tier = 'HOT' AND b.delta_checked_at IS NULL AND n.file_key <> b.hash " +
+            "AND (SELECT COUNT(*) FROM file_versions o WHERE o.file_key = b.hash) = 1 " +
+            "ORDER BY v.uploaded_at LIMIT :limit", nativeQuery = true)
+    List<DeltaLink> findDeltaCandidates(@Param("limit") int limit);
+
+    @Query("SELECT b.hash AS hash, b.baseHash AS baseHash FROM StoredBlob b " +
+            "WHERE b.encoding = br.com.gabrielvogado.desafiouds.model.StoredBlob.Encoding.DELTA")
+    List<DeltaLink> findDeltaLinks();
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.deltaCheckedAt = CURRENT_TIMESTAMP WHERE b.hash = :hash")
+    int markDeltaChecked(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.encoding = br.com.gabrielvogado.desafiouds.model.StoredBlob.Encoding.DELTA, " +
+            "b.baseHash = :baseHash, b.storedSize = :storedSize, b.deltaCheckedAt = CURRENT_TIMESTAMP " +
+            "WHERE b.hash = :hash AND b.refCount > 0 " +
+            "AND b.encoding <> br.com.gabrielvogado.desafiouds.model.StoredBlob.Encoding.DELTA " +
+            "AND b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.HOT")
+    int markDelta(@Param("hash") String hash, @Param("baseHash") String baseHash, @Param("storedSize") long storedSize);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.baseHash = :baseHash, b.storedSize = :storedSize " +
+            "WHERE b.hash = :hash AND b.refCount > 0 AND b.baseHash = :expectedBase")
+    int rebaseDelta(@Param("hash") String hash, @Param("expectedBase") String expectedBase,
+                    @Param("baseHash") String baseHash, @Param("storedSize") long storedSize);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.encoding = br.com.gabrielvogado.desafiouds.model.StoredBlob.Encoding.FULL, " +
+            "b.baseHash = NULL, b.storedSize = b.size WHERE b.hash = :hash AND b.baseHash = :expectedBase")
+    int markFull(@Param("hash") String hash, @Param("expectedBase") String expectedBase);
+
+    @Query("SELECT b.hash AS hash, b.encoding AS encoding, b.baseHash AS baseHash, b.tier AS tier FROM StoredBlob b " +
+            "WHERE b.hash IN :hashes AND b.refCount > 0")
+    List<BlobLayout> findLayouts(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT COUNT(b) > 0 FROM StoredBlob b WHERE b.hash = :hash " +
+            "AND b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.COLD")
+    boolean isCold(@Param("hash") String hash);
+
+    @Query("SELECT b.packId AS packId, b.packOffset AS offset, b.packLength AS length FROM StoredBlob b " +
+            "WHERE b.hash = :hash AND b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.COLD")
+    ColdLocation findColdLocation(@Param("hash") String hash);
+
+    /**
+     * Blobs quentes cujas versões não são acessadas desde cutoff, mais antigos primeiro, a partir do cursor
+     * Deltas ficam de fora: dependem da base e já são pequenos
+     */
+    @Query(value = "SELECT b.hash AS hash, COALESCE(b.stored_size, b.size) AS storedSize, b.created_at AS createdAt " +
+            "FROM blobs b WHERE b.tier = 'HOT' AND b.encoding <> 'DELTA' AND b.ref_count > 0 " +
+            "AND (b.created_at, b.hash) > (:afterCreatedAt, :afterHash) " +
+            "AND EXISTS (SELECT 1 FROM file_versions v WHERE v.file_key = b.hash) " +
+            "AND NOT EXISTS (SELECT 1 FROM file_versions v WHERE v.file_key = b.hash " +
+            "AND COALESCE(v.last_accessed_at, v.uploaded_at) >= :cutoff) " +
+            "ORDER BY b.created_at, b.hash LIMIT :limit", nativeQuery = true)
+    List<ColdCandidate> findColdCandidates(@Param("cutoff") LocalDateTime cutoff,
+                                           @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                           @Param("afterHash") String afterHash, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.COLD, " +
+            "b.packId = :packId, b.packOffset = :offset, b.packLength = :length " +
+            "WHERE b.hash = :hash AND b.refCount > 0 " +
+            "AND b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.HOT " +
+            "AND b.encoding <> br.com.gabrielvogado.desafiouds.model.StoredBlob.Encoding.DELTA")
+    int markCold(@Param("hash") String hash, @Param("packId") int packId,
+                 @Param("offset") long offset, @Param("length") long length);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.HOT, " +
+            "b.packId = NULL, b.packOffset = NULL, b.packLength = NULL " +
+            "WHERE b.hash = :hash AND b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.COLD")
+    int markHot(@Param("hash") String hash);
+
+    @Query("SELECT DISTINCT b.packId FROM StoredBlob b " +
+            "WHERE b.tier = br.com.gabrielvogado.desafiouds.model.StoredBlob.Tier.COLD")
+    List<Integer> findLivePackIds();
+
+    interface BlobLayout {
+        String getHash();
+
+        StoredBlob.Encoding getEncoding();
+
+        String getBaseHash();
+
+        StoredBlob.Tier getTier();
+    }
+
+    interface ColdLocation {
+        int getPackId();
+
+        long getOffset();
+
+        long getLength();
+    }
+
+    interface ColdCandidate {
+        String getHash();
+
+        long getStoredSize();
+
+        LocalDateTime getCreatedAt();
+    }
+
+    interface DeltaLink {
+        String getHash();
+
+        String getBaseHash();
+    }
+}
@@ -0,0 +1,28 @@
+package br.com.gabrielvogado.desafiouds.repository;
+
+import br.com.gabrielvogado.desafiouds.model.UploadSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    @Query("SELECT s FROM UploadSession s JOIN FETCH s.createdBy WHERE s.id = :id")
+    Optional<UploadSession> findWithCreatorById(@Param("id") String id);
+
+    /**
+     * Trava a sessão: o commit a mantém travada enquanto monta a versão, e cada parte só entra sob a mesma trava
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSession s WHERE s.id = :id")
+    Optional<UploadSession> findByIdForUpdate(@Param("id") String id);
+
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime dateTime);
+}
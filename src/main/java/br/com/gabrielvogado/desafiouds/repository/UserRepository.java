@@ -2,8 +2,12 @@ package br.com.gabrielvogado.desafiouds.repository;
 
 import br.com.gabrielvogado.desafiouds.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,5 +16,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
-}
 
+    /**
+     * Apenas usuários que já revogaram tokens; os demais estão na época 0
+     */
+    @Query("SELECT u.id AS id, u.tokenEpoch AS tokenEpoch FROM User u WHERE u.tokenEpoch > 0")
+    List<TokenEpoch> findTokenEpochs();
+
+    @Modifying
+    @Query("UPDATE User u SET u.tokenEpoch = u.tokenEpoch + 1 WHERE u.id = :id")
+    int incrementTokenEpoch(@Param("id") Long id);
+
+    @Query("SELECT u.tokenEpoch FROM User u WHERE u.id = :id")
+    Integer findTokenEpoch(@Param("id") Long id);
+
+    interface TokenEpoch {
+        Long getId();
+
+        Integer getTokenEpoch();
+    }
+}
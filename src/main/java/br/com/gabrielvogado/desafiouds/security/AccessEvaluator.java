@@ -0,0 +1,80 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Decisões de acesso aos documentos, compartilhadas pelos serviços
+ * O usuário vem do CustomUserDetails que o JwtAuthenticationFilter já carregou para a requisição, então autorizar
+ * não consulta a tabela users; só chamadas fora de uma requisição do próprio usuário (uploads em segundo plano)
+ * buscam o usuário pelo nome. A posse é conferida pelo id do dono, que o proxy lazy de Document.owner conhece
+ * sem ir ao banco
+ */
+@Component
+public class AccessEvaluator {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Usuário que faz a chamada, para gravar como dono ou autor sem consultá-lo de novo
+     */
+    public User currentUser(String username) {
+        return findCurrentUser(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+    }
+
+    public boolean isAdmin(String username) {
+        return findCurrentUser(username)
+                .map(user -> user.getRole() == User.UserRole.ADMIN)
+                .orElse(false);
+    }
+
+    /**
+     * Dono do documento ou administrador
+     */
+    public boolean canAccess(Long ownerId, String username) {
+        return canAccess(ownerId, findCurrentUser(username));
+    }
+
+    public void checkAccess(Long ownerId, String username, String message) {
+        if (!canAccess(ownerId, username)) {
+            throw new UnauthorizedException(message);
+        }
+    }
+
+    /**
+     * Como checkAccess, para vários documentos, resolvendo o usuário uma única vez
+     */
+    public void checkAccess(Collection<Long> ownerIds, String username, String message) {
+        Optional<User> user = findCurrentUser(username);
+        for (Long ownerId : ownerIds) {
+            if (!canAccess(ownerId, user)) {
+                throw new UnauthorizedException(message);
+            }
+        }
+    }
+
+    private static boolean canAccess(Long ownerId, Optional<User> user) {
+        return user
+                .map(u -> u.getRole() == User.UserRole.ADMIN || u.getId().equals(ownerId))
+                .orElse(false);
+    }
+
+    private Optional<User> findCurrentUser(String username) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails details
+                && details.getUsername().equals(username)) {
+            return Optional.of(details.getUser());
+        }
+        return userRepository.findByUsername(username);
+    }
+}
@@ -0,0 +1,91 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * PasswordEncoder que executa o hash do encoder delegado no passwordHashExecutor
+ * A thread da requisição só espera o resultado; quando a fila do executor está cheia o pedido é recusado na hora
+ * com ServiceBusyException (503), e uma onda de logins não consome toda a CPU nem o pool do Tomcat.
+ * upgradeEncoding não calcula hash e fica na thread chamadora
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration retryAfter;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, ThreadPoolTaskExecutor executor,
+                                  MeterRegistry meterRegistry, Duration retryAfter) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.retryAfter = retryAfter;
+        this.encodeTimer = hashTimer("encode", meterRegistry);
+        this.matchesTimer = hashTimer("matches", meterRegistry);
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Password hashes refused because the hash queue was full")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Password hashes waiting for a hash thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Timer timer, Callable<T> hash) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(hash));
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Too many logins in progress, try again later", retryAfter, e);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static Timer hashTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.password.hash")
+                .tag("operation", operation)
+                .description("Time spent computing password hashes, without queueing")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,141 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
+import br.com.gabrielvogado.desafiouds.dto.SignedUrlDTO;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Assina e confere URLs de download pré-assinadas
+ * A assinatura HMAC-SHA256 cobre a versão, a chave do blob, o nome, o tipo, o tamanho, o id de quem pediu a URL
+ * (com seu papel como faixa de banda) e a expiração, então a URL carrega tudo que o download precisa e pode ser
+ * atendida sem consultar o banco. O nome do usuário fica fora da URL, que é pública e pode ir para caches
+ */
+@Component
+public class DownloadUrlSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    /**
+     * Chave própria das URLs: vazar uma URL não pode ajudar a forjar tokens, nem trocar a chave do JWT invalidar URLs
+     */
+    @Value("${file.signed-url.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret:}")
+    private String jwtSecret;
+
+    @Value("${file.signed-url.ttl:PT5M}")
+    private Duration ttl;
+
+    private SecretKeySpec signingKey;
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("file.signed-url.secret must be set to at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        if (secret.equals(jwtSecret)) {
+            throw new IllegalStateException("file.signed-url.secret must differ from jwt.secret");
+        }
+        signingKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * URL para GET /files/{versionId} a partir dos metadados já autorizados da versão
+     */
+    public SignedUrlDTO sign(FileDownload download, Long userId, User.UserRole tier, UriComponentsBuilder contextPath) {
+        Instant expiresAt = Instant.now().plus(ttl);
+        long expires = expiresAt.getEpochSecond();
+        String signature = signature(download.getVersionId(), download.getFileKey(), download.getFileName(),
+                download.getContentType(), download.getContentLength(), userId, tier, expires);
+
+        String url = contextPath
+                .path("/files/{versionId}")
+                .query("key={key}&name={name}&type={type}&size={size}&sub={sub}&tier={tier}&expires={expires}&signature={signature}")
+                .encode()
+                .buildAndExpand(Map.of(
+                        "versionId", download.getVersionId(),
+                        "key", download.getFileKey(),
+                        "name", download.getFileName(),
+                        "type", download.getContentType(),
+                        "size", download.getContentLength(),
+                        "sub", userId,
+                        "tier", tier,
+                        "expires", expires,
+                        "signature", signature))
+                .toUriString();
+        return SignedUrlDTO.builder()
+                .versionId(download.getVersionId())
+                .url(url)
+                .expiresAt(Instant.ofEpochSecond(expires))
+                .build();
+    }
+
+    /**
+     * Confere a assinatura e a expiração e devolve os metadados do download
+     */
+    public FileDownload verify(Long versionId, String key, String name, String type, long size, Long userId,
+                               User.UserRole tier, long expires, String signature) {
+        if (Instant.now().getEpochSecond() > expires) {
+            throw new UnauthorizedException("Download URL has expired");
+        }
+        byte[] expected = Base64.getUrlDecoder().decode(signature(versionId, key, name, type, size, userId, tier, expires));
+        byte[] actual;
+        try {
+            actual = Base64.getUrlDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            throw new UnauthorizedException("Invalid download URL signature");
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new UnauthorizedException("Invalid download URL signature");
+        }
+
+        return FileDownload.builder()
+                .versionId(versionId)
+                .fileKey(key)
+                .fileName(name)
+                .contentType(type)
+                .contentLength(size)
+                .checksum(key)
+                .build();
+    }
+
+    private String signature(Long versionId, String key, String name, String type, long size, Long userId,
+                             User.UserRole tier, long expires) {
+        Mac mac = macs.get();
+        // Cada campo vai prefixado pelo tamanho, para que nenhuma combinação de valores produza a mesma mensagem
+        for (String field : new String[]{String.valueOf(versionId), key, name, type, String.valueOf(size), String.valueOf(userId),
+                tier.name(), String.valueOf(expires)}) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            mac.update((bytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+            mac.update(bytes);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal());
+    }
+}
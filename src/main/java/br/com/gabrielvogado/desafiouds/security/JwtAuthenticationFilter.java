@@ -1,5 +1,7 @@
 package br.com.gabrielvogado.desafiouds.security;
 
+import br.com.gabrielvogado.desafiouds.model.User;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -16,11 +18,12 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
-    private static final String[] PUBLIC_PATHS = {"/api/auth/", "/api/health"};
+    private static final String[] PUBLIC_PATHS = {"/api/auth/", "/api/health", "/api/files/"};
 
     @Autowired
     private JwtTokenProvider tokenProvider;
@@ -28,6 +31,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -46,12 +52,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            // Validar e processar token
-            if (tokenProvider != null && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
-                if (userDetailsService != null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
+            // Validar e processar token (um único parse, ou nenhum se o token já foi verificado)
+            Optional<Claims> claims = tokenProvider != null ? tokenProvider.verify(jwt) : Optional.empty();
+            if (claims.isPresent()) {
+                UserDetails userDetails = loadUserDetails(claims.get());
+                if (userDetails != null) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -66,6 +71,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Usuário montado a partir das claims do token, sem ir ao banco; tokens emitidos antes das claims uid/role
+     * ainda carregam o usuário pelo nome. Nulo quando o token foi revogado
+     */
+    private UserDetails loadUserDetails(Claims claims) {
+        Optional<User> fromClaims = tokenProvider.getUserFromClaims(claims);
+        CustomUserDetails userDetails;
+        int tokenEpoch;
+        if (fromClaims.isPresent()) {
+            userDetails = new CustomUserDetails(fromClaims.get());
+            tokenEpoch = fromClaims.get().getTokenEpoch();
+        } else if (userDetailsService != null
+                && userDetailsService.loadUserByUsername(claims.getSubject()) instanceof CustomUserDetails loaded) {
+            // Sem a claim epoch o token é da época 0
+            userDetails = loaded;
+            tokenEpoch = 0;
+        } else {
+            return null;
+        }
+
+        if (tokenEpochRegistry != null && !tokenEpochRegistry.isCurrent(userDetails.getId(), tokenEpoch)) {
+            logger.debug("Rejected revoked token of user {}", userDetails.getUsername());
+            return null;
+        }
+        return userDetails;
+    }
+
     private boolean isPublicPath(String requestPath) {
         for (String publicPath : PUBLIC_PATHS) {
             if (requestPath.startsWith(publicPath)) {
@@ -1,80 +1,200 @@
 package br.com.gabrielvogado.desafiouds.security;
 
+import br.com.gabrielvogado.desafiouds.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Emissão e verificação dos tokens JWT
+ * Chave e parser são montados uma única vez. Tokens já verificados ficam em um cache limitado, indexado pelo
+ * SHA-256 do token e válido até o exp, para que requisições seguidas com o mesmo token não refaçam o parse
+ * e o HMAC
+ * Além do subject, o token leva id, papel e época do usuário (claims uid, role e epoch), o bastante para autenticar
+ * a requisição sem consultar a tabela users
+ */
 @Component
 public class JwtTokenProvider {
 
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
+    static final String EPOCH_CLAIM = "epoch";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    /**
+     * Tokens verificados mantidos em memória; 0 desliga o cache
+     */
+    @Value("${jwt.verification-cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+
+        FunctionCounter.builder("jwt.verifications", hits, LongAdder::sum)
+                .tag("result", "cached")
+                .description("Tokens accepted from the verification cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("jwt.verifications", misses, LongAdder::sum)
+                .tag("result", "parsed")
+                .description("Tokens parsed and verified with HMAC")
+                .register(meterRegistry);
+        Gauge.builder("jwt.verification.cache.size", verified, Map::size)
+                .register(meterRegistry);
     }
 
     public String generateToken(Authentication authentication) {
-        String username = authentication.getName();
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpiration);
+        if (authentication.getPrincipal() instanceof CustomUserDetails details) {
+            return generateToken(details.getUser());
+        }
+        return buildToken(authentication.getName(), Map.of());
+    }
 
-        return Jwts.builder()
-                .subject(username)
-                .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(getSigningKey())
-                .compact();
+    public String generateToken(User user) {
+        return buildToken(user.getUsername(), Map.of(
+                USER_ID_CLAIM, user.getId(),
+                ROLE_CLAIM, user.getRole().name(),
+                EPOCH_CLAIM, user.getTokenEpoch() != null ? user.getTokenEpoch() : 0));
     }
 
-    public String generateToken(String username) {
+    /**
+     * Usuário descrito pelas claims, com id, nome, papel e época; vazio para tokens emitidos sem essas claims
+     */
+    public Optional<User> getUserFromClaims(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null) {
+            return Optional.empty();
+        }
+        Integer epoch = claims.get(EPOCH_CLAIM, Integer.class);
+        return Optional.of(User.builder()
+                .id(userId)
+                .username(claims.getSubject())
+                .role(User.UserRole.valueOf(role))
+                .tokenEpoch(epoch != null ? epoch : 0)
+                .build());
+    }
+
+    private String buildToken(String username, Map<String, ?> claims) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
 
         return Jwts.builder()
                 .subject(username)
+                .claims(claims)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
+    /**
+     * Claims do token quando assinatura e validade conferem; vazio para qualquer token inválido
+     */
+    public Optional<Claims> verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verified.get(digest);
+        if (cached != null) {
+            if (cached.expiresAt() > System.currentTimeMillis()) {
+                hits.increment();
+                return Optional.of(cached.claims());
+            }
+            verified.remove(digest, cached);
+        }
+
+        misses.increment();
+        Claims claims;
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        // Sem exp o token não tem até quando ficar no cache
+        if (cacheMaxSize > 0 && claims.getExpiration() != null) {
+            if (verified.size() >= cacheMaxSize) {
+                evict();
+            }
+            verified.put(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+        }
+        return Optional.of(claims);
+    }
+
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-        return claims.getSubject();
+        return getClaimsFromToken(token).getSubject();
     }
 
     public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
+    public Claims getClaimsFromToken(String token) {
+        return verify(token).orElseThrow(() -> new JwtException("Invalid JWT token"));
+    }
+
+    /**
+     * Remove os expirados e, se ainda faltar espaço, entradas quaisquer até sobrar um décimo do limite
+     */
+    private synchronized void evict() {
+        if (verified.size() < cacheMaxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        verified.values().removeIf(entry -> entry.expiresAt() <= now);
+        Iterator<VerifiedToken> iterator = verified.values().iterator();
+        while (verified.size() > cacheMaxSize * 9 / 10 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String digest(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (Exception ex) {
-            return false;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
-    public Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private record VerifiedToken(Claims claims, long expiresAt) {
     }
 }
-
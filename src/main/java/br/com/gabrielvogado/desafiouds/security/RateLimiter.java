@@ -0,0 +1,159 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limite de requisições por cliente e por rota, em memória
+ * Cada bucket é um GCRA (token bucket guardado como o instante teórico da próxima chegada): um único long por
+ * cliente e rota, atualizado com compareAndSet, sem lock; o ConcurrentHashMap já distribui as chaves entre
+ * bins independentes. Um bucket que voltou a ficar cheio é igual a um novo, então os ociosos são descartados
+ * periodicamente
+ * Rotas em rate-limit.routes, separadas por vírgula, no formato padrão=requisições/período (ex.: /auth/login=10/PT1M);
+ * vale a primeira que casar com o caminho, e caminhos sem rota não têm limite. A rajada é o próprio número de
+ * requisições do período
+ */
+@Component
+public class RateLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.routes:/auth/login=10/PT1M,/auth/register=5/PT1M,/documents/**=600/PT1M}")
+    private String routes;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private List<Route> routeList = List.of();
+
+    @PostConstruct
+    public void init() {
+        List<Route> parsed = new ArrayList<>();
+        if (StringUtils.hasText(routes)) {
+            for (String spec : routes.split(",")) {
+                if (StringUtils.hasText(spec)) {
+                    parsed.add(parse(parsed.size(), spec.trim()));
+                }
+            }
+        }
+        routeList = List.copyOf(parsed);
+
+        Gauge.builder("rate-limit.buckets", buckets, Map::size)
+                .description("Clients with a partially drained rate-limit bucket")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consome uma requisição do bucket do cliente na rota do caminho
+     * Retorna 0 quando a requisição é aceita, ou os nanossegundos até a próxima ser aceita
+     */
+    public long acquire(String path, String client) {
+        if (!enabled) {
+            return 0;
+        }
+        Route route = match(path);
+        if (route == null) {
+            return 0;
+        }
+
+        String key = route.index() + "|" + client;
+        long now = System.nanoTime();
+        AtomicLong arrival = buckets.get(key);
+        if (arrival == null) {
+            arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = arrival.get();
+            long next = (current - now > 0 ? current : now) + route.interval();
+            long wait = next - now - route.tolerance();
+            if (wait > 0) {
+                route.throttled().increment();
+                return wait;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Descarta buckets que já voltaram a ficar cheios
+     * Uma requisição concorrente ao descarte pode perder seu desconto, o que só favorece o cliente
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval:PT1M}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(arrival -> arrival.get() - now <= 0);
+    }
+
+    private Route match(String path) {
+        for (Route route : routeList) {
+            if (matches(route, path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Padrões literais e prefixo/** são comparados direto, sem tokenizar o caminho no AntPathMatcher
+     */
+    private boolean matches(Route route, String path) {
+        String prefix = route.prefix();
+        if (prefix == null) {
+            return pathMatcher.match(route.pattern(), path);
+        }
+        if (!route.pattern().endsWith("/**")) {
+            return path.equals(prefix);
+        }
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+
+    private Route parse(int index, String spec) {
+        int equals = spec.lastIndexOf('=');
+        int slash = spec.lastIndexOf('/');
+        if (equals <= 0 || slash < equals) {
+            throw new IllegalStateException("Invalid rate-limit route: " + spec);
+        }
+        String pattern = spec.substring(0, equals).trim();
+        long requests = Long.parseLong(spec.substring(equals + 1, slash).trim());
+        Duration period = Duration.parse(spec.substring(slash + 1).trim());
+        if (requests <= 0 || period.isNegative() || period.isZero()) {
+            throw new IllegalStateException("Invalid rate-limit route: " + spec);
+        }
+
+        long interval = Math.max(1, period.toNanos() / requests);
+        Counter throttled = Counter.builder("rate-limit.throttled")
+                .tag("route", pattern)
+                .description("Requests rejected with 429")
+                .register(meterRegistry);
+        String literal = pattern.endsWith("/**") ? pattern.substring(0, pattern.length() - 3) : pattern;
+        String prefix = pathMatcher.isPattern(literal) ? null : literal;
+        return new Route(index, pattern, prefix, interval, interval * requests, throttled);
+    }
+
+    /**
+     * prefix: parte literal do padrão, ou nulo quando ele precisa do AntPathMatcher; interval: nanossegundos entre
+     * requisições no ritmo do limite; tolerance: quanto o cliente pode se adiantar a esse ritmo (a rajada)
+     */
+    private record Route(int index, String pattern, String prefix, long interval, long tolerance, Counter throttled) {
+    }
+}
@@ -0,0 +1,74 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Época atual dos tokens de cada usuário, mantida em memória para que o JwtAuthenticationFilter confira tokens
+ * sem consultar a tabela users
+ * Só usuários que já revogaram tokens (época maior que 0) ficam no mapa. A revogação vale na hora nesta instância
+ * e, nas demais, no próximo refresh (jwt.epoch-refresh-interval)
+ */
+@Component
+public class TokenEpochRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenEpochRegistry.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private volatile Map<Long, Integer> epochs = Map.of();
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.epoch-refresh-interval:PT30S}",
+            initialDelayString = "${jwt.epoch-refresh-interval:PT30S}")
+    public void refresh() {
+        Map<Long, Integer> loaded = new HashMap<>();
+        for (UserRepository.TokenEpoch epoch : userRepository.findTokenEpochs()) {
+            loaded.put(epoch.getId(), epoch.getTokenEpoch());
+        }
+        synchronized (this) {
+            // Épocas só crescem: uma revogação feita durante a consulta não é desfeita por ela
+            epochs.forEach((userId, epoch) -> loaded.merge(userId, epoch, Math::max));
+            epochs = Map.copyOf(loaded);
+        }
+    }
+
+    /**
+     * Se um token emitido com a época informada ainda vale para o usuário
+     */
+    public boolean isCurrent(Long userId, int epoch) {
+        return epoch >= epochs.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Invalida todos os tokens já emitidos para o usuário; os próximos logins recebem a nova época
+     */
+    @Transactional
+    public int revoke(Long userId) {
+        if (userRepository.incrementTokenEpoch(userId) == 0) {
+            throw new IllegalArgumentException("User not found");
+        }
+        int epoch = userRepository.findTokenEpoch(userId);
+        synchronized (this) {
+            Map<Long, Integer> updated = new HashMap<>(epochs);
+            updated.merge(userId, epoch, Math::max);
+            epochs = Map.copyOf(updated);
+        }
+        logger.info("Revoked tokens of user {} (epoch {})", userId, epoch);
+        return epoch;
+    }
+}
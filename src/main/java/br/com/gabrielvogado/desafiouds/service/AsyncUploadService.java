@@ -0,0 +1,162 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadStatusDTO;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
+
+/**
+ * Upload assíncrono
+ * A requisição apenas autoriza, move o conteúdo recebido para o staging e responde 202 com o recurso de status.
+ * Hash, validação da assinatura, compressão, promoção a blob e gravação da versão rodam no uploadExecutor,
+ * com a transação restrita ao registro da versão.
+ */
+@Service
+public class AsyncUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncUploadService.class);
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    @Qualifier("uploadExecutor")
+    private Executor uploadExecutor;
+
+    @Value("${file.max-size:10485760}")
+    private long maxFileSize;
+
+    /**
+     * Por quanto tempo o status de um upload concluído continua disponível para consulta
+     */
+    @Value("${file.async-upload.status-ttl:PT1H}")
+    private Duration statusTtl;
+
+    /**
+     * Intervalo sugerido no Retry-After quando a fila de processamento está cheia
+     */
+    @Value("${file.async-upload.retry-after:PT5S}")
+    private Duration retryAfter;
+
+    private final Map<String, TrackedUpload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * Aceita o upload para processamento em segundo plano
+     * Quando a fila do uploadExecutor está cheia o conteúdo é descartado e a requisição recebe 503
+     */
+    public UploadStatusDTO submit(Long documentId, MultipartFile file, String username) {
+        fileService.validateUpload(documentId, file, username);
+
+        Path staged;
+        try {
+            staged = blobStorageService.newStagingFile();
+            // O Tomcat grava a parte em disco; transferTo apenas a move para o staging quando possível
+            file.transferTo(staged);
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to upload file: " + e.getMessage(), e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadStatusDTO status = UploadStatusDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .documentId(documentId)
+                .fileName(file.getOriginalFilename())
+                .state(UploadStatusDTO.State.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        uploads.put(status.getId(), new TrackedUpload(username, status));
+
+        String contentType = file.getContentType();
+        try {
+            uploadExecutor.execute(() -> process(status, staged, contentType, username));
+        } catch (TaskRejectedException e) {
+            uploads.remove(status.getId());
+            deleteQuietly(staged);
+            throw new ServiceBusyException("Too many uploads in progress, try again later", retryAfter, e);
+        }
+        return status;
+    }
+
+    public UploadStatusDTO getStatus(String uploadId, String username) {
+        TrackedUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new DocumentNotFoundException("Upload not found with id: " + uploadId);
+        }
+        if (!upload.username().equals(username)) {
+            throw new UnauthorizedException("You don't have permission to access this upload");
+        }
+        return upload.status();
+    }
+
+    @Scheduled(fixedDelayString = "${file.async-upload.cleanup-interval:PT5M}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(statusTtl);
+        uploads.values().removeIf(upload -> upload.status().isFinished()
+                && upload.status().getUpdatedAt().isBefore(cutoff));
+    }
+
+    private void process(UploadStatusDTO status, Path staged, String contentType, String username) {
+        update(status.getId(), builder -> builder.state(UploadStatusDTO.State.PROCESSING));
+        try {
+            StagedBlob blob;
+            try {
+                blob = blobStorageService.stageFile(staged, contentType, maxFileSize);
+            } catch (IOException e) {
+                throw new InvalidFileException("Failed to upload file: " + e.getMessage(), e);
+            }
+
+            FileVersionDTO version = fileService.registerStagedVersion(
+                    status.getDocumentId(), blob, status.getFileName(), username);
+            update(status.getId(), builder -> builder.state(UploadStatusDTO.State.COMPLETED).version(version));
+        } catch (RuntimeException e) {
+            logger.warn("Async upload {} for document {} failed", status.getId(), status.getDocumentId(), e);
+            update(status.getId(), builder -> builder.state(UploadStatusDTO.State.FAILED).error(e.getMessage()));
+        } finally {
+            // Já promovido ou descartado; apagar garante que uma falha inesperada não deixe restos no staging
+            deleteQuietly(staged);
+        }
+    }
+
+    private void update(String uploadId, UnaryOperator<UploadStatusDTO.UploadStatusDTOBuilder> change) {
+        uploads.computeIfPresent(uploadId, (id, upload) -> new TrackedUpload(upload.username(),
+                change.apply(upload.status().toBuilder()).updatedAt(LocalDateTime.now()).build()));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete staged upload {}", file, e);
+        }
+    }
+
+    private record TrackedUpload(String username, UploadStatusDTO status) {
+    }
+}
@@ -3,10 +3,15 @@ package br.com.gabrielvogado.desafiouds.service;
 import br.com.gabrielvogado.desafiouds.dto.AuthRequest;
 import br.com.gabrielvogado.desafiouds.dto.AuthResponse;
 import br.com.gabrielvogado.desafiouds.dto.RegisterRequest;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
 import br.com.gabrielvogado.desafiouds.exception.UserAlreadyExistsException;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
 import br.com.gabrielvogado.desafiouds.security.JwtTokenProvider;
+import br.com.gabrielvogado.desafiouds.security.TokenEpochRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -14,7 +19,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class AuthService {
@@ -31,8 +35,40 @@ public class AuthService {
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
 
-    @Transactional
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    @Autowired
+    private AccessEvaluator accessEvaluator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Latência do login (fila e hash da senha incluídos) fica em auth.login, por resultado
+     * Sem transação: a espera pelo passwordHashExecutor não pode prender uma conexão do pool. As leituras usam as
+     * transações dos repositórios, e o rehash de senha desatualizada (CustomUserDetailsService.updatePassword) abre
+     * a sua própria, curta
+     */
     public AuthResponse login(AuthRequest authRequest) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            AuthResponse response = authenticate(authRequest);
+            outcome = "success";
+            return response;
+        } catch (ServiceBusyException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("auth.login")
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    private AuthResponse authenticate(AuthRequest authRequest) {
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -55,7 +91,9 @@ public class AuthService {
         }
     }
 
-    @Transactional
+    /**
+     * Também sem transação envolvendo o hash da senha; a única escrita é o save, com a transação do repositório
+     */
     public AuthResponse register(RegisterRequest registerRequest) {
         if (registerRequest == null || registerRequest.getUsername() == null || registerRequest.getEmail() == null) {
             throw new IllegalArgumentException("Username, email and password are required");
@@ -77,7 +115,7 @@ public class AuthService {
 
         User savedUser = userRepository.save(user);
 
-        String token = jwtTokenProvider.generateToken(savedUser.getUsername());
+        String token = jwtTokenProvider.generateToken(savedUser);
 
         return AuthResponse.builder()
                 .token(token)
@@ -86,5 +124,12 @@ public class AuthService {
                 .role(savedUser.getRole())
                 .build();
     }
-}
 
+    /**
+     * Invalida os tokens já emitidos para o usuário (o próprio usuário ou um administrador)
+     */
+    public void revokeTokens(Long userId, String username) {
+        accessEvaluator.checkAccess(userId, username, "You don't have permission to revoke this user's tokens");
+        tokenEpochRegistry.revoke(userId);
+    }
+}
@@ -0,0 +1,131 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Upload de vários arquivos em uma única requisição, para um ou vários documentos
+ * Os arquivos são gravados no staging em paralelo no uploadExecutor e todas as versões são criadas
+ * em uma única transação, com os inserts enviados em lote.
+ */
+@Service
+public class BatchUploadService {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    @Qualifier("uploadExecutor")
+    private Executor uploadExecutor;
+
+    @Value("${file.max-size:10485760}")
+    private long maxFileSize;
+
+    @Value("${file.batch-upload.max-files:20}")
+    private int maxFiles;
+
+    /**
+     * @param documentIds um único id, que recebe todos os arquivos, ou um id por arquivo, na mesma ordem
+     */
+    public List<FileVersionDTO> upload(List<Long> documentIds, List<MultipartFile> files, String username) {
+        List<Long> targets = resolveTargets(documentIds, files);
+        fileService.validateBatchUpload(targets, files, username);
+
+        List<StagedBlob> staged = stageAll(files);
+        List<FileService.StagedUpload> uploads = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            uploads.add(new FileService.StagedUpload(targets.get(i), files.get(i).getOriginalFilename(), staged.get(i)));
+        }
+        return fileService.registerStagedVersions(uploads, username);
+    }
+
+    private List<Long> resolveTargets(List<Long> documentIds, List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new InvalidFileException("At least one file must be uploaded");
+        }
+        if (files.size() > maxFiles) {
+            throw new InvalidFileException("Batch upload is limited to " + maxFiles + " files");
+        }
+        if (documentIds == null || documentIds.isEmpty()) {
+            throw new InvalidFileException("At least one document must be selected for upload");
+        }
+        if (documentIds.size() == 1) {
+            return Collections.nCopies(files.size(), documentIds.get(0));
+        }
+        if (documentIds.size() != files.size()) {
+            throw new InvalidFileException("Expected one document id for all files or one per file, got "
+                    + documentIds.size() + " for " + files.size() + " files");
+        }
+        return documentIds;
+    }
+
+    /**
+     * Grava todos os arquivos no staging em paralelo; se a fila do executor estiver cheia o arquivo é gravado
+     * na própria thread da requisição. Se qualquer um falhar, os já gravados são descartados.
+     */
+    private List<StagedBlob> stageAll(List<MultipartFile> files) {
+        List<CompletableFuture<StagedBlob>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            CompletableFuture<StagedBlob> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> stage(file), uploadExecutor);
+            } catch (TaskRejectedException e) {
+                future = new CompletableFuture<>();
+                try {
+                    future.complete(stage(file));
+                } catch (RuntimeException stageFailure) {
+                    future.completeExceptionally(stageFailure);
+                }
+            }
+            futures.add(future);
+        }
+
+        RuntimeException failure = null;
+        List<StagedBlob> staged = new ArrayList<>(files.size());
+        for (CompletableFuture<StagedBlob> future : futures) {
+            try {
+                staged.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            staged.forEach(blobStorageService::discard);
+            if (failure instanceof UncheckedIOException io) {
+                throw new InvalidFileException("Failed to upload file: " + io.getCause().getMessage(), io.getCause());
+            }
+            throw failure;
+        }
+        return staged;
+    }
+
+    private StagedBlob stage(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return blobStorageService.stage(in, file.getContentType(), maxFileSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
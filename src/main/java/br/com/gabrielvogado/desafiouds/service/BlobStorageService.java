@@ -0,0 +1,843 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.model.StoredBlob;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.ColdLocation;
+import br.com.gabrielvogado.desafiouds.storage.ColdStorage;
+import br.com.gabrielvogado.desafiouds.storage.DeltaCodec;
+import br.com.gabrielvogado.desafiouds.storage.GzipDecodingResource;
+import br.com.gabrielvogado.desafiouds.storage.HotBlobCache;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import br.com.gabrielvogado.desafiouds.storage.StorageBackend;
+import br.com.gabrielvogado.desafiouds.storage.TeeOutputStream;
+import br.com.gabrielvogado.desafiouds.storage.UploadPipeline;
+import br.com.gabrielvogado.desafiouds.storage.UploadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Armazenamento endereçado por conteúdo
+ * O conteúdo de cada blob é gravado uma única vez no StorageBackend, com o SHA-256 como chave, e a tabela blobs
+ * conta quantas FileVersions o referenciam. O arquivo só é removido quando a última referência sai.
+ * Conteúdo que comprime bem é guardado em gzip (chave.gz) e blobs guardados como delta são reconstruídos
+ * sob demanda em um cache local (.rebuilt). Blobs sem acesso há muito tempo vão para os pacotes da ColdStorage
+ * e continuam legíveis pelos mesmos métodos.
+ */
+@Service
+public class BlobStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStorageService.class);
+    private static final String STAGING_DIR = ".staging";
+    private static final String REBUILT_DIR = ".rebuilt";
+    private static final int MAX_DELTA_CHAIN = 1000;
+    private static final int LOCK_STRIPES = 64;
+    private static final int SHA256_HEX_LENGTH = 64;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private HotBlobCache hotBlobCache;
+
+    @Autowired
+    private ColdStorage coldStorage;
+
+    @Value("${file.storage.path:./uploads}")
+    private String storagePath;
+
+    @Value("${file.storage.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${file.storage.compression.level:6}")
+    private int compressionLevel;
+
+    /**
+     * Tamanho comprimido máximo, em fração do original, para que o blob seja guardado em gzip
+     */
+    @Value("${file.storage.compression.max-ratio:0.9}")
+    private double compressionMaxRatio;
+
+    @Value("${file.storage.compression.skip-types:image/png,image/jpeg}")
+    private String compressionSkipTypes;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public BlobStorageService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Grava o upload em um arquivo temporário calculando o hash em uma única passada
+     * Tipos comprimíveis são gravados também em gzip no mesmo passo; a cópia só é mantida se a taxa
+     * de compressão medida compensar
+     */
+    public StagedBlob stage(InputStream in, String declaredContentType, long maxBytes) throws IOException {
+        Path tempFile = newStagingFile();
+        Path compressedFile = isCompressible(declaredContentType)
+                ? tempFile.resolveSibling(tempFile.getFileName() + ".gz")
+                : null;
+        try {
+            UploadResult upload;
+            try (OutputStream out = openStagingStream(tempFile, compressedFile)) {
+                upload = UploadPipeline.transfer(in, out, declaredContentType, maxBytes);
+            }
+            return new StagedBlob(tempFile, upload, keepIfWorthwhile(compressedFile, upload));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            if (compressedFile != null) {
+                Files.deleteIfExists(compressedFile);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Prepara um arquivo já gravado em staging (ex.: upload assíncrono) sem copiá-lo de novo
+     * O arquivo é lido uma vez para hash e validação; se algo falhar ele é apagado
+     */
+    public StagedBlob stageFile(Path file, String declaredContentType, long maxBytes) throws IOException {
+        Path compressedFile = isCompressible(declaredContentType)
+                ? file.resolveSibling(file.getFileName() + ".gz")
+                : null;
+        try {
+            UploadResult upload;
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = compressedFile != null ? openGzipStream(compressedFile) : OutputStream.nullOutputStream()) {
+                upload = UploadPipeline.transfer(in, out, declaredContentType, maxBytes);
+            }
+            return new StagedBlob(file, upload, keepIfWorthwhile(compressedFile, upload));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            if (compressedFile != null) {
+                Files.deleteIfExists(compressedFile);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Registra uma referência ao conteúdo preparado e devolve a chave do blob
+     * Se o conteúdo já existe, nenhum byte é gravado novamente
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String commit(StagedBlob staged) throws IOException {
+        String key = staged.getHash();
+        long size = staged.getUpload().getSize();
+        Path compressed = staged.getCompressedFile();
+        StoredBlob.Encoding stagedEncoding = compressed != null ? StoredBlob.Encoding.GZIP : StoredBlob.Encoding.FULL;
+        storedBlobRepository.acquire(key, size, stagedEncoding.name(), compressed != null ? Files.size(compressed) : size);
+
+        // Conteúdo já existente mantém a representação com que foi guardado
+        StoredBlob.Encoding encoding = Optional.ofNullable(storedBlobRepository.findEncoding(key)).orElse(stagedEncoding);
+        String storageKey = stagedStorageKey(key, encoding, compressed != null);
+
+        if (storageKey != null) {
+            synchronized (lockFor(key)) {
+                storageBackend.put(storageKey, storageKey.equals(key) ? staged.getTempFile() : compressed);
+            }
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                finishStaged(staged, storageKey, status == STATUS_COMMITTED);
+            }
+        });
+        return key;
+    }
+
+    /**
+     * Registra mais uma referência a um blob já guardado, sem receber o conteúdo de novo
+     * Retorna false quando o blob não tem registro ou não pode ser lido. O incremento trava a linha do blob:
+     * uma remoção concorrente ou termina antes, e o blob some, ou espera esta transação
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean retain(String key) {
+        if (storedBlobRepository.incrementRefCount(key) == 0) {
+            return false;
+        }
+        if (!isStored(key)) {
+            storedBlobRepository.decrementRefCount(key);
+            return false;
+        }
+        return true;
+    }
+
+    public Path newStagingFile() throws IOException {
+        Path stagingDir = Paths.get(storagePath).resolve(STAGING_DIR);
+        Files.createDirectories(stagingDir);
+        return stagingDir.resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    public void discard(StagedBlob staged) {
+        try {
+            deleteStagedFiles(staged);
+        } catch (IOException e) {
+            logger.warn("Could not delete staged file {}", staged.getTempFile(), e);
+        }
+    }
+
+    /**
+     * Remove uma referência ao blob e apaga o arquivo, após o commit, quando não restar nenhuma
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String key) {
+        if (storedBlobRepository.decrementRefCount(key) == 0) {
+            // Arquivos gravados antes do armazenamento por conteúdo não têm registro na tabela blobs
+            deleteAfterCommit(key, false);
+            return;
+        }
+        String baseKey = storedBlobRepository.findBaseHash(key);
+        if (storedBlobRepository.deleteIfUnreferenced(key) > 0) {
+            if (baseKey == null) {
+                deleteAfterCommit(key, true);
+            } else {
+                deleteAfterCommit(key, true, deltaKey(key, baseKey));
+                release(baseKey);
+            }
+        }
+    }
+
+    /**
+     * Conteúdo original do blob; blobs em gzip são descomprimidos durante a leitura
+     * Blobs populares são servidos do HotBlobCache
+     */
+    public Optional<Resource> open(String key) throws IOException {
+        return hotBlobCache.get(key, () -> openStored(key, null));
+    }
+
+    /**
+     * Como open, com o tamanho original já conhecido (o da versão); blobs quentes são abertos sem consultar o banco
+     */
+    public Optional<Resource> open(String key, long size) throws IOException {
+        return hotBlobCache.get(key, () -> openStored(key, size));
+    }
+
+    /**
+     * Bytes em gzip exatamente como guardados, para envio com Content-Encoding: gzip
+     * Vazio quando o blob não está guardado comprimido
+     */
+    public Optional<Resource> openGzip(String key) throws IOException {
+        return hotBlobCache.get(gzipKey(key), () -> storageBackend.get(gzipKey(key)));
+    }
+
+    /**
+     * Caminho local com o conteúdo completo do blob, reconstruindo o delta quando necessário
+     */
+    public Optional<Path> materialize(String key) throws IOException {
+        return materialize(key, 0);
+    }
+
+    /**
+     * Passa a guardar o blob como delta sobre baseKey
+     * expectedBase é a base atual quando o blob já é um delta (re-base) ou null quando ainda está completo
+     *
+     * @return false se o blob mudou desde a leitura (removido, já convertido ou re-baseado)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean storeAsDelta(String key, String expectedBase, String baseKey, Path deltaFile) throws IOException {
+        long storedSize = Files.size(deltaFile);
+        int updated = expectedBase == null
+                ? storedBlobRepository.markDelta(key, baseKey, storedSize)
+                : storedBlobRepository.rebaseDelta(key, expectedBase, baseKey, storedSize);
+        if (updated == 0) {
+            return false;
+        }
+        if (storedBlobRepository.incrementRefCount(baseKey) == 0) {
+            throw new IllegalStateException("Delta base not found: " + baseKey);
+        }
+
+        String newKey = deltaKey(key, baseKey);
+        synchronized (lockFor(key)) {
+            storageBackend.put(newKey, deltaFile);
+        }
+
+        if (expectedBase == null) {
+            replaceAfterCompletion(key, newKey, key, gzipKey(key));
+        } else {
+            replaceAfterCompletion(key, newKey, deltaKey(key, expectedBase));
+            release(expectedBase);
+        }
+        return true;
+    }
+
+    /**
+     * Volta a guardar um blob delta como conteúdo completo
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean storeAsFull(String key, String expectedBase, Path fullFile) throws IOException {
+        if (storedBlobRepository.markFull(key, expectedBase) == 0) {
+            return false;
+        }
+        synchronized (lockFor(key)) {
+            storageBackend.put(key, fullFile);
+        }
+        replaceAfterCompletion(key, key, deltaKey(key, expectedBase));
+        release(expectedBase);
+        return true;
+    }
+
+    /**
+     * Move o blob para a camada fria: a entrada no pacote é gravada e sincronizada antes do commit e os arquivos
+     * quentes só são apagados depois dele, então uma queda em qualquer ponto deixa o blob legível
+     *
+     * @return false se o blob não está mais na camada quente ou não tem arquivo a mover
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean demote(String key) throws IOException {
+        StoredBlob blob = storedBlobRepository.findById(key)
+                .filter(stored -> stored.getTier() == StoredBlob.Tier.HOT && stored.getEncoding() != StoredBlob.Encoding.DELTA)
+                .orElse(null);
+        if (blob == null) {
+            return false;
+        }
+
+        ColdStorage.Location location;
+        synchronized (lockFor(key)) {
+            Optional<Resource> compressed = storageBackend.get(gzipKey(key));
+            Optional<Resource> full = compressed.isPresent() ? Optional.empty() : storageBackend.get(key);
+            if (compressed.isEmpty() && full.isEmpty()) {
+                return false;
+            }
+            location = compressed.isPresent()
+                    ? coldStorage.append(key, compressed.get(), true, blob.getSize())
+                    : coldStorage.append(key, full.get(), false, blob.getSize());
+        }
+        if (storedBlobRepository.markCold(key, location.packId(), location.offset(), location.length()) == 0) {
+            // A entrada gravada fica como espaço morto no pacote
+            return false;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (lockFor(key)) {
+                    try {
+                        // Um upload ou promoção concorrente pode ter trazido o blob de volta
+                        if (storedBlobRepository.isCold(key)) {
+                            hotBlobCache.invalidate(key);
+                            hotBlobCache.invalidate(gzipKey(key));
+                            storageBackend.delete(key);
+                            storageBackend.delete(gzipKey(key));
+                            Files.deleteIfExists(rebuiltPath(key));
+                        }
+                    } catch (IOException e) {
+                        logger.error("Could not delete hot copy of cold blob {}", key, e);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Traz o blob de volta para a camada quente, na representação registrada (gzip quando for o caso)
+     * A entrada no pacote vira espaço morto; após um rollback o arquivo quente recém-gravado é apagado
+     *
+     * @return false se o blob não está mais na camada fria
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean promote(String key) throws IOException {
+        StoredBlob blob = storedBlobRepository.findById(key)
+                .filter(stored -> stored.getTier() == StoredBlob.Tier.COLD)
+                .orElse(null);
+        if (blob == null) {
+            return false;
+        }
+        ColdStorage.Location location = new ColdStorage.Location(blob.getPackId(), blob.getPackOffset(), blob.getPackLength());
+
+        Path staged = newStagingFile();
+        try {
+            String storageKey = key;
+            try (InputStream gzipped = blob.getEncoding() == StoredBlob.Encoding.GZIP ? coldStorage.openGzipped(location, key) : null) {
+                if (gzipped != null) {
+                    Files.copy(gzipped, staged);
+                    storageKey = gzipKey(key);
+                } else {
+                    try (InputStream in = coldStorage.open(location, key).getInputStream()) {
+                        Files.copy(in, staged);
+                    }
+                }
+            }
+            if (storedBlobRepository.markHot(key) == 0) {
+                return false;
+            }
+            synchronized (lockFor(key)) {
+                storageBackend.put(storageKey, staged);
+            }
+
+            String promotedKey = storageKey;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        return;
+                    }
+                    synchronized (lockFor(key)) {
+                        try {
+                            storageBackend.delete(promotedKey);
+                        } catch (IOException e) {
+                            logger.error("Could not delete hot copy of blob {} after rollback", key, e);
+                        }
+                    }
+                }
+            });
+            return true;
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    /**
+     * Confere se o blob pode ser lido: arquivo completo, em gzip, no pacote frio ou delta com a base disponível
+     */
+    public boolean isStored(String key) {
+        return isStored(key, 0);
+    }
+
+    /**
+     * Indica se o arquivo guardado sob storageKey é uma representação registrada de algum blob
+     * Arquivos anteriores ao armazenamento por conteúdo contam como referenciados enquanto houver versão apontando para eles
+     */
+    public boolean isReferenced(String storageKey) {
+        String key = blobKey(storageKey);
+        return storedBlobRepository.findById(key)
+                .filter(blob -> blob.getRefCount() > 0)
+                // Arquivos quentes de um blob frio são sobras de uma mudança de camada interrompida
+                .map(blob -> blob.getTier() != StoredBlob.Tier.COLD
+                        && storageKeys(key, blob.getEncoding(), blob.getBaseHash()).contains(storageKey))
+                .orElseGet(() -> fileVersionRepository.existsByFileKey(storageKey));
+    }
+
+    /**
+     * Move para a quarentena um arquivo que não corresponde a nenhuma representação registrada
+     * A checagem é refeita sob o lock do blob para não competir com um upload ou conversão do mesmo conteúdo
+     *
+     * @return false se o arquivo passou a ser referenciado
+     */
+    public boolean quarantineIfOrphan(String storageKey, Path file, Path quarantineDir) throws IOException {
+        synchronized (lockFor(blobKey(storageKey))) {
+            if (isReferenced(storageKey)) {
+                return false;
+            }
+            Files.createDirectories(quarantineDir);
+            Path target = quarantineDir.resolve(storageKey);
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            // O prazo da quarentena conta a partir da mudança, não da última gravação do conteúdo
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return true;
+        }
+    }
+
+    /**
+     * Encerra a quarentena de um arquivo: apaga, ou devolve ao armazenamento se voltou a ser referenciado e está faltando
+     *
+     * @return true se o arquivo foi restaurado
+     */
+    public boolean releaseQuarantined(String storageKey, Path file) throws IOException {
+        synchronized (lockFor(blobKey(storageKey))) {
+            boolean restore = isReferenced(storageKey) && !storageBackend.exists(storageKey);
+            if (restore) {
+                storageBackend.put(storageKey, file);
+            }
+            Files.deleteIfExists(file);
+            return restore;
+        }
+    }
+
+    /**
+     * Remove arquivos de staging esquecidos por uploads interrompidos
+     * Apenas arquivos soltos no diretório; as sessões de upload em partes têm a própria expiração
+     *
+     * @return quantidade de arquivos removidos
+     */
+    public int purgeStaging(Duration maxAge) throws IOException {
+        return purgeOlderThan(Paths.get(storagePath).resolve(STAGING_DIR), maxAge);
+    }
+
+    /**
+     * Remove do cache as reconstruções não acessadas há mais de maxAge
+     *
+     * @return quantidade de arquivos removidos
+     */
+    public int purgeRebuilt(Duration maxAge) throws IOException {
+        return purgeOlderThan(Paths.get(storagePath).resolve(REBUILT_DIR), maxAge);
+    }
+
+    /**
+     * Formatos que já chegam comprimidos (file.storage.compression.skip-types) e não ganham nada com deflate
+     */
+    public boolean isAlreadyCompressed(String contentType) {
+        return Arrays.stream(compressionSkipTypes.split(","))
+                .map(String::trim)
+                .anyMatch(type -> type.equalsIgnoreCase(contentType));
+    }
+
+    public static String deltaKey(String key, String baseKey) {
+        return key + "." + baseKey + ".delta";
+    }
+
+    public static String gzipKey(String key) {
+        return key + ".gz";
+    }
+
+    /**
+     * Chaves de armazenamento válidas para um blob conforme a representação registrada
+     */
+    public static Set<String> storageKeys(String key, StoredBlob.Encoding encoding, String baseKey) {
+        return switch (encoding) {
+            // Conteúdo repetido enviado sem cópia comprimida pode ter sido gravado completo
+            case GZIP -> Set.of(key, gzipKey(key));
+            case DELTA -> Set.of(deltaKey(key, baseKey));
+            case FULL -> Set.of(key);
+        };
+    }
+
+    /**
+     * Hash do blob a que uma chave de armazenamento pertence (a própria chave, a cópia .gz ou o .delta)
+     */
+    public static String blobKey(String storageKey) {
+        if (storageKey.length() > SHA256_HEX_LENGTH && storageKey.charAt(SHA256_HEX_LENGTH) == '.'
+                && storageKey.chars().limit(SHA256_HEX_LENGTH).allMatch(HexFormat::isHexDigit)) {
+            return storageKey.substring(0, SHA256_HEX_LENGTH);
+        }
+        return storageKey;
+    }
+
+    private boolean isStored(String key, int depth) {
+        if (storageBackend.exists(key) || storageBackend.exists(gzipKey(key))) {
+            return true;
+        }
+        ColdLocation cold = storedBlobRepository.findColdLocation(key);
+        if (cold != null) {
+            return coldStorage.exists(cold.getPackId());
+        }
+        String baseKey = depth < MAX_DELTA_CHAIN ? storedBlobRepository.findBaseHash(key) : null;
+        return baseKey != null && storageBackend.exists(deltaKey(key, baseKey)) && isStored(baseKey, depth + 1);
+    }
+
+    /**
+     * Chave em que o conteúdo preparado é gravado, ou null quando nada precisa ser gravado
+     * Blobs na camada fria não ganham cópia quente: voltam para ela se forem lidos de novo
+     */
+    private String stagedStorageKey(String key, StoredBlob.Encoding encoding, boolean hasCompressed) {
+        if (encoding == StoredBlob.Encoding.DELTA || storedBlobRepository.isCold(key)) {
+            return null;
+        }
+        return encoding == StoredBlob.Encoding.GZIP && hasCompressed ? gzipKey(key) : key;
+    }
+
+    private int purgeOlderThan(Path dir, Duration maxAge) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        FileTime limit = FileTime.from(Instant.now().minus(maxAge));
+        int purged = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                if (Files.getLastModifiedTime(file).compareTo(limit) < 0 && Files.deleteIfExists(file)) {
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+
+    private boolean isCompressible(String contentType) {
+        return compressionEnabled && !isAlreadyCompressed(contentType);
+    }
+
+    private OutputStream openStagingStream(Path tempFile, Path compressedFile) throws IOException {
+        OutputStream raw = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        if (compressedFile == null) {
+            return raw;
+        }
+        try {
+            return new TeeOutputStream(raw, openGzipStream(compressedFile));
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    private OutputStream openGzipStream(Path compressedFile) throws IOException {
+        OutputStream compressedOut = Files.newOutputStream(compressedFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return new GZIPOutputStream(compressedOut, UploadPipeline.BUFFER_SIZE) {
+            {
+                def.setLevel(compressionLevel);
+            }
+        };
+    }
+
+    /**
+     * Mantém a cópia em gzip apenas se a taxa de compressão medida compensar
+     */
+    private Path keepIfWorthwhile(Path compressedFile, UploadResult upload) throws IOException {
+        if (compressedFile != null && Files.size(compressedFile) > upload.getSize() * compressionMaxRatio) {
+            Files.delete(compressedFile);
+            return null;
+        }
+        return compressedFile;
+    }
+
+    private Optional<Resource> openStored(String key, Long knownSize) throws IOException {
+        Optional<Resource> stored = storageBackend.get(key);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        Optional<Resource> compressed = storageBackend.get(gzipKey(key));
+        if (compressed.isPresent()) {
+            Long size = knownSize != null ? knownSize : storedBlobRepository.findSize(key);
+            if (size != null) {
+                return Optional.of(new GzipDecodingResource(compressed.get(), size));
+            }
+        }
+        Optional<Resource> cold = openCold(key);
+        if (cold.isPresent()) {
+            return cold;
+        }
+        return rebuild(key, 0).map(FileSystemResource::new);
+    }
+
+    private Optional<Path> materialize(String key, int depth) throws IOException {
+        Optional<Path> stored = storedFile(key);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        Optional<Resource> compressed = storageBackend.get(gzipKey(key));
+        if (compressed.isPresent()) {
+            return Optional.of(copyToCache(key, () -> new GZIPInputStream(compressed.get().getInputStream(), UploadPipeline.BUFFER_SIZE)));
+        }
+        Optional<Resource> cold = openCold(key);
+        if (cold.isPresent()) {
+            return Optional.of(copyToCache(key, cold.get()::getInputStream));
+        }
+        return rebuild(key, depth);
+    }
+
+    /**
+     * Conteúdo do blob na camada fria; cada leitura conta para a volta à camada quente
+     */
+    private Optional<Resource> openCold(String key) throws IOException {
+        ColdLocation cold = storedBlobRepository.findColdLocation(key);
+        if (cold == null) {
+            return Optional.empty();
+        }
+        coldStorage.recordRead(key);
+        return Optional.of(coldStorage.open(new ColdStorage.Location(cold.getPackId(), cold.getOffset(), cold.getLength()), key));
+    }
+
+    private Optional<Path> storedFile(String key) throws IOException {
+        Optional<Resource> stored = storageBackend.get(key);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!stored.get().isFile()) {
+            throw new IOException("Blob " + key + " is not stored in a local file");
+        }
+        return Optional.of(stored.get().getFile().toPath());
+    }
+
+    /**
+     * Aplica o delta do blob sobre sua base (reconstruída recursivamente) e confere o SHA-256 do resultado
+     * Uma nova leitura da base cobre o caso de um re-base concorrente ter removido o delta lido
+     */
+    private Optional<Path> rebuild(String key, int depth) throws IOException {
+        if (depth > MAX_DELTA_CHAIN) {
+            throw new IOException("Delta chain too long for blob " + key);
+        }
+
+        Path cached = rebuiltPath(key);
+        if (touchIfCached(cached)) {
+            return Optional.of(cached);
+        }
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            String baseKey = storedBlobRepository.findBaseHash(key);
+            if (baseKey == null) {
+                // Voltou a ser guardado completo depois da primeira leitura
+                return storedFile(key);
+            }
+            Optional<Resource> delta = storageBackend.get(deltaKey(key, baseKey));
+            if (delta.isEmpty()) {
+                continue;
+            }
+            Path base = materialize(baseKey, depth + 1)
+                    .orElseThrow(() -> new IOException("Delta base " + baseKey + " of blob " + key + " not found"));
+            try {
+                return Optional.of(applyDelta(key, base, delta.get(), cached));
+            } catch (NoSuchFileException e) {
+                logger.debug("Delta of blob {} replaced while rebuilding, retrying", key);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Path copyToCache(String key, InputStreamSource content) throws IOException {
+        Path cached = rebuiltPath(key);
+        if (touchIfCached(cached)) {
+            return cached;
+        }
+        Files.createDirectories(cached.getParent());
+        Path temp = cached.resolveSibling(key + "." + UUID.randomUUID() + ".tmp");
+        try (InputStream in = content.getInputStream()) {
+            Files.copy(in, temp);
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return cached;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path rebuiltPath(String key) {
+        return Paths.get(storagePath).resolve(REBUILT_DIR).resolve(key);
+    }
+
+    private boolean touchIfCached(Path cached) throws IOException {
+        if (!Files.isRegularFile(cached)) {
+            return false;
+        }
+        Files.setLastModifiedTime(cached, FileTime.from(Instant.now()));
+        return true;
+    }
+
+    private Path applyDelta(String key, Path base, Resource delta, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(key + "." + UUID.randomUUID() + ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = delta.getInputStream();
+                 OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+                DeltaCodec.apply(base, in, out);
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(key)) {
+                throw new IOException("Rebuilt content does not match blob " + key);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void finishStaged(StagedBlob staged, String storageKey, boolean committed) {
+        String key = staged.getHash();
+        try {
+            if (committed && storageKey != null) {
+                // Uma remoção concorrente pode ter apagado o arquivo entre o link e o commit
+                synchronized (lockFor(key)) {
+                    if (!storageBackend.exists(storageKey)) {
+                        storageBackend.put(storageKey, storageKey.equals(key) ? staged.getTempFile() : staged.getCompressedFile());
+                    }
+                }
+            }
+            deleteStagedFiles(staged);
+        } catch (IOException e) {
+            logger.error("Could not finalize staged blob {}", key, e);
+        }
+    }
+
+    private void deleteStagedFiles(StagedBlob staged) throws IOException {
+        Files.deleteIfExists(staged.getTempFile());
+        if (staged.getCompressedFile() != null) {
+            Files.deleteIfExists(staged.getCompressedFile());
+        }
+    }
+
+    /**
+     * Apaga, após o commit, o arquivo do blob (se continuar sem registro) e as demais chaves informadas
+     */
+    private void deleteAfterCommit(String key, boolean onlyIfUnreferenced, String... otherKeys) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (lockFor(key)) {
+                    try {
+                        if (!onlyIfUnreferenced || !storedBlobRepository.existsById(key)) {
+                            hotBlobCache.invalidate(key);
+                            hotBlobCache.invalidate(gzipKey(key));
+                            storageBackend.delete(key);
+                            storageBackend.delete(gzipKey(key));
+                            Files.deleteIfExists(rebuiltPath(key));
+                        }
+                        for (String otherKey : otherKeys) {
+                            storageBackend.delete(otherKey);
+                        }
+                    } catch (IOException e) {
+                        logger.error("Could not delete blob {}", key, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Troca a representação de um blob: após o commit apaga a antiga, após um rollback a nova
+     */
+    private void replaceAfterCompletion(String key, String newKey, String... oldKeys) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (lockFor(key)) {
+                    try {
+                        for (String obsolete : status == STATUS_COMMITTED ? oldKeys : new String[]{newKey}) {
+                            storageBackend.delete(obsolete);
+                        }
+                    } catch (IOException e) {
+                        logger.error("Could not delete previous representation of blob {}", key, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+}
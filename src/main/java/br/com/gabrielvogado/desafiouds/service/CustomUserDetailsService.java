@@ -3,14 +3,20 @@ package br.com.gabrielvogado.desafiouds.service;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.UserRepository;
 import br.com.gabrielvogado.desafiouds.security.CustomUserDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
     @Autowired
     private UserRepository userRepository;
@@ -27,5 +33,18 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
         return new CustomUserDetails(user);
     }
-}
 
+    /**
+     * Chamado pelo Spring Security após um login cujo hash usa um custo desatualizado, com a senha já refeita
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + userDetails.getUsername()));
+        user.setPasswordHash(newPassword);
+        User saved = userRepository.save(user);
+        logger.info("Rehashed password of user {}", saved.getUsername());
+        return new CustomUserDetails(saved);
+    }
+}
@@ -0,0 +1,238 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.config.SchedulingConfig;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.DeltaLink;
+import br.com.gabrielvogado.desafiouds.storage.DeltaCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Armazenamento de versões antigas como delta reverso
+ * A versão mais recente de cada documento fica completa; cada versão anterior vira um delta sobre o blob da
+ * versão seguinte. Cadeias mais longas que file.storage.delta.max-chain são re-baseadas sobre o blob completo
+ * do fim da cadeia. Ativado com file.storage.delta.enabled=true.
+ */
+@Service
+@ConditionalOnProperty(name = "file.storage.delta.enabled", havingValue = "true")
+public class DeltaCompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaCompactionService.class);
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.storage.delta.max-chain:5}")
+    private int maxChain;
+
+    @Value("${file.storage.delta.min-savings:0.25}")
+    private double minSavings;
+
+    @Value("${file.storage.delta.batch-size:100}")
+    private int batchSize;
+
+    @Value("${file.storage.delta.block-size:2048}")
+    private int blockSize;
+
+    @Value("${file.storage.delta.rebuilt-ttl:PT1H}")
+    private Duration rebuiltTtl;
+
+    @Scheduled(fixedDelayString = "${file.storage.delta.interval:PT15M}", scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void compact() throws IOException {
+        int encoded = encodePending();
+        int rebased = rebaseLongChains();
+        int purged = blobStorageService.purgeRebuilt(rebuiltTtl);
+        if (encoded > 0 || rebased > 0 || purged > 0) {
+            logger.info("Delta compaction: {} blob(s) encoded, {} re-based, {} rebuilt file(s) purged",
+                    encoded, rebased, purged);
+        }
+    }
+
+    /**
+     * Converte em delta os blobs de versões que já têm sucessora
+     * Blobs em que o delta não compensa ficam marcados para não serem tentados de novo
+     */
+    public int encodePending() {
+        int encoded = 0;
+        for (DeltaLink candidate : storedBlobRepository.findDeltaCandidates(batchSize)) {
+            boolean stored = false;
+            try {
+                stored = !createsCycle(candidate.getHash(), candidate.getBaseHash())
+                        && encode(candidate.getHash(), null, candidate.getBaseHash());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not delta-encode blob {}", candidate.getHash(), e);
+            }
+            if (stored) {
+                encoded++;
+            } else {
+                transactionTemplate.executeWithoutResult(status -> storedBlobRepository.markDeltaChecked(candidate.getHash()));
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Re-baseia sobre o blob completo do fim da cadeia os deltas mais profundos que o limite
+     * Quando o novo delta não compensa, o blob volta a ser guardado completo
+     */
+    public int rebaseLongChains() {
+        Map<String, String> bases = new HashMap<>();
+        for (DeltaLink link : storedBlobRepository.findDeltaLinks()) {
+            bases.put(link.getHash(), link.getBaseHash());
+        }
+
+        List<String> tooDeep = bases.keySet().stream()
+                .filter(key -> depth(key, bases) > maxChain)
+                .sorted(Comparator.comparingInt(key -> depth(key, bases)))
+                .toList();
+
+        int rebased = 0;
+        for (String key : tooDeep) {
+            if (depth(key, bases) <= maxChain) {
+                // Encurtada pelo re-base de um ancestral
+                continue;
+            }
+            String currentBase = bases.get(key);
+            String root = root(key, bases);
+            try {
+                if (root != null && encode(key, currentBase, root)) {
+                    bases.put(key, root);
+                    rebased++;
+                } else if (storeAsFull(key, currentBase)) {
+                    bases.remove(key);
+                    rebased++;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not re-base blob {}", key, e);
+            }
+        }
+        return rebased;
+    }
+
+    private boolean encode(String key, String currentBase, String baseKey) throws IOException {
+        Optional<Path> target = blobStorageService.materialize(key);
+        Optional<Path> base = blobStorageService.materialize(baseKey);
+        if (target.isEmpty() || base.isEmpty()) {
+            return false;
+        }
+
+        Path delta = blobStorageService.newStagingFile();
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(delta))) {
+                DeltaCodec.encode(base.get(), target.get(), out, blockSize);
+            }
+            if (Files.size(delta) > Files.size(target.get()) * (1 - minSavings)) {
+                return false;
+            }
+            verify(key, base.get(), delta);
+
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                try {
+                    return blobStorageService.storeAsDelta(key, currentBase, baseKey, delta);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } finally {
+            Files.deleteIfExists(delta);
+        }
+    }
+
+    private boolean storeAsFull(String key, String currentBase) throws IOException {
+        Optional<Path> content = blobStorageService.materialize(key);
+        if (content.isEmpty()) {
+            return false;
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            try {
+                return blobStorageService.storeAsFull(key, currentBase, content.get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    /**
+     * Aplica o delta recém-gerado e confere o SHA-256 antes de descartar a cópia completa
+     */
+    private void verify(String key, Path base, Path delta) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = Files.newInputStream(delta);
+                 OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                DeltaCodec.apply(base, in, out);
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(key)) {
+                throw new IOException("Delta of blob " + key + " does not reproduce its content");
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private boolean createsCycle(String key, String baseKey) {
+        Set<String> visited = new HashSet<>();
+        for (String current = baseKey; current != null; current = storedBlobRepository.findBaseHash(current)) {
+            if (current.equals(key) || !visited.add(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int depth(String key, Map<String, String> bases) {
+        int depth = 0;
+        for (String current = key; bases.containsKey(current); current = bases.get(current)) {
+            if (++depth > bases.size()) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Blob completo no fim da cadeia, ou null se a cadeia tiver um ciclo
+     */
+    private static String root(String key, Map<String, String> bases) {
+        String current = key;
+        for (int steps = 0; bases.containsKey(current); steps++) {
+            if (steps > bases.size()) {
+                return null;
+            }
+            current = bases.get(current);
+        }
+        return current;
+    }
+}
@@ -3,11 +3,13 @@ package br.com.gabrielvogado.desafiouds.service;
 import br.com.gabrielvogado.desafiouds.dto.DocumentCreateRequest;
 import br.com.gabrielvogado.desafiouds.dto.DocumentDTO;
 import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
-import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.exception.PreconditionFailedException;
 import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
-import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
@@ -17,6 +19,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Service
 public class DocumentService {
 
@@ -24,13 +29,21 @@ public class DocumentService {
     private DocumentRepository documentRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private AccessEvaluator accessEvaluator;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private RenditionService renditionService;
 
     @CacheEvict(value = "documents", allEntries = true)
     @Transactional
     public DocumentDTO createDocument(DocumentCreateRequest request, String username) {
-        User owner = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        User owner = accessEvaluator.currentUser(username);
 
         Document document = Document.builder()
                 .title(request.getTitle())
@@ -50,17 +63,27 @@ public class DocumentService {
         Document document = documentRepository.findById(id)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + id));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to access this document");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to access this document");
 
         return mapToDTO(document);
     }
 
+    /**
+     * Data da última alteração, lida sem carregar o documento, para responder requisições condicionais
+     */
+    @Transactional(readOnly = true)
+    public LocalDateTime getLastModified(Long id, String username) {
+        DocumentRepository.DocumentStamp stamp = documentRepository.findStampById(id)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + id));
+
+        accessEvaluator.checkAccess(stamp.getOwnerId(), username, "You don't have permission to access this document");
+
+        return stamp.getUpdatedAt();
+    }
+
     @Transactional(readOnly = true)
     public Page<DocumentDTO> listDocuments(String username, String title, Document.DocumentStatus status, Pageable pageable) {
-        User owner = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        User owner = accessEvaluator.currentUser(username);
 
         Page<Document> documents;
 
@@ -80,12 +103,15 @@ public class DocumentService {
     @CachePut(value = "documents", key = "#id")
     @CacheEvict(value = "documents", allEntries = true)
     @Transactional
-    public DocumentDTO updateDocument(Long id, DocumentCreateRequest request, String username) {
-        Document document = documentRepository.findById(id)
+    public DocumentDTO updateDocument(Long id, DocumentCreateRequest request, String username, String ifMatch) {
+        // Com If-Match a linha fica travada entre a comparação da ETag e a gravação
+        Document document = (ifMatch != null ? documentRepository.findByIdForUpdate(id) : documentRepository.findById(id))
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + id));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to update this document");
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to update this document");
+
+        if (ifMatch != null && !EntityTags.matches(ifMatch, EntityTags.document(id, document.getUpdatedAt()))) {
+            throw new PreconditionFailedException("Document " + id + " was modified by another request");
         }
 
         document.setTitle(request.getTitle());
@@ -102,10 +128,12 @@ public class DocumentService {
         Document document = documentRepository.findById(id)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + id));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to delete this document");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to delete this document");
 
+        // As versões saem pelo ON DELETE CASCADE, mas as rendições e as referências aos blobs precisam ser liberadas aqui
+        List<FileVersion> versions = fileVersionRepository.findForUpdateByDocumentId(id);
+        renditionService.deleteRenditions(versions.stream().map(FileVersion::getId).toList());
+        versions.forEach(version -> blobStorageService.release(version.getFileKey()));
         documentRepository.delete(document);
     }
 
@@ -114,9 +142,7 @@ public class DocumentService {
         Document document = documentRepository.findById(id)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + id));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to change status of this document");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to change status of this document");
 
         document.setStatus(status);
         Document updatedDocument = documentRepository.save(document);
@@ -135,11 +161,5 @@ public class DocumentService {
                 .updatedAt(document.getUpdatedAt())
                 .build();
     }
-
-    private boolean isAdmin(String username) {
-        return userRepository.findByUsername(username)
-                .map(u -> u.getRole() == User.UserRole.ADMIN)
-                .orElse(false);
-    }
 }
 
@@ -0,0 +1,69 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * ETags e datas de modificação usados nas requisições condicionais
+ * Versões de arquivo são imutáveis e recebem ETags fortes derivadas do conteúdo; documentos e listas
+ * recebem ETags fracas derivadas dos metadados
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * ETag forte de uma versão; a representação em gzip tem ETag própria
+     */
+    public static String fileVersion(Long versionId, String checksum, boolean gzip) {
+        String value = checksum != null ? checksum : "v" + versionId;
+        return "\"" + value + (gzip ? "-gzip" : "") + "\"";
+    }
+
+    /**
+     * ETag forte de uma rendição, a chave do blob gerado
+     */
+    public static String rendition(String blobKey) {
+        return "\"" + blobKey + "\"";
+    }
+
+    /**
+     * ETag fraca dos metadados (JSON) de uma versão
+     */
+    public static String fileVersionMetadata(Long versionId) {
+        return "W/\"version-" + versionId + "\"";
+    }
+
+    public static String document(Long id, LocalDateTime updatedAt) {
+        return "W/\"doc-" + id + "-" + toEpochMilli(updatedAt) + "\"";
+    }
+
+    public static String versionHistory(Long documentId, long count, Long latestVersionId) {
+        return "W/\"versions-" + documentId + "-" + count + "-" + (latestVersionId != null ? latestVersionId : 0) + "\"";
+    }
+
+    public static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    /**
+     * Confere um header If-Match contra a ETag atual
+     * A comparação ignora o prefixo W/: a ETag de documento muda a cada atualização, o que basta para
+     * detectar escritas concorrentes
+     */
+    public static boolean matches(String ifMatch, String currentTag) {
+        String current = opaque(currentTag);
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
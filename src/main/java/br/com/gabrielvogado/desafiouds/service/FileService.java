@@ -1,6 +1,8 @@
 package br.com.gabrielvogado.desafiouds.service;
 
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
 import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadByHashRequest;
 import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
 import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
 import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
@@ -9,20 +11,28 @@ import br.com.gabrielvogado.desafiouds.model.FileVersion;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
 import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
-import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.storage.BandwidthScheduler;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class FileService {
@@ -34,10 +44,19 @@ public class FileService {
     private FileVersionRepository fileVersionRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private AccessEvaluator accessEvaluator;
 
-    @Value("${file.storage.path:./uploads}")
-    private String storagePath;
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private StorageTieringService storageTieringService;
+
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
 
     @Value("${file.max-size:10485760}")
     private long maxFileSize;
@@ -56,40 +75,153 @@ public class FileService {
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to upload files to this document");
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to upload files to this document");
+
+        validateFile(file);
+
+        StagedBlob staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = blobStorageService.stage(in, file.getContentType(), maxFileSize);
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to upload file: " + e.getMessage(), e);
         }
 
+        return saveVersion(document, staged, file.getOriginalFilename(), null, username);
+    }
+
+    /**
+     * Cria uma versão sobre um blob já guardado a partir do SHA-256 e do tamanho, sem transferir o arquivo
+     * Só vale para conteúdo que o usuário já pode ler (versão de um documento seu, ou qualquer uma para admin),
+     * já que o hash sozinho não prova posse do arquivo. Sem correspondência a resposta é a mesma exista o blob
+     * ou não, e o cliente envia o arquivo pelo upload normal
+     */
+    @Transactional
+    public FileVersionDTO uploadByHash(Long documentId, UploadByHashRequest request, String username) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
+
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to upload files to this document");
+
+        if (request.getSize() > maxFileSize) {
+            throw new InvalidFileException("File size exceeds maximum allowed size of " + maxFileSize + " bytes");
+        }
+
+        String key = request.getSha256().toLowerCase(Locale.ROOT);
+        User uploadedBy = accessEvaluator.currentUser(username);
+        Optional<FileVersion> source = uploadedBy.getRole() == User.UserRole.ADMIN
+                ? fileVersionRepository.findFirstByFileKeyAndFileSizeOrderByIdDesc(key, request.getSize())
+                : fileVersionRepository.findFirstByFileKeyAndFileSizeAndDocumentOwnerIdOrderByIdDesc(key, request.getSize(), uploadedBy.getId());
+        if (source.isEmpty() || !blobStorageService.retain(key)) {
+            throw new DocumentNotFoundException("No stored content matches the given hash; upload the file instead");
+        }
+
+        FileVersion fileVersion = FileVersion.builder()
+                .document(document)
+                .fileKey(key)
+                .fileName(request.getFileName())
+                .contentType(source.get().getContentType())
+                .fileSize(source.get().getFileSize())
+                .checksum(key)
+                .uploadedBy(uploadedBy)
+                .build();
+
+        FileVersion savedVersion = fileVersionRepository.save(fileVersion);
+        renditionService.enqueue(savedVersion);
+        return mapToDTO(savedVersion);
+    }
+
+    /**
+     * Autoriza e valida um upload sem gravar nada, para quem processa o conteúdo fora da requisição
+     */
+    @Transactional(readOnly = true)
+    public void validateUpload(Long documentId, MultipartFile file, String username) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
+
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to upload files to this document");
+
         validateFile(file);
+    }
 
-        try {
-            String fileKey = generateFileKey();
-            Path storageDirPath = Paths.get(storagePath);
+    /**
+     * Cria uma versão a partir de conteúdo já preparado em staging (ex.: sessões de upload em partes, upload assíncrono)
+     */
+    @Transactional
+    public FileVersionDTO registerStagedVersion(Long documentId, StagedBlob staged, String fileName, String username) {
+        return registerStagedVersion(documentId, staged, fileName, null, username);
+    }
 
-            if (!Files.exists(storageDirPath)) {
-                Files.createDirectories(storageDirPath);
-            }
+    /**
+     * Como registerStagedVersion, guardando a sessão de upload em partes que originou a versão
+     */
+    @Transactional
+    public FileVersionDTO registerStagedVersion(Long documentId, StagedBlob staged, String fileName,
+                                                String uploadSessionId, String username) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
 
-            Path filePath = storageDirPath.resolve(fileKey);
-            Files.write(filePath, file.getBytes());
+        if (!accessEvaluator.canAccess(document.getOwner().getId(), username)) {
+            blobStorageService.discard(staged);
+            throw new UnauthorizedException("You don't have permission to upload files to this document");
+        }
 
-            User uploadedBy = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return saveVersion(document, staged, fileName, uploadSessionId, username);
+    }
 
-            FileVersion fileVersion = FileVersion.builder()
-                    .document(document)
-                    .fileKey(fileKey)
-                    .fileName(file.getOriginalFilename())
-                    .contentType(file.getContentType())
-                    .fileSize(file.getSize())
-                    .uploadedBy(uploadedBy)
-                    .build();
+    /**
+     * Versão já criada pelo commit da sessão de upload, para quem a enviou
+     */
+    @Transactional(readOnly = true)
+    public Optional<FileVersionDTO> findUploadSessionVersion(String uploadSessionId, String username) {
+        return fileVersionRepository.findByUploadSessionId(uploadSessionId)
+                .filter(version -> version.getUploadedBy().getUsername().equals(username))
+                .map(this::mapToDTO);
+    }
 
-            FileVersion savedVersion = fileVersionRepository.save(fileVersion);
-            return mapToDTO(savedVersion);
+    /**
+     * Autoriza e valida os arquivos de um upload em lote; documentIds é paralela a files
+     * Documentos e papel do usuário são carregados uma única vez para o lote inteiro
+     */
+    @Transactional(readOnly = true)
+    public void validateBatchUpload(List<Long> documentIds, List<MultipartFile> files, String username) {
+        loadForUpload(documentIds, username);
+        files.forEach(this::validateFile);
+    }
 
+    /**
+     * Cria as versões de um upload em lote em uma única transação
+     * Os ids vêm em blocos da sequence, então os inserts de file_versions são enviados em lote no flush;
+     * se qualquer versão falhar nenhuma é criada e todo o conteúdo preparado é descartado
+     */
+    @Transactional
+    public List<FileVersionDTO> registerStagedVersions(List<StagedUpload> uploads, String username) {
+        try {
+            Map<Long, Document> documents = loadForUpload(uploads.stream().map(StagedUpload::documentId).toList(), username);
+            User uploadedBy = accessEvaluator.currentUser(username);
+
+            List<FileVersion> versions = new ArrayList<>(uploads.size());
+            for (StagedUpload upload : uploads) {
+                StagedBlob staged = upload.blob();
+                versions.add(FileVersion.builder()
+                        .document(documents.get(upload.documentId()))
+                        .fileKey(blobStorageService.commit(staged))
+                        .fileName(upload.fileName())
+                        .contentType(staged.getUpload().getContentType())
+                        .fileSize(staged.getUpload().getSize())
+                        .checksum(staged.getHash())
+                        .uploadedBy(uploadedBy)
+                        .build());
+            }
+
+            List<FileVersion> saved = fileVersionRepository.saveAll(versions);
+            saved.forEach(renditionService::enqueue);
+            return saved.stream().map(this::mapToDTO).toList();
         } catch (IOException e) {
+            uploads.forEach(upload -> blobStorageService.discard(upload.blob()));
             throw new InvalidFileException("Failed to upload file: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            uploads.forEach(upload -> blobStorageService.discard(upload.blob()));
+            throw e;
         }
     }
 
@@ -98,9 +230,7 @@ public class FileService {
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to access this document");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to access this document");
 
         FileVersion fileVersion = fileVersionRepository.findLatestByDocumentId(documentId)
                 .orElseThrow(() -> new DocumentNotFoundException("No file version found for document: " + documentId));
@@ -113,52 +243,152 @@ public class FileService {
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
 
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to access this document");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to access this document");
 
         List<FileVersion> versions = fileVersionRepository.findByDocumentIdOrderByUploadedAtDesc(documentId);
         return versions.stream().map(this::mapToDTO).toList();
     }
 
+    /**
+     * ETag do histórico de versões, calculada por contagem e maior id sem carregar as versões
+     */
     @Transactional(readOnly = true)
-    public byte[] downloadFile(Long versionId, String username) throws IOException {
+    public String getVersionHistoryTag(Long documentId, String username) {
+        DocumentRepository.DocumentStamp stamp = documentRepository.findStampById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
+
+        accessEvaluator.checkAccess(stamp.getOwnerId(), username, "You don't have permission to access this document");
+
+        FileVersionRepository.VersionStats stats = fileVersionRepository.findStatsByDocumentId(documentId);
+        return EntityTags.versionHistory(documentId, stats.getCount(), stats.getLatestId());
+    }
+
+    @Transactional(readOnly = true)
+    public FileDownload downloadFile(Long versionId, String username) {
+        return downloadFile(versionId, username, false);
+    }
+
+    /**
+     * @param acceptGzip quando true e o blob estiver guardado em gzip, devolve os bytes comprimidos como estão
+     */
+    @Transactional(readOnly = true)
+    public FileDownload downloadFile(Long versionId, String username, boolean acceptGzip) {
+        return openDownload(prepareDownload(versionId, username), acceptGzip);
+    }
+
+    /**
+     * Autoriza e devolve os metadados do download sem tocar no disco
+     * Permite decidir requisições condicionais antes de abrir o arquivo
+     */
+    @Transactional(readOnly = true)
+    public FileDownload prepareDownload(Long versionId, String username) {
         FileVersion fileVersion = fileVersionRepository.findById(versionId)
                 .orElseThrow(() -> new DocumentNotFoundException("File version not found with id: " + versionId));
 
         Document document = fileVersion.getDocument();
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to download this file");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to download this file");
 
-        Path filePath = Paths.get(storagePath).resolve(fileVersion.getFileKey());
-        if (!Files.exists(filePath)) {
-            throw new InvalidFileException("File not found on disk: " + fileVersion.getFileKey());
-        }
+        return FileDownload.builder()
+                .versionId(fileVersion.getId())
+                .fileKey(fileVersion.getFileKey())
+                .fileName(fileVersion.getFileName())
+                .contentType(fileVersion.getContentType())
+                .contentLength(fileVersion.getFileSize())
+                .checksum(fileVersion.getChecksum())
+                .uploadedAt(fileVersion.getUploadedAt())
+                .build();
+    }
 
-        return Files.readAllBytes(filePath);
+    /**
+     * Como openDownload, com a transmissão no ritmo que o BandwidthScheduler conceder ao usuário
+     */
+    public FileDownload openDownload(FileDownload download, boolean acceptGzip, Long userId, User.UserRole role) {
+        FileDownload opened = openDownload(download, acceptGzip);
+        return opened.toBuilder()
+                .resource(bandwidthScheduler.throttle(opened.getResource(), userId, role))
+                .build();
+    }
+
+    public FileDownload openDownload(FileDownload download, boolean acceptGzip) {
+        storageTieringService.recordAccess(download.getVersionId());
+        try {
+            if (acceptGzip) {
+                Optional<Resource> compressed = blobStorageService.openGzip(download.getFileKey());
+                if (compressed.isPresent()) {
+                    return download.toBuilder()
+                            .resource(compressed.get())
+                            .contentEncoding("gzip")
+                            .contentLength(compressed.get().contentLength())
+                            .build();
+                }
+            }
+
+            Resource resource = blobStorageService.open(download.getFileKey(), download.getContentLength())
+                    .orElseThrow(() -> new InvalidFileException("File not found on disk: " + download.getFileKey()));
+            return download.toBuilder()
+                    .resource(resource)
+                    .build();
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to read file: " + e.getMessage(), e);
+        }
     }
 
     @Transactional
     public void deleteFileVersion(Long versionId, String username) {
-        FileVersion fileVersion = fileVersionRepository.findById(versionId)
+        FileVersion fileVersion = fileVersionRepository.findForUpdateById(versionId)
                 .orElseThrow(() -> new DocumentNotFoundException("File version not found with id: " + versionId));
 
         Document document = fileVersion.getDocument();
-        if (!document.getOwner().getUsername().equals(username) && !isAdmin(username)) {
-            throw new UnauthorizedException("You don't have permission to delete this file");
-        }
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to delete this file");
+
+        renditionService.deleteRenditions(List.of(versionId));
+        fileVersionRepository.delete(fileVersion);
+        blobStorageService.release(fileVersion.getFileKey());
+    }
 
+    private FileVersionDTO saveVersion(Document document, StagedBlob staged, String fileName, String uploadSessionId,
+                                       String username) {
         try {
-            Path filePath = Paths.get(storagePath).resolve(fileVersion.getFileKey());
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-            }
+            String fileKey = blobStorageService.commit(staged);
+
+            User uploadedBy = accessEvaluator.currentUser(username);
+
+            FileVersion fileVersion = FileVersion.builder()
+                    .document(document)
+                    .fileKey(fileKey)
+                    .fileName(fileName)
+                    .contentType(staged.getUpload().getContentType())
+                    .fileSize(staged.getUpload().getSize())
+                    .checksum(staged.getHash())
+                    .uploadedBy(uploadedBy)
+                    .uploadSessionId(uploadSessionId)
+                    .build();
+
+            FileVersion savedVersion = fileVersionRepository.save(fileVersion);
+            renditionService.enqueue(savedVersion);
+            return mapToDTO(savedVersion);
+
         } catch (IOException e) {
-            throw new InvalidFileException("Failed to delete file: " + e.getMessage(), e);
+            blobStorageService.discard(staged);
+            throw new InvalidFileException("Failed to upload file: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            blobStorageService.discard(staged);
+            throw e;
         }
+    }
 
-        fileVersionRepository.delete(fileVersion);
+    private Map<Long, Document> loadForUpload(Collection<Long> documentIds, String username) {
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(documentIds);
+        Map<Long, Document> documents = documentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Document::getId, Function.identity()));
+        for (Long id : ids) {
+            if (!documents.containsKey(id)) {
+                throw new DocumentNotFoundException("Document not found with id: " + id);
+            }
+        }
+        accessEvaluator.checkAccess(documents.values().stream().map(document -> document.getOwner().getId()).toList(),
+                username, "You don't have permission to upload files to this document");
+        return documents;
     }
 
     private void validateFile(MultipartFile file) {
@@ -175,10 +405,6 @@ public class FileService {
         }
     }
 
-    private String generateFileKey() {
-        return UUID.randomUUID().toString();
-    }
-
     private FileVersionDTO mapToDTO(FileVersion fileVersion) {
         return FileVersionDTO.builder()
                 .id(fileVersion.getId())
@@ -186,15 +412,15 @@ public class FileService {
                 .fileName(fileVersion.getFileName())
                 .contentType(fileVersion.getContentType())
                 .fileSize(fileVersion.getFileSize())
+                .checksum(fileVersion.getChecksum())
                 .uploadedByUsername(fileVersion.getUploadedBy().getUsername())
                 .uploadedAt(fileVersion.getUploadedAt())
                 .build();
     }
 
-    private boolean isAdmin(String username) {
-        return userRepository.findByUsername(username)
-                .map(u -> u.getRole() == User.UserRole.ADMIN)
-                .orElse(false);
+    /**
+     * Conteúdo já preparado em staging e o documento que vai recebê-lo, em um upload em lote
+     */
+    public record StagedUpload(Long documentId, String fileName, StagedBlob blob) {
     }
 }
-
@@ -0,0 +1,314 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.model.Rendition;
+import br.com.gabrielvogado.desafiouds.model.RenditionJob;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.RenditionJobRepository;
+import br.com.gabrielvogado.desafiouds.repository.RenditionRepository;
+import br.com.gabrielvogado.desafiouds.storage.BandwidthScheduler;
+import br.com.gabrielvogado.desafiouds.storage.RenditionRenderer;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Rendições de versões (miniatura e prévia da primeira página) geradas em segundo plano
+ * O job entra na tabela rendition_jobs na mesma transação da versão e é despachado para o renditionExecutor
+ * após o commit. Jobs que não couberem na fila, que falharem ou que ficarem de um reinício são retomados
+ * pela varredura periódica.
+ */
+@Service
+public class RenditionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenditionService.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private RenditionRepository renditionRepository;
+
+    @Autowired
+    private RenditionJobRepository renditionJobRepository;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("renditionExecutor")
+    private Executor renditionExecutor;
+
+    @Value("${file.rendition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.rendition.thumbnail-size:256}")
+    private int thumbnailSize;
+
+    @Value("${file.rendition.preview-size:1024}")
+    private int previewSize;
+
+    /**
+     * Origens com mais pixels que isso não são renderizadas
+     */
+    @Value("${file.rendition.max-source-pixels:100000000}")
+    private long maxSourcePixels;
+
+    @Value("${file.rendition.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${file.rendition.retry-delay:PT1M}")
+    private Duration retryDelay;
+
+    /**
+     * Jobs em processamento há mais tempo que isso voltam para a fila (worker interrompido)
+     */
+    @Value("${file.rendition.stale-after:PT15M}")
+    private Duration staleAfter;
+
+    @Value("${file.rendition.batch-size:50}")
+    private int batchSize;
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Agenda as rendições da versão recém-criada; o processamento começa após o commit
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(FileVersion version) {
+        if (!enabled || !RenditionRenderer.SUPPORTED_TYPES.contains(version.getContentType())) {
+            return;
+        }
+        renditionJobRepository.enqueue(version.getId());
+
+        Long versionId = version.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(versionId);
+            }
+        });
+    }
+
+    /**
+     * Metadados e conteúdo da rendição; a autorização sobre a versão é feita por quem chama
+     */
+    @Transactional(readOnly = true)
+    public FileDownload getRendition(Long versionId, String kind) {
+        Rendition.Kind parsed;
+        try {
+            parsed = Rendition.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new DocumentNotFoundException("Unknown rendition: " + kind);
+        }
+
+        Rendition rendition = renditionRepository.findByFileVersionIdAndKind(versionId, parsed)
+                .orElseThrow(() -> new DocumentNotFoundException("Rendition " + kind + " not available for version: " + versionId));
+
+        return FileDownload.builder()
+                .versionId(versionId)
+                .fileKey(rendition.getBlobKey())
+                .fileName(kind.toLowerCase(Locale.ROOT) + "-" + versionId + extension(rendition.getContentType()))
+                .contentType(rendition.getContentType())
+                .contentLength(rendition.getSize())
+                .checksum(rendition.getBlobKey())
+                .uploadedAt(rendition.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Como openRendition, no ritmo que o BandwidthScheduler conceder ao usuário, como os downloads dos originais
+     */
+    public FileDownload openRendition(FileDownload rendition, Long userId, User.UserRole role) {
+        FileDownload opened = openRendition(rendition);
+        return opened.toBuilder()
+                .resource(bandwidthScheduler.throttle(opened.getResource(), userId, role))
+                .build();
+    }
+
+    public FileDownload openRendition(FileDownload rendition) {
+        try {
+            Resource resource = blobStorageService.open(rendition.getFileKey())
+                    .orElseThrow(() -> new InvalidFileException("Rendition not found on disk: " + rendition.getFileKey()));
+            return rendition.toBuilder().resource(resource).build();
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to read rendition: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Libera os blobs das rendições das versões; chamado antes de apagá-las
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteRenditions(Collection<Long> versionIds) {
+        if (versionIds.isEmpty()) {
+            return;
+        }
+        List<Rendition> renditions = renditionRepository.findByFileVersionIdIn(versionIds);
+        renditionRepository.deleteAll(renditions);
+        renditions.forEach(rendition -> blobStorageService.release(rendition.getBlobKey()));
+    }
+
+    /**
+     * Retoma jobs pendentes: os que não couberam na fila, os que aguardam nova tentativa e os de antes de um reinício
+     */
+    @Scheduled(fixedDelayString = "${file.rendition.poll-interval:PT30S}")
+    public void dispatchPending() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Integer released = transactionTemplate.execute(status -> renditionJobRepository.releaseStale(now.minus(staleAfter)));
+        if (released != null && released > 0) {
+            logger.warn("Returned {} stalled rendition jobs to the queue", released);
+        }
+        for (Long versionId : renditionJobRepository.findDueIds(now, batchSize)) {
+            dispatch(versionId);
+        }
+    }
+
+    private void dispatch(Long versionId) {
+        if (!inFlight.add(versionId)) {
+            return;
+        }
+        try {
+            renditionExecutor.execute(() -> {
+                try {
+                    process(versionId);
+                } finally {
+                    inFlight.remove(versionId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Continua pendente no banco; a próxima varredura tenta de novo
+            inFlight.remove(versionId);
+            logger.debug("Rendition queue full, version {} left for the next poll", versionId);
+        }
+    }
+
+    void process(Long versionId) {
+        Integer claimed = transactionTemplate.execute(status -> renditionJobRepository.claim(versionId, LocalDateTime.now()));
+        if (claimed == null || claimed == 0) {
+            return;
+        }
+
+        List<RenderedImage> rendered = new ArrayList<>();
+        try {
+            FileVersion version = fileVersionRepository.findById(versionId).orElse(null);
+            if (version == null) {
+                // Versão apagada; o job sai junto com ela
+                return;
+            }
+            Path source = blobStorageService.materialize(version.getFileKey())
+                    .orElseThrow(() -> new IOException("Content of version " + versionId + " not found"));
+
+            String outputType = RenditionRenderer.outputType(version.getContentType());
+            BufferedImage preview = RenditionRenderer.render(source, version.getContentType(), previewSize, maxSourcePixels);
+            BufferedImage thumbnail = RenditionRenderer.scale(preview, thumbnailSize, outputType);
+            rendered.add(stage(Rendition.Kind.PREVIEW, preview, outputType));
+            rendered.add(stage(Rendition.Kind.THUMBNAIL, thumbnail, outputType));
+
+            transactionTemplate.executeWithoutResult(status -> store(versionId, rendered));
+        } catch (IOException | RuntimeException e) {
+            rendered.forEach(image -> blobStorageService.discard(image.blob()));
+            fail(versionId, e);
+        }
+    }
+
+    private RenderedImage stage(Rendition.Kind kind, BufferedImage image, String outputType) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        RenditionRenderer.write(image, outputType, encoded);
+        try (InputStream in = new ByteArrayInputStream(encoded.toByteArray())) {
+            StagedBlob blob = blobStorageService.stage(in, outputType, Long.MAX_VALUE);
+            return new RenderedImage(kind, blob, image.getWidth(), image.getHeight());
+        }
+    }
+
+    private void store(Long versionId, List<RenderedImage> rendered) {
+        if (fileVersionRepository.findForUpdateById(versionId).isEmpty()) {
+            rendered.forEach(image -> blobStorageService.discard(image.blob()));
+            return;
+        }
+        for (RenderedImage image : rendered) {
+            String key;
+            try {
+                key = blobStorageService.commit(image.blob());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            renditionRepository.save(Rendition.builder()
+                    .fileVersionId(versionId)
+                    .kind(image.kind())
+                    .blobKey(key)
+                    .contentType(image.blob().getUpload().getContentType())
+                    .width(image.width())
+                    .height(image.height())
+                    .size(image.blob().getUpload().getSize())
+                    .build());
+        }
+        renditionJobRepository.deleteById(versionId);
+    }
+
+    private void fail(Long versionId, Exception error) {
+        transactionTemplate.executeWithoutResult(status -> renditionJobRepository.findById(versionId).ifPresent(job -> {
+            String message = String.valueOf(error.getMessage());
+            job.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+            job.setStartedAt(null);
+            if (job.getAttempts() >= maxAttempts) {
+                job.setStatus(RenditionJob.Status.FAILED);
+                logger.warn("Giving up renditions for version {} after {} attempts", versionId, job.getAttempts(), error);
+            } else {
+                job.setStatus(RenditionJob.Status.PENDING);
+                job.setNextAttemptAt(LocalDateTime.now().plus(retryDelay.multipliedBy(job.getAttempts())));
+                logger.info("Renditions for version {} failed, retrying later: {}", versionId, message);
+            }
+        }));
+    }
+
+    private static String extension(String contentType) {
+        return "image/png".equals(contentType) ? ".png" : ".jpg";
+    }
+
+    private record RenderedImage(Rendition.Kind kind, StagedBlob blob, int width, int height) {
+    }
+}
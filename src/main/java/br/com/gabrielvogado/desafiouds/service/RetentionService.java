@@ -0,0 +1,340 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.config.SchedulingConfig;
+import br.com.gabrielvogado.desafiouds.dto.RetentionPolicyDTO;
+import br.com.gabrielvogado.desafiouds.dto.RetentionPolicyRequest;
+import br.com.gabrielvogado.desafiouds.dto.RetentionReport;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.RetentionPolicy;
+import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository.VersionStamp;
+import br.com.gabrielvogado.desafiouds.repository.RetentionPolicyRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Políticas de retenção de versões e a poda periódica
+ * A varredura percorre os documentos em lotes, sem transação, e as versões expiradas são apagadas em lotes de
+ * file.retention.delete-batch-size, cada um em uma transação curta que remove linhas, rendições e referências
+ * aos blobs juntas. Antes de apagar, a política é reavaliada com as versões atuais dos documentos do lote.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    @Autowired
+    private RetentionPolicyRepository retentionPolicyRepository;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private AccessEvaluator accessEvaluator;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.retention.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Na execução agendada, apenas registra no log o que seria removido
+     */
+    @Value("${file.retention.dry-run:false}")
+    private boolean scheduledDryRun;
+
+    @Value("${file.retention.scan-batch-size:200}")
+    private int scanBatchSize;
+
+    @Value("${file.retention.delete-batch-size:100}")
+    private int deleteBatchSize;
+
+    @Value("${file.retention.report-max-documents:100}")
+    private int reportMaxDocuments;
+
+    @Transactional(readOnly = true)
+    public RetentionPolicyDTO getGlobalPolicy(String username) {
+        requireAdmin(username);
+        return retentionPolicyRepository.findGlobal()
+                .map(this::mapToDTO)
+                .orElseThrow(() -> new DocumentNotFoundException("No global retention policy"));
+    }
+
+    @Transactional
+    public RetentionPolicyDTO setGlobalPolicy(RetentionPolicyRequest request, String username) {
+        requireAdmin(username);
+        RetentionPolicy policy = retentionPolicyRepository.findGlobal().orElseGet(RetentionPolicy::new);
+        return mapToDTO(retentionPolicyRepository.save(apply(policy, request)));
+    }
+
+    @Transactional
+    public void deleteGlobalPolicy(String username) {
+        requireAdmin(username);
+        retentionPolicyRepository.findGlobal().ifPresent(retentionPolicyRepository::delete);
+    }
+
+    @Transactional(readOnly = true)
+    public RetentionPolicyDTO getDocumentPolicy(Long documentId, String username) {
+        requireAccess(documentId, username);
+        return retentionPolicyRepository.findByDocumentId(documentId)
+                .map(this::mapToDTO)
+                .orElseThrow(() -> new DocumentNotFoundException("No retention policy for document: " + documentId));
+    }
+
+    @Transactional
+    public RetentionPolicyDTO setDocumentPolicy(Long documentId, RetentionPolicyRequest request, String username) {
+        requireAccess(documentId, username);
+        RetentionPolicy policy = retentionPolicyRepository.findByDocumentId(documentId)
+                .orElseGet(() -> RetentionPolicy.builder().documentId(documentId).build());
+        return mapToDTO(retentionPolicyRepository.save(apply(policy, request)));
+    }
+
+    @Transactional
+    public void deleteDocumentPolicy(Long documentId, String username) {
+        requireAccess(documentId, username);
+        retentionPolicyRepository.findByDocumentId(documentId).ifPresent(retentionPolicyRepository::delete);
+    }
+
+    /**
+     * Versões do documento que a política em vigor removeria, sem remover nada
+     */
+    @Transactional(readOnly = true)
+    public RetentionReport previewDocument(Long documentId, String username) {
+        requireAccess(documentId, username);
+        RetentionPolicy policy = retentionPolicyRepository.findByDocumentId(documentId)
+                .or(retentionPolicyRepository::findGlobal)
+                .orElse(null);
+        RetentionReport report = RetentionReport.builder().dryRun(true).documentsScanned(1).build();
+        if (policy != null) {
+            record(report, documentId, expired(fileVersionRepository.findStampsByDocumentIdIn(List.of(documentId)),
+                    policy, LocalDateTime.now()));
+        }
+        return report;
+    }
+
+    /**
+     * Aplica as políticas a todos os documentos; em dry-run apenas monta o relatório
+     */
+    public RetentionReport prune(boolean dryRun, String username) {
+        requireAdmin(username);
+        return prune(dryRun);
+    }
+
+    @Scheduled(fixedDelayString = "${file.retention.interval:PT6H}", initialDelayString = "${file.retention.initial-delay:PT10M}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void pruneScheduled() {
+        if (!enabled) {
+            return;
+        }
+        RetentionReport report = prune(scheduledDryRun);
+        if (report.getVersionsExpired() > 0) {
+            logger.info("Retention{}: {} document(s) scanned, {} version(s) expired, {} deleted, {} byte(s) of versions",
+                    report.isDryRun() ? " (dry run)" : "", report.getDocumentsScanned(), report.getVersionsExpired(),
+                    report.getVersionsDeleted(), report.getBytesExpired());
+        }
+    }
+
+    synchronized RetentionReport prune(boolean dryRun) {
+        RetentionReport report = RetentionReport.builder().dryRun(dryRun).build();
+        RetentionPolicy global = retentionPolicyRepository.findGlobal().orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, RetentionPolicy> pendingPolicies = new LinkedHashMap<>();
+        List<Long> pendingVersions = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            List<Long> documentIds = retentionPolicyRepository.findDocumentIdsToPrune(global != null, after, scanBatchSize);
+            if (documentIds.isEmpty()) {
+                break;
+            }
+            Map<Long, RetentionPolicy> policies = retentionPolicyRepository.findByDocumentIdIn(documentIds).stream()
+                    .collect(Collectors.toMap(RetentionPolicy::getDocumentId, Function.identity()));
+            Map<Long, List<VersionStamp>> versions = groupByDocument(fileVersionRepository.findStampsByDocumentIdIn(documentIds));
+
+            for (Long documentId : documentIds) {
+                report.setDocumentsScanned(report.getDocumentsScanned() + 1);
+                RetentionPolicy policy = policies.getOrDefault(documentId, global);
+                List<VersionStamp> expired = expired(versions.getOrDefault(documentId, List.of()), policy, now);
+                if (policy == null || expired.isEmpty()) {
+                    continue;
+                }
+                record(report, documentId, expired);
+                if (dryRun) {
+                    continue;
+                }
+                pendingPolicies.put(documentId, policy);
+                expired.forEach(version -> pendingVersions.add(version.getId()));
+                if (pendingVersions.size() >= deleteBatchSize) {
+                    report.setVersionsDeleted(report.getVersionsDeleted() + deleteBatch(pendingPolicies, pendingVersions, now));
+                }
+            }
+            if (documentIds.size() < scanBatchSize) {
+                break;
+            }
+            after = documentIds.get(documentIds.size() - 1);
+        }
+        if (!pendingVersions.isEmpty()) {
+            report.setVersionsDeleted(report.getVersionsDeleted() + deleteBatch(pendingPolicies, pendingVersions, now));
+        }
+        return report;
+    }
+
+    /**
+     * Versões que nenhuma regra mantém; versions deve vir da mais recente para a mais antiga
+     */
+    static List<VersionStamp> expired(List<VersionStamp> versions, RetentionPolicy policy, LocalDateTime now) {
+        if (policy == null) {
+            return List.of();
+        }
+        LocalDate dailyFrom = policy.getKeepDailyDays() != null
+                ? now.toLocalDate().minusDays(policy.getKeepDailyDays() - 1L)
+                : null;
+        YearMonth monthlyFrom = policy.getKeepMonthlyMonths() != null
+                ? YearMonth.from(now).minusMonths(policy.getKeepMonthlyMonths() - 1L)
+                : null;
+        int keepLast = policy.getKeepLast() != null ? Math.max(1, policy.getKeepLast()) : 1;
+
+        Set<LocalDate> days = new HashSet<>();
+        Set<YearMonth> months = new HashSet<>();
+        List<VersionStamp> expired = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            VersionStamp version = versions.get(i);
+            LocalDate day = version.getUploadedAt().toLocalDate();
+            YearMonth month = YearMonth.from(day);
+            // Os conjuntos guardam o primeiro visto de cada dia e mês, ou seja, o mais recente
+            boolean keptByDay = dailyFrom != null && !day.isBefore(dailyFrom) && days.add(day);
+            boolean keptByMonth = monthlyFrom != null && !month.isBefore(monthlyFrom) && months.add(month);
+            if (i >= keepLast && !keptByDay && !keptByMonth) {
+                expired.add(version);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Apaga as versões pendentes em lotes de delete-batch-size e esvazia os pendentes
+     */
+    private int deleteBatch(Map<Long, RetentionPolicy> policies, List<Long> versionIds, LocalDateTime now) {
+        int deleted = 0;
+        for (int from = 0; from < versionIds.size(); from += deleteBatchSize) {
+            deleted += deleteChunk(policies, List.copyOf(versionIds.subList(from, Math.min(versionIds.size(), from + deleteBatchSize))), now);
+        }
+        versionIds.clear();
+        policies.clear();
+        return deleted;
+    }
+
+    /**
+     * Apaga um lote em uma transação curta
+     * As versões do lote são travadas e a política é reavaliada com o estado atual dos seus documentos, para que
+     * uma exclusão ou upload concorrente não faça sumir uma versão que a política manteria
+     */
+    private int deleteChunk(Map<Long, RetentionPolicy> policies, List<Long> ids, LocalDateTime now) {
+        Map<Long, RetentionPolicy> batchPolicies = Map.copyOf(policies);
+        try {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<FileVersion> locked = fileVersionRepository.findForUpdateByIdIn(ids);
+                Map<Long, List<VersionStamp>> current = groupByDocument(fileVersionRepository.findStampsByDocumentIdIn(batchPolicies.keySet()));
+                Set<Long> stillExpired = new HashSet<>();
+                current.forEach((documentId, versions) ->
+                        expired(versions, batchPolicies.get(documentId), now).forEach(version -> stillExpired.add(version.getId())));
+
+                List<FileVersion> toDelete = locked.stream().filter(version -> stillExpired.contains(version.getId())).toList();
+                if (toDelete.isEmpty()) {
+                    return 0;
+                }
+                renditionService.deleteRenditions(toDelete.stream().map(FileVersion::getId).toList());
+                fileVersionRepository.deleteAllInBatch(toDelete);
+                toDelete.forEach(version -> blobStorageService.release(version.getFileKey()));
+                return toDelete.size();
+            });
+            return deleted != null ? deleted : 0;
+        } catch (RuntimeException e) {
+            logger.warn("Could not delete a batch of {} expired version(s); retrying on the next run", ids.size(), e);
+            return 0;
+        }
+    }
+
+    private void record(RetentionReport report, Long documentId, List<VersionStamp> expired) {
+        if (expired.isEmpty()) {
+            return;
+        }
+        long bytes = expired.stream().mapToLong(VersionStamp::getFileSize).sum();
+        report.setVersionsExpired(report.getVersionsExpired() + expired.size());
+        report.setBytesExpired(report.getBytesExpired() + bytes);
+        if (report.getDocuments().size() < reportMaxDocuments) {
+            report.getDocuments().add(RetentionReport.DocumentEntry.builder()
+                    .documentId(documentId)
+                    .expiredVersionIds(expired.stream().map(VersionStamp::getId).toList())
+                    .bytes(bytes)
+                    .build());
+        }
+    }
+
+    private static Map<Long, List<VersionStamp>> groupByDocument(List<VersionStamp> versions) {
+        // A ordem da consulta (mais recente primeiro) é preservada em cada grupo
+        return versions.stream().collect(Collectors.groupingBy(VersionStamp::getDocumentId, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private RetentionPolicy apply(RetentionPolicy policy, RetentionPolicyRequest request) {
+        policy.setKeepLast(request.getKeepLast());
+        policy.setKeepDailyDays(request.getKeepDailyDays());
+        policy.setKeepMonthlyMonths(request.getKeepMonthlyMonths());
+        return policy;
+    }
+
+    private RetentionPolicyDTO mapToDTO(RetentionPolicy policy) {
+        return RetentionPolicyDTO.builder()
+                .documentId(policy.getDocumentId())
+                .keepLast(policy.getKeepLast())
+                .keepDailyDays(policy.getKeepDailyDays())
+                .keepMonthlyMonths(policy.getKeepMonthlyMonths())
+                .updatedAt(policy.getUpdatedAt())
+                .build();
+    }
+
+    private void requireAccess(Long documentId, String username) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to manage retention of this document");
+    }
+
+    private void requireAdmin(String username) {
+        if (!accessEvaluator.isAdmin(username)) {
+            throw new UnauthorizedException("Only administrators can manage global retention");
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.config.SchedulingConfig;
+import br.com.gabrielvogado.desafiouds.model.StoredBlob;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.BlobLayout;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reconciliação entre o armazenamento e o banco
+ * A cada execução percorre um trecho dos diretórios de shard, confere os arquivos em lotes contra a tabela blobs
+ * (e file_versions, para arquivos antigos) e move os órfãos para a quarentena, de onde são apagados após
+ * file.storage.reconcile.quarantine-ttl. Também confere um lote de chaves referenciadas, reportando as que faltam
+ * no disco, e limpa staging e reconstruções antigas. As posições ficam em .reconcile/cursor, de modo que cada
+ * execução continua de onde a anterior parou; o ritmo de I/O é limitado por max-files-per-second.
+ */
+@Service
+@ConditionalOnProperty(name = "file.storage.reconcile.enabled", havingValue = "true")
+public class StorageReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageReconciliationService.class);
+    private static final String QUARANTINE_DIR = ".quarantine";
+    private static final String CURSOR_FILE = ".reconcile/cursor";
+    private static final int SHARD_COUNT = 256 * 256;
+
+    @Autowired
+    private LocalStorageBackend storageBackend;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Value("${file.storage.path:./uploads}")
+    private String storagePath;
+
+    /**
+     * Diretórios de shard percorridos por execução (cada ponto de montagem tem 65536, mais a raiz)
+     */
+    @Value("${file.storage.reconcile.shards-per-run:1024}")
+    private int shardsPerRun;
+
+    @Value("${file.storage.reconcile.verify-per-run:1000}")
+    private int verifyPerRun;
+
+    @Value("${file.storage.reconcile.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Limite de arquivos examinados por segundo; 0 desativa o limite
+     */
+    @Value("${file.storage.reconcile.max-files-per-second:200}")
+    private int maxFilesPerSecond;
+
+    /**
+     * Arquivos mais novos que isso não são tocados: podem pertencer a um upload ainda não confirmado
+     */
+    @Value("${file.storage.reconcile.min-age:PT1H}")
+    private Duration minAge;
+
+    @Value("${file.storage.reconcile.quarantine-ttl:P7D}")
+    private Duration quarantineTtl;
+
+    @Value("${file.storage.reconcile.staging-ttl:PT24H}")
+    private Duration stagingTtl;
+
+    @Value("${file.storage.delta.rebuilt-ttl:PT1H}")
+    private Duration rebuiltTtl;
+
+    private long nextPermitNanos;
+
+    @Scheduled(fixedDelayString = "${file.storage.reconcile.interval:PT10M}", scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public synchronized void reconcile() throws IOException {
+        Report report = run();
+        if (report.getQuarantined() > 0 || report.getDeleted() > 0 || report.getRestored() > 0 || report.getPurged() > 0) {
+            logger.info("Storage reconciliation: {} file(s) checked, {} quarantined, {} deleted from quarantine, "
+                            + "{} restored, {} temporary file(s) purged",
+                    report.getChecked(), report.getQuarantined(), report.getDeleted(), report.getRestored(), report.getPurged());
+        }
+        if (!report.getMissing().isEmpty()) {
+            logger.warn("Storage reconciliation: {} referenced blob(s) missing from storage: {}",
+                    report.getMissing().size(), report.getMissing());
+        }
+    }
+
+    /**
+     * Executa um passo da reconciliação e devolve o que foi feito
+     */
+    public synchronized Report run() throws IOException {
+        Properties cursor = loadCursor();
+        Report report = new Report();
+        try {
+            walkShards(cursor, report);
+            verifyReferences(cursor, report);
+            releaseQuarantine(report);
+            report.purged += blobStorageService.purgeStaging(stagingTtl);
+            report.purged += blobStorageService.purgeRebuilt(rebuiltTtl);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            saveCursor(cursor);
+        }
+        return report;
+    }
+
+    /**
+     * Percorre os próximos diretórios de shard; o índice SHARD_COUNT representa a raiz do ponto de montagem
+     * (layout plano antigo); o diretório plano fora dos pontos de montagem entra no rodízio só com a raiz
+     */
+    private void walkShards(Properties cursor, Report report) throws IOException, InterruptedException {
+        List<Path> mounts = scanRoots();
+        int shardedMounts = storageBackend.getMountPaths().size();
+        int mountIndex = Math.floorMod(Integer.parseInt(cursor.getProperty("mount", "0")), mounts.size());
+        int shard = Integer.parseInt(cursor.getProperty("shard", "0"));
+        FileTime newest = FileTime.from(Instant.now().minus(minAge));
+        Map<String, Path> pending = new LinkedHashMap<>();
+
+        for (int step = 0; step < shardsPerRun; step++) {
+            Path mount = mounts.get(mountIndex);
+            if (mountIndex >= shardedMounts) {
+                shard = SHARD_COUNT;
+            }
+            pace();
+            for (Path file : listFiles(shardDir(mount, shard))) {
+                pace();
+                if (!isCandidate(file, newest)) {
+                    continue;
+                }
+                pending.put(file.getFileName().toString(), file);
+                if (pending.size() >= batchSize) {
+                    quarantineOrphans(pending, report);
+                }
+            }
+            quarantineOrphans(pending, report);
+
+            if (++shard > SHARD_COUNT) {
+                shard = 0;
+                mountIndex = (mountIndex + 1) % mounts.size();
+            }
+            cursor.setProperty("mount", String.valueOf(mountIndex));
+            cursor.setProperty("shard", String.valueOf(shard));
+        }
+    }
+
+    /**
+     * Confere um lote de arquivos com duas consultas e põe em quarentena os que nada referencia
+     */
+    private void quarantineOrphans(Map<String, Path> files, Report report) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        Set<String> blobKeys = new HashSet<>();
+        files.keySet().forEach(key -> blobKeys.add(BlobStorageService.blobKey(key)));
+
+        Set<String> referenced = new HashSet<>();
+        Set<String> registered = new HashSet<>();
+        for (BlobLayout blob : storedBlobRepository.findLayouts(blobKeys)) {
+            registered.add(blob.getHash());
+            if (blob.getTier() == StoredBlob.Tier.COLD) {
+                // Na camada fria, arquivos quentes que restaram de uma mudança interrompida são sobras
+                continue;
+            }
+            referenced.addAll(BlobStorageService.storageKeys(blob.getHash(), blob.getEncoding(), blob.getBaseHash()));
+        }
+        List<String> unregistered = files.keySet().stream()
+                .filter(key -> !registered.contains(BlobStorageService.blobKey(key)))
+                .toList();
+        if (!unregistered.isEmpty()) {
+            referenced.addAll(fileVersionRepository.findExistingFileKeys(unregistered));
+        }
+
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            report.checked++;
+            if (referenced.contains(file.getKey())) {
+                continue;
+            }
+            Path quarantine = quarantineDir(file.getValue());
+            try {
+                if (blobStorageService.quarantineIfOrphan(file.getKey(), file.getValue(), quarantine)) {
+                    report.quarantined++;
+                    logger.info("Quarantined orphan storage file {}", file.getKey());
+                }
+            } catch (NoSuchFileException e) {
+                // Removido por outra operação desde a listagem
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * Confere se as próximas chaves referenciadas por versões existem no armazenamento
+     */
+    private void verifyReferences(Properties cursor, Report report) throws InterruptedException {
+        String after = cursor.getProperty("verify", "");
+        int verified = 0;
+        while (verified < verifyPerRun) {
+            int limit = Math.min(batchSize, verifyPerRun - verified);
+            List<String> keys = fileVersionRepository.findFileKeysAfter(after, limit);
+            for (String key : keys) {
+                pace();
+                if (!blobStorageService.isStored(key)) {
+                    report.missing.add(key);
+                }
+                after = key;
+            }
+            verified += keys.size();
+            if (keys.size() < limit) {
+                // Fim da tabela: a próxima execução recomeça do início
+                after = "";
+                break;
+            }
+        }
+        cursor.setProperty("verify", after);
+    }
+
+    private void releaseQuarantine(Report report) throws IOException, InterruptedException {
+        FileTime expired = FileTime.from(Instant.now().minus(quarantineTtl));
+        for (Path mount : scanRoots()) {
+            for (Path file : listFiles(mount.resolve(QUARANTINE_DIR))) {
+                pace();
+                if (Files.getLastModifiedTime(file).compareTo(expired) >= 0) {
+                    continue;
+                }
+                String key = file.getFileName().toString();
+                if (blobStorageService.releaseQuarantined(key, file)) {
+                    report.restored++;
+                    logger.warn("Restored quarantined file {}: it is referenced again", key);
+                } else {
+                    report.deleted++;
+                }
+            }
+        }
+    }
+
+    private boolean isCandidate(Path file, FileTime newest) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".tmp")) {
+            return false;
+        }
+        try {
+            return Files.isRegularFile(file) && Files.getLastModifiedTime(file).compareTo(newest) < 0;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private List<Path> listFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files.filter(file -> !Files.isDirectory(file)).toList());
+        }
+    }
+
+    /**
+     * Pontos de montagem e, se estiver fora deles, o diretório plano antigo, onde ainda pode haver arquivos
+     */
+    private List<Path> scanRoots() {
+        List<Path> roots = new ArrayList<>(storageBackend.getMountPaths());
+        storageBackend.getLegacyRoot().ifPresent(roots::add);
+        return roots;
+    }
+
+    private static Path shardDir(Path mount, int shard) {
+        if (shard == SHARD_COUNT) {
+            return mount;
+        }
+        return mount.resolve(String.format("%02x", shard >> 8)).resolve(String.format("%02x", shard & 0xFF));
+    }
+
+    /**
+     * Quarentena no mesmo ponto de montagem do arquivo, para que a movimentação seja um rename
+     */
+    private Path quarantineDir(Path file) {
+        for (Path mount : storageBackend.getMountPaths()) {
+            if (file.startsWith(mount)) {
+                return mount.resolve(QUARANTINE_DIR);
+            }
+        }
+        return Paths.get(storagePath).resolve(QUARANTINE_DIR);
+    }
+
+    /**
+     * Espaça os acessos ao disco para não passar de maxFilesPerSecond
+     */
+    private void pace() throws InterruptedException {
+        if (maxFilesPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextPermitNanos > now) {
+            TimeUnit.NANOSECONDS.sleep(nextPermitNanos - now);
+            now = nextPermitNanos;
+        }
+        nextPermitNanos = now + TimeUnit.SECONDS.toNanos(1) / maxFilesPerSecond;
+    }
+
+    private Properties loadCursor() throws IOException {
+        Properties cursor = new Properties();
+        Path file = Paths.get(storagePath).resolve(CURSOR_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                cursor.load(in);
+            }
+        }
+        return cursor;
+    }
+
+    private void saveCursor(Properties cursor) throws IOException {
+        Path file = Paths.get(storagePath).resolve(CURSOR_FILE);
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            cursor.store(out, "Storage reconciliation position");
+        }
+    }
+
+    /**
+     * Resultado de uma execução
+     */
+    @Getter
+    public static class Report {
+
+        private int checked;
+        private int quarantined;
+        private int deleted;
+        private int restored;
+        private int purged;
+        private final List<String> missing = new ArrayList<>();
+    }
+}
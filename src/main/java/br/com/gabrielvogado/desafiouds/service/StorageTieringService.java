@@ -0,0 +1,219 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.config.SchedulingConfig;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.ColdCandidate;
+import br.com.gabrielvogado.desafiouds.storage.ColdStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Camadas quente e fria do armazenamento
+ * O último acesso de cada versão é acumulado em memória e gravado em lotes. Blobs cujas versões não são baixadas
+ * há mais de file.storage.tiering.cold-after vão para os pacotes da ColdStorage e voltam para a camada quente
+ * quando são lidos repetidas vezes. As mudanças de camada respeitam um limite de bytes por segundo.
+ */
+@Service
+public class StorageTieringService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageTieringService.class);
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private ColdStorage coldStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.storage.tiering.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.storage.tiering.cold-after:P180D}")
+    private Duration coldAfter;
+
+    @Value("${file.storage.tiering.max-blobs-per-run:500}")
+    private int maxBlobsPerRun;
+
+    @Value("${file.storage.tiering.batch-size:100}")
+    private int batchSize;
+
+    @Value("${file.storage.tiering.max-bytes-per-second:20971520}")
+    private long maxBytesPerSecond;
+
+    /**
+     * Leituras de um blob frio, dentro de promote-window, que o trazem de volta para a camada quente
+     */
+    @Value("${file.storage.tiering.promote-after-reads:2}")
+    private int promoteAfterReads;
+
+    @Value("${file.storage.tiering.promote-window:PT24H}")
+    private Duration promoteWindow;
+
+    private final Set<Long> pendingAccess = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Uma mudança de camada por vez; também protege nextPermitNanos
+     */
+    private final ReentrantLock tierLock = new ReentrantLock();
+    private long nextPermitNanos;
+
+    /**
+     * Registra o download de uma versão; gravado no banco pela próxima execução de flushAccess
+     */
+    public void recordAccess(Long versionId) {
+        pendingAccess.add(versionId);
+    }
+
+    /**
+     * Grava o acesso com a hora do flush; a precisão de um intervalo basta para um limite medido em dias
+     */
+    @Scheduled(fixedDelayString = "${file.storage.tiering.access-flush-interval:PT1M}")
+    public void flushAccess() {
+        LocalDateTime accessedAt = LocalDateTime.now();
+        List<Long> batch = new ArrayList<>();
+        Iterator<Long> pending = pendingAccess.iterator();
+        while (pending.hasNext()) {
+            batch.add(pending.next());
+            pending.remove();
+            if (batch.size() >= batchSize || !pending.hasNext()) {
+                List<Long> ids = List.copyOf(batch);
+                transactionTemplate.executeWithoutResult(status -> fileVersionRepository.updateLastAccessedAt(ids, accessedAt));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Traz de volta para a camada quente os blobs frios lidos repetidas vezes
+     */
+    @Scheduled(fixedDelayString = "${file.storage.tiering.promote-interval:PT1M}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void promotePending() throws InterruptedException {
+        // Com uma demoção em andamento a rodada é pulada, em vez de prender uma thread do maintenanceScheduler
+        if (!enabled || !tierLock.tryLock()) {
+            return;
+        }
+        try {
+            int promoted = 0;
+            for (String key : coldStorage.drainPromotionCandidates(promoteAfterReads, promoteWindow)) {
+                Long size = storedBlobRepository.findSize(key);
+                pace(size != null ? size : 0);
+                if (move(key, false)) {
+                    promoted++;
+                }
+            }
+            if (promoted > 0) {
+                logger.info("Storage tiering: {} blob(s) promoted to the hot tier", promoted);
+            }
+        } finally {
+            tierLock.unlock();
+        }
+    }
+
+    /**
+     * Move para a camada fria os blobs sem acesso recente e apaga os pacotes que ficaram sem entradas vivas
+     * Exclusiva com promotePending (tierLock), então nenhuma mudança de camada está em andamento ao apagar pacotes
+     */
+    @Scheduled(fixedDelayString = "${file.storage.tiering.interval:PT1H}", scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void demoteCold() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        tierLock.lock();
+        try {
+            demoteCandidates();
+        } finally {
+            tierLock.unlock();
+        }
+    }
+
+    private void demoteCandidates() throws IOException, InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minus(coldAfter);
+        LocalDateTime afterCreatedAt = CURSOR_START;
+        String afterHash = "";
+        int demoted = 0;
+        int remaining = maxBlobsPerRun;
+        while (remaining > 0) {
+            List<ColdCandidate> candidates = storedBlobRepository.findColdCandidates(cutoff, afterCreatedAt, afterHash,
+                    Math.min(batchSize, remaining));
+            for (ColdCandidate candidate : candidates) {
+                pace(candidate.getStoredSize());
+                if (move(candidate.getHash(), true)) {
+                    demoted++;
+                }
+            }
+            if (candidates.size() < Math.min(batchSize, remaining)) {
+                break;
+            }
+            // Blobs que não puderam ser movidos ficam para trás do cursor até a próxima execução
+            ColdCandidate last = candidates.get(candidates.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterHash = last.getHash();
+            remaining -= candidates.size();
+        }
+
+        int deletedPacks = coldStorage.deletePacksExcept(new HashSet<>(storedBlobRepository.findLivePackIds()));
+        if (demoted > 0 || deletedPacks > 0) {
+            logger.info("Storage tiering: {} blob(s) moved to the cold tier, {} empty pack(s) deleted", demoted, deletedPacks);
+        }
+    }
+
+    private boolean move(String key, boolean toCold) {
+        try {
+            Boolean moved = transactionTemplate.execute(status -> {
+                try {
+                    return toCold ? blobStorageService.demote(key) : blobStorageService.promote(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return Boolean.TRUE.equals(moved);
+        } catch (RuntimeException e) {
+            logger.warn("Could not move blob {} to the {} tier", key, toCold ? "cold" : "hot", e);
+            return false;
+        }
+    }
+
+    /**
+     * Limita as mudanças de camada a max-bytes-per-second, para não disputar o disco com downloads e uploads
+     */
+    private void pace(long bytes) throws InterruptedException {
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextPermitNanos > now) {
+            TimeUnit.NANOSECONDS.sleep(nextPermitNanos - now);
+            now = nextPermitNanos;
+        }
+        nextPermitNanos = now + (long) ((double) bytes * TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond);
+    }
+}
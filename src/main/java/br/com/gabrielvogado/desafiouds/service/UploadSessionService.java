@@ -0,0 +1,471 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionCreateRequest;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionDTO;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.UploadSession;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.UploadSessionRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.storage.FileSignature;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import br.com.gabrielvogado.desafiouds.storage.UploadPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Uploads retomáveis em partes
+ * Cada parte é gravada em disco com seu próprio checksum, em qualquer ordem e em paralelo.
+ * No commit as partes são lidas em sequência pelo mesmo pipeline de streaming do upload simples.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final String SESSIONS_DIR = ".staging/sessions";
+    private static final String CHUNK_SUFFIX = ".part";
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(5);
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private AccessEvaluator accessEvaluator;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.storage.path:./uploads}")
+    private String storagePath;
+
+    @Value("${file.upload-session.max-size:1073741824}")
+    private long maxSessionSize;
+
+    @Value("${file.upload-session.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${file.upload-session.max-chunk-size:" + UploadSessionCreateRequest.MAX_CHUNK_SIZE + "}")
+    private int maxChunkSize;
+
+    @Value("${file.upload-session.ttl:PT24H}")
+    private Duration sessionTtl;
+
+    @Value("${file.upload-session.commit-timeout:PT30M}")
+    private Duration commitTimeout;
+
+    @Transactional
+    public UploadSessionDTO createSession(Long documentId, UploadSessionCreateRequest request, String username) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new DocumentNotFoundException("Document not found with id: " + documentId));
+
+        User user = accessEvaluator.currentUser(username);
+        accessEvaluator.checkAccess(document.getOwner().getId(), username, "You don't have permission to upload files to this document");
+
+        if (!FileSignature.isSupported(request.getContentType())) {
+            throw new InvalidFileException("File type not allowed. Allowed types: PDF, PNG, JPEG");
+        }
+
+        if (request.getTotalSize() > maxSessionSize) {
+            throw new InvalidFileException("File size exceeds maximum allowed size of " + maxSessionSize + " bytes");
+        }
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize > maxChunkSize) {
+            throw new InvalidFileException("Chunk size exceeds maximum allowed size of " + maxChunkSize + " bytes");
+        }
+        long chunkCount = (request.getTotalSize() + chunkSize - 1) / chunkSize;
+
+        UploadSession session = UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .document(document)
+                .createdBy(user)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .totalSize(request.getTotalSize())
+                .chunkSize(chunkSize)
+                .chunkCount((int) chunkCount)
+                .expiresAt(LocalDateTime.now().plus(sessionTtl))
+                .build();
+
+        return mapToDTO(uploadSessionRepository.save(session), List.of());
+    }
+
+    @Transactional(readOnly = true)
+    public UploadSessionDTO getSession(String sessionId, String username) {
+        UploadSession session = findOwnedSession(sessionId, username);
+        return mapToDTO(session, receivedChunks(session));
+    }
+
+    /**
+     * Grava uma parte validando tamanho e SHA-256; reenviar a mesma parte substitui a anterior
+     * A transferência corre sem transação; só a troca do arquivo é feita sob a trava da sessão, para não
+     * alterar partes enquanto um commit as lê nem gravar numa sessão já confirmada
+     */
+    public void putChunk(String sessionId, int index, InputStream in, String sha256, String username) {
+        UploadSession session = findOwnedSession(sessionId, username);
+
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new InvalidFileException("Chunk index out of range: " + index);
+        }
+
+        long expectedLength = session.expectedChunkLength(index);
+        Path sessionDir = sessionDir(sessionId);
+        Path temp = sessionDir.resolve(index + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            Files.createDirectories(sessionDir);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[UploadPipeline.BUFFER_SIZE];
+            long written = 0;
+
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    written += read;
+                    if (written > expectedLength) {
+                        throw new InvalidFileException("Chunk " + index + " must have " + expectedLength + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            if (written != expectedLength) {
+                throw new InvalidFileException("Chunk " + index + " must have " + expectedLength + " bytes");
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(sha256)) {
+                throw new InvalidFileException("Checksum mismatch for chunk " + index);
+            }
+
+            moveChunkUnderLock(temp, sessionId, index);
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to store chunk " + index + ": " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw new InvalidFileException("Failed to store chunk " + index + ": " + e.getCause().getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Monta a versão a partir das partes, lendo-as em sequência direto do disco
+     * Sem transação aberta durante a montagem: uma transação curta reivindica a sessão (COMMITTING), as partes são
+     * copiadas para staging e outra transação curta registra a versão e marca a sessão COMMITTED. Se a montagem
+     * falhar a reivindicação é desfeita. Repetir um commit concluído (ex.: a resposta se perdeu) devolve a mesma versão.
+     */
+    public FileVersionDTO commit(String sessionId, String username) {
+        UploadSession session = transactionTemplate.execute(status -> claimForCommit(sessionId, username));
+        if (session == null) {
+            return fileService.findUploadSessionVersion(sessionId, username)
+                    .orElseThrow(() -> new DocumentNotFoundException("Upload session not found with id: " + sessionId));
+        }
+
+        StagedBlob staged;
+        try (InputStream in = new SequenceInputStream(new ChunkEnumeration(session))) {
+            staged = blobStorageService.stage(in, session.getContentType(), session.getTotalSize());
+        } catch (IOException | UncheckedIOException e) {
+            releaseClaim(session);
+            throw new InvalidFileException("Failed to assemble upload: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            releaseClaim(session);
+            throw e;
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                UploadSession locked = uploadSessionRepository.findByIdForUpdate(sessionId).orElse(null);
+                if (locked == null) {
+                    blobStorageService.discard(staged);
+                    throw new DocumentNotFoundException("Upload session expired while committing: " + sessionId);
+                }
+                if (!holdsClaim(locked, session)) {
+                    // A reivindicação venceu e outro commit assumiu a sessão
+                    blobStorageService.discard(staged);
+                    throw new ServiceBusyException("Upload session " + sessionId + " is being committed by another request", RETRY_AFTER);
+                }
+                FileVersionDTO version = fileService.registerStagedVersion(
+                        session.getDocument().getId(), staged, session.getFileName(), sessionId, username);
+                locked.setState(UploadSession.State.COMMITTED);
+                deleteSessionDirAfterCommit(sessionId);
+                return version;
+            });
+        } catch (RuntimeException e) {
+            releaseClaim(session);
+            throw e;
+        }
+    }
+
+    @Transactional
+    public void abort(String sessionId, String username) {
+        UploadSession session = uploadSessionRepository.findByIdForUpdate(sessionId)
+                .orElseThrow(() -> new DocumentNotFoundException("Upload session not found with id: " + sessionId));
+        checkOwner(session, username);
+        if (isCommitInProgress(session)) {
+            throw new ServiceBusyException("Upload session " + sessionId + " is being committed", RETRY_AFTER);
+        }
+        uploadSessionRepository.delete(session);
+        deleteSessionDir(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${file.upload-session.cleanup-interval:PT1H}")
+    @Transactional
+    public void purgeExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now());
+        for (UploadSession session : expired) {
+            uploadSessionRepository.delete(session);
+            deleteSessionDir(session.getId());
+        }
+        if (!expired.isEmpty()) {
+            logger.info("Purged {} expired upload session(s)", expired.size());
+        }
+    }
+
+    private UploadSession findOwnedSession(String sessionId, String username) {
+        UploadSession session = uploadSessionRepository.findWithCreatorById(sessionId)
+                .orElseThrow(() -> new DocumentNotFoundException("Upload session not found with id: " + sessionId));
+        checkOwner(session, username);
+        checkNotExpired(session);
+        return session;
+    }
+
+    private void checkNotExpired(UploadSession session) {
+        if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new DocumentNotFoundException("Upload session expired: " + session.getId());
+        }
+    }
+
+    /**
+     * Reivindica a sessão para um commit; null quando o commit já foi concluído
+     */
+    private UploadSession claimForCommit(String sessionId, String username) {
+        Optional<UploadSession> locked = uploadSessionRepository.findByIdForUpdate(sessionId);
+        if (locked.isEmpty() || locked.get().getState() == UploadSession.State.COMMITTED) {
+            locked.ifPresent(session -> checkOwner(session, username));
+            return null;
+        }
+        UploadSession session = locked.get();
+        checkOwner(session, username);
+        checkNotExpired(session);
+        if (isCommitInProgress(session)) {
+            throw new ServiceBusyException("Upload session " + sessionId + " is already being committed", RETRY_AFTER);
+        }
+
+        List<Integer> received = receivedChunks(session);
+        if (received.size() != session.getChunkCount()) {
+            throw new InvalidFileException("Upload incomplete: received " + received.size()
+                    + " of " + session.getChunkCount() + " chunks");
+        }
+
+        session.setState(UploadSession.State.COMMITTING);
+        // Em milissegundos, para sobreviver intacto à precisão da coluna e identificar esta reivindicação
+        session.setCommitStartedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        return session;
+    }
+
+    private static boolean holdsClaim(UploadSession current, UploadSession claimed) {
+        return current.getState() == UploadSession.State.COMMITTING
+                && Objects.equals(current.getCommitStartedAt(), claimed.getCommitStartedAt());
+    }
+
+    /**
+     * Devolve a sessão ao estado OPEN depois de um commit que falhou, para que possa ser repetido
+     */
+    private void releaseClaim(UploadSession claimed) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> uploadSessionRepository.findByIdForUpdate(claimed.getId())
+                    .filter(session -> holdsClaim(session, claimed))
+                    .ifPresent(session -> {
+                        session.setState(UploadSession.State.OPEN);
+                        session.setCommitStartedAt(null);
+                    }));
+        } catch (RuntimeException e) {
+            // A reivindicação vence sozinha após commitTimeout
+            logger.warn("Could not release commit claim of upload session {}", claimed.getId(), e);
+        }
+    }
+
+    /**
+     * Commit em andamento; uma reivindicação mais antiga que commitTimeout é de um commit interrompido
+     */
+    private boolean isCommitInProgress(UploadSession session) {
+        return session.getState() == UploadSession.State.COMMITTING
+                && session.getCommitStartedAt() != null
+                && session.getCommitStartedAt().plus(commitTimeout).isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * Publica a parte sob a trava da sessão; durante ou depois do commit a parte é recusada
+     */
+    private void moveChunkUnderLock(Path temp, String sessionId, int index) {
+        transactionTemplate.executeWithoutResult(status -> {
+            UploadSession session = uploadSessionRepository.findByIdForUpdate(sessionId).orElse(null);
+            if (session == null) {
+                // A pasta pode ter sido recriada por esta parte depois que a sessão foi removida
+                deleteSessionDir(sessionId);
+                throw new DocumentNotFoundException("Upload session not found with id: " + sessionId);
+            }
+            if (session.getState() != UploadSession.State.OPEN) {
+                throw new InvalidFileException("Upload session " + sessionId + " no longer accepts chunks");
+            }
+            try {
+                Files.move(temp, chunkPath(sessionId, index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void checkOwner(UploadSession session, String username) {
+        if (!session.getCreatedBy().getUsername().equals(username)) {
+            throw new UnauthorizedException("You don't have permission to access this upload session");
+        }
+    }
+
+    private List<Integer> receivedChunks(UploadSession session) {
+        Path dir = sessionDir(session.getId());
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(CHUNK_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(0, name.length() - CHUNK_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new InvalidFileException("Failed to read upload session: " + e.getMessage(), e);
+        }
+    }
+
+    private Path sessionDir(String sessionId) {
+        return Paths.get(storagePath).resolve(SESSIONS_DIR).resolve(UUID.fromString(sessionId).toString());
+    }
+
+    private Path chunkPath(String sessionId, int index) {
+        return sessionDir(sessionId).resolve(index + CHUNK_SUFFIX);
+    }
+
+    private void deleteSessionDir(String sessionId) {
+        try {
+            FileSystemUtils.deleteRecursively(sessionDir(sessionId));
+        } catch (IOException e) {
+            logger.warn("Could not delete upload session directory {}", sessionId, e);
+        }
+    }
+
+    /**
+     * As partes só somem depois que a versão estiver gravada; num rollback a sessão continua utilizável
+     */
+    private void deleteSessionDirAfterCommit(String sessionId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteSessionDir(sessionId);
+            }
+        });
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary chunk {}", file, e);
+        }
+    }
+
+    private UploadSessionDTO mapToDTO(UploadSession session, List<Integer> receivedChunks) {
+        return UploadSessionDTO.builder()
+                .id(session.getId())
+                .documentId(session.getDocument().getId())
+                .fileName(session.getFileName())
+                .contentType(session.getContentType())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .receivedChunks(new ArrayList<>(receivedChunks))
+                .state(session.getState())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+
+    /**
+     * Abre as partes uma a uma, conforme o SequenceInputStream avança
+     */
+    private class ChunkEnumeration implements Enumeration<InputStream> {
+
+        private final UploadSession session;
+        private int next;
+
+        ChunkEnumeration(UploadSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return next < session.getChunkCount();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (!hasMoreElements()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return Files.newInputStream(chunkPath(session.getId(), next++));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.ExportEntry;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.storage.BandwidthScheduler;
+import br.com.gabrielvogado.desafiouds.storage.UploadPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportação em ZIP do histórico de versões de um ou mais documentos
+ * Autorização e metadados são resolvidos antes da resposta começar; o conteúdo de cada versão é copiado
+ * do armazenamento direto para a resposta, sem arquivo temporário nem arquivo montado em memória.
+ */
+@Service
+public class VersionExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionExportService.class);
+    private static final String MISSING_FILES_ENTRY = "MISSING-FILES.txt";
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private FileVersionRepository fileVersionRepository;
+
+    @Autowired
+    private AccessEvaluator accessEvaluator;
+
+    @Autowired
+    private BlobStorageService blobStorageService;
+
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
+
+    @Value("${file.export.max-documents:100}")
+    private int maxDocuments;
+
+    /**
+     * Soma dos tamanhos das versões de uma exportação; file.export.timeout precisa bastar para transmiti-la
+     */
+    @Value("${file.export.max-bytes:2147483648}")
+    private long maxBytes;
+
+    @Transactional(readOnly = true)
+    public List<ExportEntry> prepareExport(List<Long> documentIds, String username) {
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(documentIds);
+        if (ids.isEmpty()) {
+            throw new InvalidFileException("At least one document must be selected for export");
+        }
+        if (ids.size() > maxDocuments) {
+            throw new InvalidFileException("Export is limited to " + maxDocuments + " documents");
+        }
+
+        Map<Long, Document> documents = documentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Document::getId, Function.identity()));
+        for (Long id : ids) {
+            if (!documents.containsKey(id)) {
+                throw new DocumentNotFoundException("Document not found with id: " + id);
+            }
+        }
+        accessEvaluator.checkAccess(documents.values().stream().map(document -> document.getOwner().getId()).toList(),
+                username, "You don't have permission to access this document");
+
+        List<ExportEntry> entries = new ArrayList<>();
+        Long currentDocument = null;
+        int versionNumber = 0;
+        long totalBytes = 0;
+        for (FileVersion version : fileVersionRepository.findByDocumentIdsOrderByUploadedAt(ids)) {
+            totalBytes += version.getFileSize() != null ? version.getFileSize() : 0;
+            if (totalBytes > maxBytes) {
+                throw new InvalidFileException("Export is limited to " + maxBytes + " bytes; select fewer documents");
+            }
+            Document document = version.getDocument();
+            versionNumber = document.getId().equals(currentDocument) ? versionNumber + 1 : 1;
+            currentDocument = document.getId();
+            entries.add(ExportEntry.builder()
+                    .documentId(document.getId())
+                    .documentTitle(document.getTitle())
+                    .versionNumber(versionNumber)
+                    .versionId(version.getId())
+                    .fileKey(version.getFileKey())
+                    .fileName(version.getFileName())
+                    .contentType(version.getContentType())
+                    .uploadedAt(version.getUploadedAt())
+                    .build());
+        }
+        return entries;
+    }
+
+    /**
+     * Escreve o ZIP no ritmo que o BandwidthScheduler conceder ao usuário
+     */
+    public void writeZip(List<ExportEntry> entries, OutputStream out, Long userId, User.UserRole role) throws IOException {
+        try (OutputStream throttled = bandwidthScheduler.throttle(out, userId, role)) {
+            writeZip(entries, throttled);
+        }
+    }
+
+    /**
+     * Escreve o ZIP em out, uma entrada por versão, na ordem recebida
+     * Formatos já comprimidos entram sem compressão (deflate nível 0, que não exige CRC antecipado como o STORED);
+     * versões cujo conteúdo não for encontrado são listadas em MISSING-FILES.txt ao final
+     */
+    public void writeZip(List<ExportEntry> entries, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        List<String> missing = new ArrayList<>();
+        byte[] buffer = new byte[UploadPipeline.BUFFER_SIZE];
+
+        for (ExportEntry entry : entries) {
+            Optional<Resource> resource = blobStorageService.open(entry.getFileKey());
+            if (resource.isEmpty()) {
+                logger.warn("Version {} has no content in storage and was left out of the export", entry.getVersionId());
+                missing.add(entryName(entry));
+                continue;
+            }
+
+            ZipEntry zipEntry = new ZipEntry(entryName(entry));
+            if (entry.getUploadedAt() != null) {
+                zipEntry.setTime(entry.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            zip.setLevel(blobStorageService.isAlreadyCompressed(entry.getContentType())
+                    ? Deflater.NO_COMPRESSION
+                    : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(zipEntry);
+            try (InputStream in = resource.get().getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+            zip.closeEntry();
+        }
+
+        if (!missing.isEmpty()) {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(MISSING_FILES_ENTRY));
+            zip.write(String.join("\n", missing).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Pasta por documento e prefixo com o número e o id da versão, para nomes únicos e em ordem cronológica
+     */
+    private static String entryName(ExportEntry entry) {
+        return entry.getDocumentId() + "-" + sanitize(entry.getDocumentTitle()) + "/"
+                + String.format("v%03d", entry.getVersionNumber()) + "-" + entry.getVersionId() + "-"
+                + sanitize(entry.getFileName());
+    }
+
+    private static String sanitize(String name) {
+        if (name == null || name.isBlank()) {
+            return "untitled";
+        }
+        String cleaned = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").replaceAll("^\\.+", "_").trim();
+        return cleaned.length() > 100 ? cleaned.substring(0, 100) : cleaned;
+    }
+}
@@ -0,0 +1,357 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import br.com.gabrielvogado.desafiouds.model.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Divide a banda de download entre os usuários com token buckets por usuário e um global
+ * Cada leitura do stream paga seus bytes nos dois buckets e espera o maior dos atrasos. Os streams se revezam
+ * no bucket global, e a cada vez um stream lê até chunk-size vezes o peso do papel do usuário, então com a banda
+ * disputada cada usuário recebe uma fatia proporcional ao seu peso; o bucket do usuário impede que muitos
+ * downloads paralelos de um só cliente tomem a banda dos demais.
+ */
+@Component
+public class BandwidthScheduler {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${file.download.bandwidth.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Bytes por segundo somando todos os downloads; 0 desliga o limite global
+     */
+    @Value("${file.download.bandwidth.global-rate:104857600}")
+    private long globalRate;
+
+    /**
+     * Bytes por segundo de cada usuário com peso 1; 0 desliga o limite por usuário
+     */
+    @Value("${file.download.bandwidth.user-rate:20971520}")
+    private long userRate;
+
+    @Value("${file.download.bandwidth.admin-weight:2}")
+    private int adminWeight;
+
+    @Value("${file.download.bandwidth.user-weight:1}")
+    private int userWeight;
+
+    @Value("${file.download.bandwidth.chunk-size:65536}")
+    private int chunkSize;
+
+    /**
+     * Rajada permitida a um bucket ocioso, em tempo de banda
+     */
+    @Value("${file.download.bandwidth.burst:PT0.5S}")
+    private Duration burst;
+
+    /**
+     * Buckets por id do usuário, que é o que as URLs assinadas carregam
+     */
+    private final Map<Long, UserBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<User.UserRole, LongAdder> bytesByRole = new EnumMap<>(User.UserRole.class);
+    private final Map<User.UserRole, RateWindow> rateByRole = new EnumMap<>(User.UserRole.class);
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final RateWindow globalRateWindow = new RateWindow();
+    private TokenBucket globalBucket;
+
+    @PostConstruct
+    public void init() {
+        globalBucket = new TokenBucket(globalRate, burst);
+
+        Gauge.builder("download.bandwidth.active.streams", activeStreams, AtomicInteger::get)
+                .description("Downloads currently streaming through the bandwidth scheduler")
+                .register(meterRegistry);
+        Gauge.builder("download.bandwidth.active.users", userBuckets, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("download.bandwidth.rate", globalRateWindow, RateWindow::rate)
+                .tag("role", "all")
+                .baseUnit("bytes")
+                .description("Download throughput over the last second")
+                .register(meterRegistry);
+        for (User.UserRole role : User.UserRole.values()) {
+            LongAdder bytes = new LongAdder();
+            RateWindow rate = new RateWindow();
+            bytesByRole.put(role, bytes);
+            rateByRole.put(role, rate);
+            FunctionCounter.builder("download.bandwidth.bytes", bytes, LongAdder::sum)
+                    .tag("role", role.name())
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            Gauge.builder("download.bandwidth.rate", rate, RateWindow::rate)
+                    .tag("role", role.name())
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Recurso com o mesmo conteúdo, lido no ritmo que o agendador conceder ao usuário
+     */
+    public Resource throttle(Resource resource, Long userId, User.UserRole role) {
+        if (!enabled) {
+            return resource;
+        }
+        return new AbstractResource() {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ThrottledInputStream(resource.getInputStream(), userId, role);
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return resource.contentLength();
+            }
+
+            @Override
+            public boolean exists() {
+                return resource.exists();
+            }
+
+            @Override
+            public String getFilename() {
+                return resource.getFilename();
+            }
+
+            @Override
+            public String getDescription() {
+                return "throttled [" + resource.getDescription() + "]";
+            }
+        };
+    }
+
+    /**
+     * Saída limitada pela banda do usuário, para respostas montadas enquanto são enviadas (exportação em ZIP)
+     * Fechar o stream devolvido libera a vaga do usuário e mantém out aberto
+     */
+    public OutputStream throttle(OutputStream out, Long userId, User.UserRole role) {
+        return enabled ? new ThrottledOutputStream(out, userId, role) : out;
+    }
+
+    int weight(User.UserRole role) {
+        return Math.max(1, role == User.UserRole.ADMIN ? adminWeight : userWeight);
+    }
+
+    private UserBucket acquireUserBucket(Long userId, User.UserRole role) {
+        return userBuckets.compute(userId, (id, bucket) -> {
+            UserBucket acquired = bucket != null ? bucket : new UserBucket(new TokenBucket(userRate * weight(role), burst));
+            acquired.streams++;
+            return acquired;
+        });
+    }
+
+    private void releaseUserBucket(Long userId) {
+        // Buckets de usuários sem download em andamento são descartados
+        userBuckets.computeIfPresent(userId, (id, bucket) -> --bucket.streams > 0 ? bucket : null);
+    }
+
+    private static final class UserBucket {
+
+        private final TokenBucket bucket;
+        private int streams;
+
+        private UserBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Token bucket que aceita dívida: quem reserva além do saldo paga esperando até o saldo voltar a zero
+     * As reservas são servidas na ordem em que chegam, o que reveza os streams que disputam o bucket
+     */
+    static final class TokenBucket {
+
+        private final long rate;
+        private final double capacity;
+        private double tokens;
+        private long updatedAt = System.nanoTime();
+
+        TokenBucket(long rate, Duration burst) {
+            this.rate = rate;
+            this.capacity = rate * (burst.toNanos() / 1e9);
+            this.tokens = capacity;
+        }
+
+        /**
+         * Desconta os bytes e devolve quantos nanossegundos o chamador deve esperar
+         */
+        synchronized long reserve(long bytes) {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * (rate / 1e9));
+            updatedAt = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+
+    /**
+     * Bytes transferidos no último segundo completo
+     */
+    static final class RateWindow {
+
+        private long windowStart = System.nanoTime();
+        private long windowBytes;
+        private long lastRate;
+
+        synchronized void add(long bytes) {
+            roll(System.nanoTime());
+            windowBytes += bytes;
+        }
+
+        synchronized double rate() {
+            roll(System.nanoTime());
+            return lastRate;
+        }
+
+        private void roll(long now) {
+            long elapsed = now - windowStart;
+            if (elapsed >= TimeUnit.SECONDS.toNanos(2)) {
+                lastRate = 0;
+                windowBytes = 0;
+                windowStart = now;
+            } else if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                lastRate = windowBytes;
+                windowBytes = 0;
+                windowStart += TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+    }
+
+    /**
+     * Participação de um stream no agendador: paga os bytes transferidos e libera o bucket do usuário ao fechar
+     */
+    private final class Lease {
+
+        private final Long userId;
+        private final User.UserRole role;
+        private final UserBucket userBucket;
+        private final int maxChunk;
+        private boolean closed;
+
+        private Lease(Long userId, User.UserRole role) {
+            this.userId = userId;
+            this.role = role;
+            this.userBucket = acquireUserBucket(userId, role);
+            this.maxChunk = chunkSize * weight(role);
+            activeStreams.incrementAndGet();
+        }
+
+        private void pay(int bytes) throws IOException {
+            bytesByRole.get(role).add(bytes);
+            rateByRole.get(role).add(bytes);
+            globalRateWindow.add(bytes);
+            long waitNanos = Math.max(userBucket.bucket.reserve(bytes), globalBucket.reserve(bytes));
+            if (waitNanos <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted while waiting for bandwidth");
+            }
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                activeStreams.decrementAndGet();
+                releaseUserBucket(userId);
+            }
+        }
+    }
+
+    private final class ThrottledInputStream extends FilterInputStream {
+
+        private final Lease lease;
+
+        private ThrottledInputStream(InputStream in, Long userId, User.UserRole role) {
+            super(in);
+            this.lease = new Lease(userId, role);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                lease.pay(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int read = super.read(buffer, off, Math.min(len, lease.maxChunk));
+            if (read > 0) {
+                lease.pay(read);
+            }
+            return read;
+        }
+
+        // skip (usado nos pedidos com Range) não transfere bytes ao cliente e não paga banda
+
+        @Override
+        public void close() throws IOException {
+            lease.close();
+            super.close();
+        }
+    }
+
+    private final class ThrottledOutputStream extends FilterOutputStream {
+
+        private final Lease lease;
+
+        private ThrottledOutputStream(OutputStream out, Long userId, User.UserRole role) {
+            super(out);
+            this.lease = new Lease(userId, role);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            lease.pay(1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            for (int written = 0; written < len; ) {
+                int chunk = Math.min(len - written, lease.maxChunk);
+                out.write(buffer, off + written, chunk);
+                lease.pay(chunk);
+                written += chunk;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lease.close();
+            flush();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Camada fria do armazenamento: blobs pouco acessados empacotados em arquivos grandes, só de acréscimo
+ * Cada entrada tem um cabeçalho com a chave, o codec (gzip ou bruto), o tamanho original e o CRC dos dados,
+ * e é localizada pelo número do pacote e pelo offset guardados na tabela blobs. Uma entrada só passa a valer
+ * depois de gravada e sincronizada em disco; sobras de uma gravação interrompida nunca são referenciadas.
+ */
+@Component
+public class ColdStorage {
+
+    private static final byte CODEC_RAW = 0;
+    private static final byte CODEC_GZIP = 1;
+
+    private static final byte[] MAGIC = "BLB1".getBytes(StandardCharsets.US_ASCII);
+    private static final int KEY_LENGTH = 64;
+    private static final int HEADER_LENGTH = MAGIC.length + KEY_LENGTH + 1 + Long.BYTES * 3;
+    private static final Pattern PACK_NAME = Pattern.compile("pack-(\\d{6})\\.pack");
+
+    @Value("${file.storage.tiering.cold-path:./uploads-cold}")
+    private String coldPath;
+
+    @Value("${file.storage.tiering.pack-max-size:1073741824}")
+    private long packMaxSize;
+
+    /**
+     * Conteúdo comprimido só é guardado assim se ficar abaixo dessa fração do original
+     */
+    @Value("${file.storage.compression.max-ratio:0.9}")
+    private double compressionMaxRatio;
+
+    private final Map<String, ColdReads> coldReads = new ConcurrentHashMap<>();
+    private Path root;
+    private int currentPack;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(coldPath).toAbsolutePath().normalize();
+        currentPack = Math.max(1, packIds().stream().mapToInt(Integer::intValue).max().orElse(1));
+    }
+
+    /**
+     * Acrescenta o blob ao pacote atual e sincroniza o arquivo antes de devolver a localização
+     *
+     * @param gzipped true quando o conteúdo já está em gzip (blobs guardados comprimidos), gravado como está;
+     *                caso contrário é comprimido, ou guardado bruto se a compressão não compensar
+     */
+    public synchronized Location append(String key, Resource content, boolean gzipped, long originalSize) throws IOException {
+        if (key.length() != KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        Path pack = packPath(currentPack);
+        Files.createDirectories(root);
+        if (Files.exists(pack) && Files.size(pack) >= packMaxSize) {
+            pack = packPath(++currentPack);
+        }
+
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Sobras de uma gravação interrompida ficam como espaço morto antes da nova entrada
+            long offset = channel.size();
+            long dataStart = offset + HEADER_LENGTH;
+            byte codec = CODEC_GZIP;
+            long crc = writeData(channel, dataStart, content, !gzipped);
+            long dataLength = channel.position() - dataStart;
+            if (!gzipped && dataLength > originalSize * compressionMaxRatio) {
+                channel.truncate(dataStart);
+                crc = writeData(channel, dataStart, content, false);
+                dataLength = channel.position() - dataStart;
+                codec = CODEC_RAW;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC).put(key.getBytes(StandardCharsets.US_ASCII)).put(codec)
+                    .putLong(originalSize).putLong(dataLength).putLong(crc).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, offset + header.position());
+            }
+            channel.force(true);
+            return new Location(currentPack, offset, HEADER_LENGTH + dataLength);
+        }
+    }
+
+    /**
+     * Conteúdo original da entrada, descomprimido durante a leitura
+     */
+    public Resource open(Location location, String key) throws IOException {
+        Entry entry = readHeader(location, key);
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "cold blob " + key + " in " + packPath(location.packId()).getFileName();
+            }
+
+            @Override
+            public long contentLength() {
+                return entry.originalSize();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                InputStream raw = openData(location, entry);
+                return entry.codec() == CODEC_GZIP ? new GZIPInputStream(raw, UploadPipeline.BUFFER_SIZE) : raw;
+            }
+        };
+    }
+
+    /**
+     * Bytes da entrada como gravados; null quando a entrada não está em gzip
+     */
+    public InputStream openGzipped(Location location, String key) throws IOException {
+        Entry entry = readHeader(location, key);
+        return entry.codec() == CODEC_GZIP ? openData(location, entry) : null;
+    }
+
+    public boolean exists(int packId) {
+        return Files.isRegularFile(packPath(packId));
+    }
+
+    /**
+     * Conta uma leitura de blob frio; blobs lidos repetidas vezes são candidatos a voltar para a camada quente
+     */
+    public void recordRead(String key) {
+        coldReads.merge(key, new ColdReads(Instant.now(), 1),
+                (current, read) -> new ColdReads(current.firstReadAt(), current.count() + 1));
+    }
+
+    /**
+     * Devolve e esquece os blobs lidos ao menos minReads vezes dentro da janela; leituras antigas demais são descartadas
+     */
+    public List<String> drainPromotionCandidates(int minReads, Duration window) {
+        Instant oldest = Instant.now().minus(window);
+        List<String> candidates = new ArrayList<>();
+        coldReads.entrySet().removeIf(entry -> {
+            if (entry.getValue().firstReadAt().isBefore(oldest)) {
+                return true;
+            }
+            if (entry.getValue().count() >= minReads) {
+                candidates.add(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        return candidates;
+    }
+
+    /**
+     * Apaga pacotes sem nenhuma entrada viva; o pacote que recebe gravações nunca é apagado
+     *
+     * @return quantidade de pacotes removidos
+     */
+    public synchronized int deletePacksExcept(Collection<Integer> livePacks) throws IOException {
+        int deleted = 0;
+        for (int packId : packIds()) {
+            if (packId != currentPack && !livePacks.contains(packId) && Files.deleteIfExists(packPath(packId))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private List<Integer> packIds() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            return files.map(file -> PACK_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .toList();
+        }
+    }
+
+    private long writeData(FileChannel channel, long position, Resource content, boolean compress) throws IOException {
+        channel.position(position);
+        CRC32 crc = new CRC32();
+        OutputStream channelOut = new CheckedOutputStream(Channels.newOutputStream(channel), crc) {
+            @Override
+            public void close() throws IOException {
+                // O canal continua aberto para o cabeçalho
+                flush();
+            }
+        };
+        try (InputStream in = content.getInputStream();
+             OutputStream out = compress ? new GZIPOutputStream(channelOut, UploadPipeline.BUFFER_SIZE) : channelOut) {
+            in.transferTo(out);
+        }
+        return crc.getValue();
+    }
+
+    private Entry readHeader(Location location, String key) throws IOException {
+        try (FileChannel channel = FileChannel.open(packPath(location.packId()), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining()) {
+                if (channel.read(header, location.offset() + header.position()) < 0) {
+                    throw new IOException("Truncated entry for blob " + key + " in pack " + location.packId());
+                }
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            byte[] storedKey = new byte[KEY_LENGTH];
+            header.get(magic).get(storedKey);
+            if (!Arrays.equals(magic, MAGIC) || !key.equals(new String(storedKey, StandardCharsets.US_ASCII))) {
+                throw new IOException("Pack " + location.packId() + " has no entry for blob " + key + " at " + location.offset());
+            }
+            return new Entry(header.get(), header.getLong(), header.getLong(), header.getLong());
+        }
+    }
+
+    private InputStream openData(Location location, Entry entry) throws IOException {
+        FileChannel channel = FileChannel.open(packPath(location.packId()), StandardOpenOption.READ);
+        channel.position(location.offset() + HEADER_LENGTH);
+        return new EntryInputStream(Channels.newInputStream(channel), entry);
+    }
+
+    private Path packPath(int packId) {
+        return root.resolve(String.format("pack-%06d.pack", packId));
+    }
+
+    /**
+     * Posição de uma entrada: pacote, offset do cabeçalho e tamanho total (cabeçalho + dados)
+     */
+    public record Location(int packId, long offset, long length) {
+    }
+
+    private record Entry(byte codec, long originalSize, long dataLength, long crc) {
+    }
+
+    private record ColdReads(Instant firstReadAt, int count) {
+    }
+
+    /**
+     * Lê apenas os dados da entrada, sem avançar para a seguinte, e confere o CRC ao chegar ao fim
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+
+        private final CRC32 crc = new CRC32();
+        private final long expectedCrc;
+        private long remaining;
+
+        EntryInputStream(InputStream in, Entry entry) {
+            super(in);
+            this.remaining = entry.dataLength();
+            this.expectedCrc = entry.crc();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new IOException("Cold pack entry is truncated");
+            }
+            crc.update(buffer, off, read);
+            remaining -= read;
+            if (remaining == 0 && crc.getValue() != expectedCrc) {
+                throw new IOException("Cold pack entry is corrupted: CRC mismatch");
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Os bytes pulados também entram no CRC
+            byte[] buffer = new byte[(int) Math.min(n, UploadPipeline.BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
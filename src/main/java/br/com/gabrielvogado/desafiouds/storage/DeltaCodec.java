@@ -0,0 +1,196 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Delta binário no estilo rsync entre dois arquivos
+ * Os blocos da base são indexados por um checksum rolante; o alvo é percorrido byte a byte e cada trecho
+ * que coincide com um bloco da base vira uma instrução de cópia, o restante é gravado literalmente.
+ * Formato: cabeçalho (magic, versão, tamanho da base, tamanho do alvo) seguido de instruções COPY/INSERT e END.
+ */
+public final class DeltaCodec {
+
+    public static final int DEFAULT_BLOCK_SIZE = 2048;
+
+    private static final int MAGIC = 0x55445344;
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte OP_END = 0;
+    private static final byte OP_COPY = 1;
+    private static final byte OP_INSERT = 2;
+    private static final int MAX_INSERT = 64 * 1024;
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * Grava em out as instruções que reconstroem target a partir de base
+     */
+    public static void encode(Path base, Path target, OutputStream out, int blockSize) throws IOException {
+        try (FileChannel baseChannel = FileChannel.open(base, StandardOpenOption.READ);
+             FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.READ)) {
+            MappedByteBuffer baseBytes = map(baseChannel);
+            MappedByteBuffer targetBytes = map(targetChannel);
+            DataOutputStream data = new DataOutputStream(out);
+
+            data.writeInt(MAGIC);
+            data.writeByte(FORMAT_VERSION);
+            data.writeLong(baseBytes.limit());
+            data.writeLong(targetBytes.limit());
+
+            Map<Integer, Integer> index = indexBlocks(baseBytes, blockSize);
+            int length = targetBytes.limit();
+            int pos = 0;
+            int literalStart = 0;
+            int weak = length >= blockSize ? checksum(targetBytes, 0, blockSize) : 0;
+
+            while (pos + blockSize <= length) {
+                Integer baseOffset = index.get(weak);
+                if (baseOffset != null && equalRange(baseBytes, baseOffset, targetBytes, pos, blockSize)) {
+                    int matched = blockSize;
+                    while (baseOffset + matched < baseBytes.limit() && pos + matched < length
+                            && baseBytes.get(baseOffset + matched) == targetBytes.get(pos + matched)) {
+                        matched++;
+                    }
+                    writeInsert(data, targetBytes, literalStart, pos);
+                    data.writeByte(OP_COPY);
+                    data.writeLong(baseOffset);
+                    data.writeInt(matched);
+
+                    pos += matched;
+                    literalStart = pos;
+                    if (pos + blockSize <= length) {
+                        weak = checksum(targetBytes, pos, blockSize);
+                    }
+                    continue;
+                }
+
+                if (pos + blockSize < length) {
+                    weak = roll(weak, targetBytes.get(pos), targetBytes.get(pos + blockSize), blockSize);
+                }
+                pos++;
+            }
+
+            writeInsert(data, targetBytes, literalStart, length);
+            data.writeByte(OP_END);
+            data.flush();
+        }
+    }
+
+    /**
+     * Reconstrói o alvo aplicando o delta sobre a base
+     */
+    public static void apply(Path base, InputStream delta, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(delta);
+        if (data.readInt() != MAGIC || data.readByte() != FORMAT_VERSION) {
+            throw new IOException("Invalid delta format");
+        }
+
+        try (FileChannel baseChannel = FileChannel.open(base, StandardOpenOption.READ)) {
+            long baseLength = data.readLong();
+            long targetLength = data.readLong();
+            if (baseChannel.size() != baseLength) {
+                throw new IOException("Delta base has " + baseChannel.size() + " bytes, expected " + baseLength);
+            }
+
+            WritableByteChannel target = Channels.newChannel(out);
+            byte[] buffer = new byte[MAX_INSERT];
+            long written = 0;
+
+            byte op;
+            while ((op = data.readByte()) != OP_END) {
+                if (op == OP_COPY) {
+                    long offset = data.readLong();
+                    int length = data.readInt();
+                    long copied = 0;
+                    while (copied < length) {
+                        long transferred = baseChannel.transferTo(offset + copied, length - copied, target);
+                        if (transferred <= 0) {
+                            throw new EOFException("Delta copies beyond the end of the base");
+                        }
+                        copied += transferred;
+                    }
+                    written += length;
+                } else if (op == OP_INSERT) {
+                    int length = data.readInt();
+                    data.readFully(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                    written += length;
+                } else {
+                    throw new IOException("Invalid delta instruction: " + op);
+                }
+            }
+
+            if (written != targetLength) {
+                throw new IOException("Delta produced " + written + " bytes, expected " + targetLength);
+            }
+            out.flush();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("File too large for delta encoding: " + channel.size() + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    private static Map<Integer, Integer> indexBlocks(MappedByteBuffer base, int blockSize) {
+        Map<Integer, Integer> index = new HashMap<>();
+        for (int offset = 0; offset + blockSize <= base.limit(); offset += blockSize) {
+            index.putIfAbsent(checksum(base, offset, blockSize), offset);
+        }
+        return index;
+    }
+
+    private static void writeInsert(DataOutputStream data, MappedByteBuffer source, int from, int to)
+            throws IOException {
+        byte[] buffer = new byte[Math.min(MAX_INSERT, Math.max(to - from, 0))];
+        for (int start = from; start < to; start += MAX_INSERT) {
+            int length = Math.min(MAX_INSERT, to - start);
+            source.get(start, buffer, 0, length);
+            data.writeByte(OP_INSERT);
+            data.writeInt(length);
+            data.write(buffer, 0, length);
+        }
+    }
+
+    private static boolean equalRange(MappedByteBuffer a, int aOffset, MappedByteBuffer b, int bOffset, int length) {
+        return a.slice(aOffset, length).equals(b.slice(bOffset, length));
+    }
+
+    /**
+     * Checksum fraco do rsync: soma simples nos 16 bits baixos e soma ponderada nos 16 bits altos
+     */
+    private static int checksum(MappedByteBuffer bytes, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int value = bytes.get(offset + i) & 0xFF;
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & 0xFFFF) | (b << 16);
+    }
+
+    private static int roll(int weak, byte removed, byte added, int length) {
+        int a = weak & 0xFFFF;
+        int b = weak >>> 16;
+        int out = removed & 0xFF;
+        a = (a - out + (added & 0xFF)) & 0xFFFF;
+        b = (b - length * out + a) & 0xFFFF;
+        return a | (b << 16);
+    }
+}
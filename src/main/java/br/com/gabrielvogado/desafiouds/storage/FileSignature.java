@@ -0,0 +1,61 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import java.util.Optional;
+
+/**
+ * Assinaturas (magic bytes) dos tipos de arquivo aceitos
+ * Usadas para conferir o Content-Type declarado contra o conteúdo real
+ */
+public enum FileSignature {
+
+    PDF("application/pdf", new byte[]{'%', 'P', 'D', 'F', '-'}),
+    PNG("image/png", new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}),
+    JPEG("image/jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+
+    /**
+     * Quantidade de bytes do início do arquivo necessária para identificar qualquer assinatura
+     */
+    public static final int MAX_LENGTH = 8;
+
+    private final String contentType;
+    private final byte[] magic;
+
+    FileSignature(String contentType, byte[] magic) {
+        this.contentType = contentType;
+        this.magic = magic;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static boolean isSupported(String contentType) {
+        for (FileSignature signature : values()) {
+            if (signature.contentType.equals(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Optional<FileSignature> detect(byte[] header, int length) {
+        for (FileSignature signature : values()) {
+            if (signature.matches(header, length)) {
+                return Optional.of(signature);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(byte[] header, int length) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * fsync de arquivos e diretórios do armazenamento, com os diretórios agrupados entre gravações concorrentes
+ * O conteúdo de cada arquivo é sincronizado pela própria thread, em paralelo com as demais, já que fsyncs de
+ * arquivos diferentes não se combinam. Os diretórios passam por um group commit: quem chega com nenhuma
+ * sincronização em andamento vira líder e sincroniza tudo que estiver na fila; quem chega durante uma
+ * sincronização espera, e os pedidos acumulados saem juntos no lote seguinte, com diretórios repetidos (pais de shards, staging)
+ * sincronizados uma única vez. Com file.storage.durability.fsync=false nada é sincronizado.
+ */
+@Component
+public class GroupCommitSyncer {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${file.storage.durability.fsync:true}")
+    private boolean fsync;
+
+    /**
+     * Com false cada gravação sincroniza os próprios diretórios, sem esperar pelas demais
+     */
+    @Value("${file.storage.durability.group-commit:true}")
+    private boolean groupCommit;
+
+    private final Object lock = new Object();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+    private List<Request> pending = new ArrayList<>();
+    private boolean flushing;
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("storage.fsync.requests", requests, LongAdder::sum)
+                .description("Writes that waited for their files and directories to be synced")
+                .register(meterRegistry);
+        FunctionCounter.builder("storage.fsync.batches", batches, LongAdder::sum)
+                .description("Directory group commits")
+                .register(meterRegistry);
+        FunctionCounter.builder("storage.fsync.calls", forces, LongAdder::sum)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retorna depois que o conteúdo dos arquivos e as entradas dos diretórios estão em disco
+     */
+    public void sync(Collection<Path> files, Collection<Path> directories) throws IOException {
+        if (!fsync || (files.isEmpty() && directories.isEmpty())) {
+            return;
+        }
+        requests.increment();
+        // Arquivos primeiro: a entrada de diretório só deve ficar durável apontando para conteúdo durável
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+            forces.increment();
+        }
+        if (directories.isEmpty()) {
+            return;
+        }
+        if (!groupCommit) {
+            batches.increment();
+            forceDirectories(new LinkedHashSet<>(directories));
+            return;
+        }
+
+        Request request = new Request(directories);
+        boolean leader;
+        synchronized (lock) {
+            pending.add(request);
+            leader = !flushing;
+            flushing = true;
+        }
+        if (leader || !request.signal.join()) {
+            flushAsLeader();
+        }
+        if (request.failure != null) {
+            throw new IOException("Could not sync storage to disk", request.failure);
+        }
+    }
+
+    public boolean isEnabled() {
+        return fsync;
+    }
+
+    /**
+     * Sincroniza um lote e passa a liderança ao primeiro pedido que chegou enquanto isso
+     */
+    private void flushAsLeader() {
+        List<Request> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Request request : batch) {
+            directories.addAll(request.directories);
+        }
+
+        IOException failure = null;
+        try {
+            batches.increment();
+            forceDirectories(directories);
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (Request request : batch) {
+            request.failure = failure;
+            request.signal.complete(true);
+        }
+
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                flushing = false;
+            } else {
+                pending.get(0).signal.complete(false);
+            }
+        }
+    }
+
+    private void forceDirectories(Set<Path> directories) throws IOException {
+        for (Path directory : directories) {
+            forceDirectory(directory);
+            forces.increment();
+        }
+    }
+
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Alguns sistemas (Windows) não abrem diretórios; lá a entrada já é gravada de forma síncrona
+            if (!System.getProperty("os.name", "").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    private static final class Request {
+
+        private final Collection<Path> directories;
+
+        /**
+         * true quando o lote do pedido terminou; false quando o pedido deve assumir a liderança
+         */
+        private final CompletableFuture<Boolean> signal = new CompletableFuture<>();
+        private volatile IOException failure;
+
+        private Request(Collection<Path> directories) {
+            this.directories = directories;
+        }
+    }
+}
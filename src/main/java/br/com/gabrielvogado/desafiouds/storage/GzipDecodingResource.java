@@ -0,0 +1,48 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Expõe descomprimido um blob guardado em gzip, para clientes que não aceitam Content-Encoding gzip
+ * O tamanho é o do conteúdo original, conhecido de antemão, para não precisar descomprimir só para medir
+ */
+public class GzipDecodingResource extends AbstractResource {
+
+    private final Resource compressed;
+    private final long contentLength;
+
+    public GzipDecodingResource(Resource compressed, long contentLength) {
+        this.compressed = compressed;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new GZIPInputStream(compressed.getInputStream(), UploadPipeline.BUFFER_SIZE);
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean exists() {
+        return compressed.exists();
+    }
+
+    @Override
+    public String getFilename() {
+        return compressed.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+        return "gzip-decoded [" + compressed.getDescription() + "]";
+    }
+}
@@ -0,0 +1,227 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache em memória fora do heap para os blobs mais baixados
+ * Blobs são imutáveis, então as entradas só saem por falta de espaço ou quando o blob é apagado.
+ * A admissão segue o TinyLFU: com o cache cheio, um blob só entra se for acessado com mais frequência
+ * que as entradas menos recentes que teria de expulsar, de modo que downloads isolados não tiram do cache
+ * os arquivos populares.
+ */
+@Component
+public class HotBlobCache {
+
+    private static final long AVERAGE_ENTRY_SIZE = 64 * 1024;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${file.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.cache.max-size:268435456}")
+    private long maxSize;
+
+    /**
+     * Blobs maiores que isso são sempre transmitidos do disco
+     */
+    @Value("${file.cache.max-entry-size:8388608}")
+    private long maxEntrySize;
+
+    private final Map<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Geração de invalidação das chaves com leitura em andamento; só existe enquanto há leitura da chave
+     */
+    private final Map<String, Generation> generations = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitBytes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private FrequencySketch sketch;
+    private long size;
+
+    @PostConstruct
+    public void init() {
+        sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 8, Math.max(1, maxSize / AVERAGE_ENTRY_SIZE)));
+
+        FunctionCounter.builder("blob.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Downloads served from the hot blob cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("blob.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Downloads read from storage")
+                .register(meterRegistry);
+        FunctionCounter.builder("blob.cache.hit.bytes", hitBytes, LongAdder::sum)
+                .baseUnit("bytes")
+                .description("Bytes served from the hot blob cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("blob.cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+        FunctionCounter.builder("blob.cache.rejections", rejections, LongAdder::sum)
+                .description("Blobs not admitted because they are accessed less often than the entries they would evict")
+                .register(meterRegistry);
+        Gauge.builder("blob.cache.size", this, HotBlobCache::size)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("blob.cache.entries", this, HotBlobCache::entryCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devolve o blob do cache ou, na falta, do loader; blobs admitidos são lidos uma vez para a memória
+     * e já servidos a partir dela
+     */
+    public Optional<Resource> get(String key, Loader loader) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+
+        sketch.increment(key);
+        ByteBuffer cached;
+        Generation generation;
+        long seen;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null) {
+                generation = null;
+                seen = 0;
+            } else {
+                generation = generations.computeIfAbsent(key, k -> new Generation());
+                generation.loaders++;
+                seen = generation.value;
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            hitBytes.add(cached.capacity());
+            return Optional.of(new ByteBufferResource(cached, key));
+        }
+
+        misses.increment();
+        try {
+            Optional<Resource> loaded = loader.load();
+            if (loaded.isEmpty()) {
+                return loaded;
+            }
+            long length = loaded.get().contentLength();
+            if (length > maxEntrySize || length > maxSize || !canAdmit(key, length)) {
+                return loaded;
+            }
+
+            ByteBuffer buffer = read(loaded.get(), (int) length);
+            admit(key, buffer, generation, seen);
+            return Optional.of(new ByteBufferResource(buffer, key));
+        } finally {
+            synchronized (this) {
+                if (--generation.loaders == 0) {
+                    generations.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a entrada; usado quando o blob é apagado do armazenamento
+     * Leituras da chave já em andamento deixam de ser admitidas, para não devolver ao cache o blob apagado.
+     */
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.capacity();
+        }
+        Generation generation = generations.get(key);
+        if (generation != null) {
+            generation.value++;
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Verificação prévia, para não ler do disco um blob que seria recusado
+     */
+    private synchronized boolean canAdmit(String key, long length) {
+        if (entries.containsKey(key)) {
+            return false;
+        }
+        long needed = size + length - maxSize;
+        if (needed <= 0) {
+            return true;
+        }
+        int frequency = sketch.frequency(key);
+        long freed = 0;
+        for (Map.Entry<String, ByteBuffer> victim : entries.entrySet()) {
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+                rejections.increment();
+                return false;
+            }
+            freed += victim.getValue().capacity();
+            if (freed >= needed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void admit(String key, ByteBuffer buffer, Generation generation, long seen) {
+        if (generation.value != seen || !canAdmit(key, buffer.capacity())) {
+            return;
+        }
+        Iterator<Map.Entry<String, ByteBuffer>> iterator = entries.entrySet().iterator();
+        while (size + buffer.capacity() > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().capacity();
+            iterator.remove();
+            evictions.increment();
+        }
+        entries.put(key, buffer);
+        size += buffer.capacity();
+    }
+
+    private static ByteBuffer read(Resource resource, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Blob ended after " + buffer.position() + " of " + length + " bytes");
+                }
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static final class Generation {
+        private long value;
+        private int loaders;
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Optional<Resource> load() throws IOException;
+    }
+}
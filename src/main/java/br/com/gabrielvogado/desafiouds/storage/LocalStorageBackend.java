@@ -0,0 +1,217 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Armazenamento em disco local distribuído entre um ou mais pontos de montagem
+ * O ponto de montagem de cada chave é escolhido por hashing consistente e, dentro dele,
+ * o arquivo fica em dois níveis de diretórios derivados do hash da chave (ex.: 3f/a2/chave)
+ */
+@Component
+public class LocalStorageBackend implements StorageBackend {
+
+    @Autowired
+    private GroupCommitSyncer syncer;
+
+    @Value("${file.storage.path:./uploads}")
+    private String storagePath;
+
+    @Value("${file.storage.mounts:}")
+    private String mounts;
+
+    @Value("${file.storage.virtual-nodes:128}")
+    private int virtualNodes;
+
+    private List<Path> mountPaths;
+    private ConsistentHashRing<Path> ring;
+
+    @PostConstruct
+    public void init() {
+        List<Path> paths = new ArrayList<>();
+        if (StringUtils.hasText(mounts)) {
+            Arrays.stream(mounts.split(","))
+                    .map(String::trim)
+                    .filter(StringUtils::hasText)
+                    .map(mount -> Paths.get(mount).toAbsolutePath().normalize())
+                    .distinct()
+                    .forEach(paths::add);
+        } else {
+            paths.add(Paths.get(storagePath).toAbsolutePath().normalize());
+        }
+
+        ConsistentHashRing<Path> newRing = new ConsistentHashRing<>(virtualNodes);
+        paths.forEach(path -> newRing.add(path.toString(), path));
+        this.mountPaths = List.copyOf(paths);
+        this.ring = newRing;
+    }
+
+    /**
+     * O conteúdo é sincronizado antes de ganhar o nome final e o diretório depois, então ao retornar a chave está
+     * em disco por inteiro; um crash no meio deixa no máximo um arquivo sem referência, nunca um blob truncado
+     */
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = locate(key);
+        if (Files.exists(target)) {
+            // Pode ter sido gravado agora por outra requisição, que talvez ainda não tenha sincronizado o diretório
+            syncer.sync(List.of(), List.of(target.getParent()));
+            return;
+        }
+        List<Path> directories = createDirectories(target.getParent());
+        syncer.sync(List.of(source), List.of());
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            // Outra gravação do mesmo conteúdo chegou primeiro
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            copyAtomically(source, target);
+        }
+        syncer.sync(List.of(), directories);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return find(key).isPresent();
+    }
+
+    @Override
+    public Optional<Resource> get(String key) {
+        return find(key).map(FileSystemResource::new);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean deleted = false;
+        for (Path candidate : candidates(key)) {
+            deleted |= Files.deleteIfExists(candidate);
+        }
+        return deleted;
+    }
+
+    /**
+     * Caminho canônico da chave no layout atual
+     */
+    public Path locate(String key) {
+        long hash = ConsistentHashRing.hash(key);
+        String prefix = String.format("%016x", hash);
+        return ring.get(hash)
+                .resolve(prefix.substring(0, 2))
+                .resolve(prefix.substring(2, 4))
+                .resolve(validKey(key));
+    }
+
+    public List<Path> getMountPaths() {
+        return mountPaths;
+    }
+
+    /**
+     * Diretório do layout plano antigo (file.storage.path) quando ele não é um dos pontos de montagem
+     */
+    public Optional<Path> getLegacyRoot() {
+        Path legacy = Paths.get(storagePath).toAbsolutePath().normalize();
+        return mountPaths.contains(legacy) ? Optional.empty() : Optional.of(legacy);
+    }
+
+    /**
+     * Move para o caminho canônico um arquivo encontrado fora do layout atual
+     */
+    public void relocate(String key, Path current) throws IOException {
+        Path target = locate(key);
+        if (current.equals(target)) {
+            return;
+        }
+        List<Path> directories = new ArrayList<>(createDirectories(target.getParent()));
+        try {
+            Files.move(current, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            copyAtomically(current, target);
+            Files.delete(current);
+        }
+        directories.add(current.getParent());
+        syncer.sync(List.of(), directories);
+    }
+
+    private Optional<Path> find(String key) {
+        for (Path candidate : candidates(key)) {
+            if (Files.isRegularFile(candidate)) {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Caminho canônico primeiro; depois o mesmo caminho nos demais pontos de montagem
+     * (chaves ainda não redistribuídas após a inclusão de um ponto) e o layout plano antigo
+     */
+    private Set<Path> candidates(String key) {
+        Path canonical = locate(key);
+        Path relative = canonical.getParent().getParent().getParent().relativize(canonical);
+
+        Set<Path> candidates = new LinkedHashSet<>();
+        candidates.add(canonical);
+        for (Path mount : mountPaths) {
+            candidates.add(mount.resolve(relative));
+        }
+        for (Path mount : mountPaths) {
+            candidates.add(mount.resolve(validKey(key)));
+        }
+        candidates.add(Paths.get(storagePath).toAbsolutePath().normalize().resolve(validKey(key)));
+        return candidates;
+    }
+
+    /**
+     * Cria o diretório e os pais que faltarem; devolve o diretório e os pais cujas entradas mudaram, para sincronizar
+     */
+    private static List<Path> createDirectories(Path directory) throws IOException {
+        List<Path> changed = new ArrayList<>();
+        changed.add(directory);
+        for (Path missing = directory; missing != null && !Files.isDirectory(missing); missing = missing.getParent()) {
+            if (missing.getParent() != null) {
+                changed.add(missing.getParent());
+            }
+        }
+        Files.createDirectories(directory);
+        return changed;
+    }
+
+    private void copyAtomically(Path source, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(source, temp);
+            syncer.sync(List.of(temp), List.of());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String validKey(String key) {
+        if (!StringUtils.hasText(key) || key.contains("/") || key.contains("\\") || key.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return key;
+    }
+}
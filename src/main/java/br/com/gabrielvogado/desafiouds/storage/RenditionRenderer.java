@@ -0,0 +1,159 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Geração das imagens de prévia: redução de PNG/JPEG e renderização da primeira página de PDFs
+ * A origem é decodificada uma única vez, já subamostrada perto do tamanho pedido, para que imagens grandes
+ * não sejam carregadas inteiras na memória.
+ */
+public final class RenditionRenderer {
+
+    public static final Set<String> SUPPORTED_TYPES = Set.of("application/pdf", "image/png", "image/jpeg");
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private RenditionRenderer() {
+    }
+
+    /**
+     * Decodifica a origem cabendo em maxDimension x maxDimension, sem ampliar imagens menores
+     *
+     * @param maxPixels limite de pixels da origem, contra imagens e páginas gigantes
+     */
+    public static BufferedImage render(Path source, String contentType, int maxDimension, long maxPixels) throws IOException {
+        BufferedImage image = "application/pdf".equals(contentType)
+                ? renderFirstPage(source, maxDimension, maxPixels)
+                : decodeImage(source, maxDimension, maxPixels);
+        return scale(image, maxDimension, outputType(contentType));
+    }
+
+    /**
+     * Reduz a imagem para caber em maxDimension, em etapas de metade para manter a qualidade
+     */
+    public static BufferedImage scale(BufferedImage image, int maxDimension, String outputType) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int imageType = "image/png".equals(outputType) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            if (current.getWidth() == width && current.getHeight() == height && current.getType() == imageType) {
+                break;
+            }
+            BufferedImage next = new BufferedImage(width, height, imageType);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+
+    /**
+     * PNG preserva a transparência das origens PNG; JPEG e PDF geram JPEG, bem menor para fotos e páginas
+     */
+    public static String outputType(String sourceContentType) {
+        return "image/png".equals(sourceContentType) ? "image/png" : "image/jpeg";
+    }
+
+    public static void write(BufferedImage image, String outputType, OutputStream out) throws IOException {
+        if ("image/png".equals(outputType)) {
+            if (!ImageIO.write(image, "png", out)) {
+                throw new IOException("No PNG writer available");
+            }
+            return;
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage decodeImage(Path source, int maxDimension, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                checkPixels(width, height, maxPixels);
+
+                // Subamostragem na decodificação, deixando o dobro do tamanho final para a redução suave
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage renderFirstPage(Path source, int maxDimension, long maxPixels) throws IOException {
+        try (PDDocument document = Loader.loadPDF(source.toFile())) {
+            if (document.getNumberOfPages() == 0) {
+                throw new IOException("PDF has no pages");
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float longest = Math.max(box.getWidth(), box.getHeight());
+            if (longest <= 0) {
+                throw new IOException("PDF first page has no area");
+            }
+            float scale = maxDimension / longest;
+            checkPixels((long) (box.getWidth() * scale), (long) (box.getHeight() * scale), maxPixels);
+
+            PDFRenderer renderer = new PDFRenderer(document);
+            renderer.setSubsamplingAllowed(true);
+            return renderer.renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private static void checkPixels(long width, long height, long maxPixels) throws IOException {
+        if (width * height > maxPixels) {
+            throw new IOException("Source is too large to render: " + width + "x" + height);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * Upload já gravado em arquivo temporário, aguardando ser promovido a blob
+ */
+@Getter
+@AllArgsConstructor
+public class StagedBlob {
+
+    private final Path tempFile;
+    private final UploadResult upload;
+
+    /**
+     * Cópia em gzip gravada junto com o upload, presente apenas quando a compressão compensa
+     */
+    private final Path compressedFile;
+
+    public String getHash() {
+        return upload.getSha256();
+    }
+}
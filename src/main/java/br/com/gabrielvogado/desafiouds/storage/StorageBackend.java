@@ -0,0 +1,31 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Contrato para o armazenamento físico dos blobs
+ * O FileService e o BlobStorageService fazem todo o I/O de conteúdo por aqui, sem conhecer o layout em disco
+ */
+public interface StorageBackend {
+
+    /**
+     * Grava o conteúdo do arquivo local sob a chave, preservando o arquivo de origem
+     * Se a chave já existir, o conteúdo atual é mantido
+     */
+    void put(String key, Path source) throws IOException;
+
+    boolean exists(String key);
+
+    Optional<Resource> get(String key);
+
+    /**
+     * Remove a chave de todos os locais em que ela possa estar
+     *
+     * @return true se algum arquivo foi removido
+     */
+    boolean delete(String key) throws IOException;
+}
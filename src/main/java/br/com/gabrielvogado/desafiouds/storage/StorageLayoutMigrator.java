@@ -0,0 +1,93 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reorganiza os arquivos existentes para o layout atual do LocalStorageBackend
+ * Move os arquivos do diretório plano antigo (uploads/chave), inclusive quando file.storage.mounts não o inclui,
+ * e os que ficaram no ponto de montagem errado depois da inclusão de um novo ponto.
+ * Ativado com file.storage.migrate-layout=true.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.migrate-layout", havingValue = "true")
+public class StorageLayoutMigrator implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageLayoutMigrator.class);
+
+    @Autowired
+    private LocalStorageBackend storageBackend;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        migrate();
+    }
+
+    /**
+     * @return quantidade de arquivos movidos
+     */
+    public int migrate() throws IOException {
+        int moved = 0;
+        for (Path mount : storageBackend.getMountPaths()) {
+            if (!Files.isDirectory(mount)) {
+                continue;
+            }
+            moved += relocate(blobFiles(mount, 3));
+        }
+        Optional<Path> legacyRoot = storageBackend.getLegacyRoot();
+        if (legacyRoot.isPresent() && Files.isDirectory(legacyRoot.get())) {
+            // Fora dos pontos de montagem só há o layout plano: apenas os arquivos da raiz
+            moved += relocate(blobFiles(legacyRoot.get(), 1));
+        }
+        logger.info("Storage layout migration finished: {} file(s) moved", moved);
+        return moved;
+    }
+
+    private int relocate(List<Path> files) throws IOException {
+        int moved = 0;
+        for (Path file : files) {
+            String key = file.getFileName().toString();
+            if (!file.equals(storageBackend.locate(key))) {
+                storageBackend.relocate(key, file);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Arquivos na raiz (layout plano) e, com depth 3, nos dois níveis de diretórios de shard
+     * Diretórios e arquivos iniciados por ponto (staging, quarentena) e temporários são ignorados
+     */
+    private List<Path> blobFiles(Path mount, int depth) throws IOException {
+        try (Stream<Path> files = Files.walk(mount, depth)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> mount.relativize(file).getNameCount() == 1 || mount.relativize(file).getNameCount() == 3)
+                    .filter(file -> !isHidden(mount.relativize(file)))
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .toList();
+        }
+    }
+
+    private boolean isHidden(Path relative) {
+        for (Path part : relative) {
+            if (part.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
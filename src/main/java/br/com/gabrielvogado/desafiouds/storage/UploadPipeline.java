@@ -0,0 +1,82 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copia o conteúdo de um upload para o destino em uma única passada
+ * Calcula tamanho e SHA-256, confere os magic bytes e aplica o limite de tamanho
+ * enquanto os bytes chegam, usando um buffer fixo reaproveitado por thread
+ */
+public final class UploadPipeline {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private UploadPipeline() {
+    }
+
+    public static UploadResult transfer(InputStream in, OutputStream out, String declaredContentType, long maxBytes)
+            throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = BUFFERS.get();
+        byte[] header = new byte[FileSignature.MAX_LENGTH];
+        int headerLength = 0;
+        String detectedContentType = null;
+        long total = 0;
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxBytes) {
+                throw new InvalidFileException("File size exceeds maximum allowed size of " + maxBytes + " bytes");
+            }
+
+            if (detectedContentType == null) {
+                int copy = Math.min(read, header.length - headerLength);
+                System.arraycopy(buffer, 0, header, headerLength, copy);
+                headerLength += copy;
+                if (headerLength == header.length) {
+                    detectedContentType = checkSignature(header, headerLength, declaredContentType);
+                }
+            }
+
+            digest.update(buffer, 0, read);
+            out.write(buffer, 0, read);
+        }
+
+        if (total == 0) {
+            throw new InvalidFileException("File is empty");
+        }
+        if (detectedContentType == null) {
+            detectedContentType = checkSignature(header, headerLength, declaredContentType);
+        }
+
+        return new UploadResult(total, HexFormat.of().formatHex(digest.digest()), detectedContentType);
+    }
+
+    private static String checkSignature(byte[] header, int length, String declaredContentType) {
+        FileSignature signature = FileSignature.detect(header, length)
+                .orElseThrow(() -> new InvalidFileException("File content does not match any allowed type"));
+
+        if (!signature.getContentType().equals(declaredContentType)) {
+            throw new InvalidFileException("File content does not match declared type: " + declaredContentType);
+        }
+        return signature.getContentType();
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
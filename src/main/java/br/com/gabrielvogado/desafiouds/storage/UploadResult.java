@@ -0,0 +1,16 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Resultado da passada de upload: bytes gravados, digest e tipo confirmado pelos magic bytes
+ */
+@Getter
+@AllArgsConstructor
+public class UploadResult {
+
+    private final long size;
+    private final String sha256;
+    private final String contentType;
+}
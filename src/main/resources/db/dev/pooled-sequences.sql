@@ -0,0 +1,6 @@
+-- pooled-sequences.sql
+-- Dev databases are built by ddl-auto=update, so V7 never runs there. A database created before file_versions
+-- ids were pooled keeps the sequence at INCREMENT 1, and Hibernate refuses to start against it. This runs before
+-- the JPA bootstrap. On a fresh database the sequence does not exist yet, so it is a no-op and Hibernate creates
+-- the sequence with INCREMENT 50.
+ALTER SEQUENCE IF EXISTS file_versions_id_seq INCREMENT BY 50;
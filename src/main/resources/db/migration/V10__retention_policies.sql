@@ -0,0 +1,15 @@
+-- V10__retention_policies.sql
+-- Version retention rules, per document or global (document_id NULL); a version is kept if any rule keeps it
+CREATE TABLE retention_policies (
+    id BIGSERIAL PRIMARY KEY,
+    document_id BIGINT UNIQUE,
+    keep_last INTEGER,
+    keep_daily_days INTEGER,
+    keep_monthly_months INTEGER,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_retention_policies_document FOREIGN KEY (document_id) REFERENCES documents(id) ON DELETE CASCADE
+);
+
+-- At most one global policy
+CREATE UNIQUE INDEX uk_retention_policies_global ON retention_policies((document_id IS NULL)) WHERE document_id IS NULL;
@@ -0,0 +1,5 @@
+-- V11__user_token_epoch.sql
+-- Incremented to revoke every token already issued to the user (tokens carry the epoch they were issued with)
+ALTER TABLE users ADD COLUMN token_epoch INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_users_token_epoch ON users(token_epoch) WHERE token_epoch > 0;
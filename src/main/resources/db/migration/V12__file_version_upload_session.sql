@@ -0,0 +1,5 @@
+-- V12__file_version_upload_session.sql
+-- Chunked-upload session that created the version: a retried commit finds it instead of creating a duplicate
+ALTER TABLE file_versions ADD COLUMN upload_session_id VARCHAR(36);
+
+CREATE UNIQUE INDEX idx_file_versions_upload_session ON file_versions(upload_session_id) WHERE upload_session_id IS NOT NULL;
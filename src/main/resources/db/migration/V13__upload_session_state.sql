@@ -0,0 +1,4 @@
+-- V13__upload_session_state.sql
+-- Commits claim the session (COMMITTING), assemble the chunks outside any transaction and then mark it COMMITTED
+ALTER TABLE upload_sessions ADD COLUMN state VARCHAR(20) NOT NULL DEFAULT 'OPEN';
+ALTER TABLE upload_sessions ADD COLUMN commit_started_at TIMESTAMP;
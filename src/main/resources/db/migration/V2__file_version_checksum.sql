@@ -0,0 +1,3 @@
+-- V2__file_version_checksum.sql
+-- SHA-256 of the stored content, computed while the upload streams to disk
+ALTER TABLE file_versions ADD COLUMN checksum VARCHAR(64);
@@ -0,0 +1,12 @@
+-- V3__content_addressed_blobs.sql
+-- Stored content is keyed by its SHA-256 and shared between file versions
+CREATE TABLE blobs (
+    hash VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Several versions may now point to the same blob
+ALTER TABLE file_versions DROP CONSTRAINT file_versions_file_key_key;
+CREATE INDEX idx_file_versions_file_key ON file_versions(file_key);
@@ -0,0 +1,18 @@
+-- V4__upload_sessions.sql
+-- Resumable uploads: chunks live on disk, the session row tracks what is expected
+CREATE TABLE upload_sessions (
+    id VARCHAR(36) PRIMARY KEY,
+    document_id BIGINT NOT NULL,
+    created_by BIGINT NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    total_size BIGINT NOT NULL,
+    chunk_size INTEGER NOT NULL,
+    chunk_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_upload_sessions_document FOREIGN KEY (document_id) REFERENCES documents(id) ON DELETE CASCADE,
+    CONSTRAINT fk_upload_sessions_created_by FOREIGN KEY (created_by) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_upload_sessions_expires_at ON upload_sessions(expires_at);
@@ -0,0 +1,10 @@
+-- V5__blob_delta_encoding.sql
+-- Older versions may be stored as binary deltas against the blob of their successor
+ALTER TABLE blobs ADD COLUMN encoding VARCHAR(10) NOT NULL DEFAULT 'FULL';
+ALTER TABLE blobs ADD COLUMN base_hash VARCHAR(64) REFERENCES blobs(hash);
+ALTER TABLE blobs ADD COLUMN stored_size BIGINT;
+ALTER TABLE blobs ADD COLUMN delta_checked_at TIMESTAMP;
+
+CREATE INDEX idx_blobs_delta_pending ON blobs(created_at) WHERE encoding = 'FULL' AND delta_checked_at IS NULL;
+CREATE INDEX idx_blobs_base_hash ON blobs(base_hash) WHERE base_hash IS NOT NULL;
+CREATE INDEX idx_file_versions_document_uploaded ON file_versions(document_id, uploaded_at);
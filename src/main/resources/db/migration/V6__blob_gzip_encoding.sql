@@ -0,0 +1,4 @@
+-- V6__blob_gzip_encoding.sql
+-- Blobs that compress well are stored gzip-compressed (encoding GZIP) and may still become deltas
+DROP INDEX idx_blobs_delta_pending;
+CREATE INDEX idx_blobs_delta_pending ON blobs(created_at) WHERE encoding <> 'DELTA' AND delta_checked_at IS NULL;
@@ -0,0 +1,3 @@
+-- V7__file_versions_pooled_ids.sql
+-- The application reserves file_versions ids in blocks of 50 (pooled sequence) so version inserts can be batched
+ALTER SEQUENCE file_versions_id_seq INCREMENT BY 50;
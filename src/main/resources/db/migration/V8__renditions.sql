@@ -0,0 +1,34 @@
+-- V8__renditions.sql
+-- Derived images (thumbnail, preview) of each file version, stored as blobs, and the durable queue that produces them
+CREATE TABLE renditions (
+    id BIGSERIAL PRIMARY KEY,
+    file_version_id BIGINT NOT NULL,
+    kind VARCHAR(20) NOT NULL,
+    blob_key VARCHAR(64) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    width INTEGER NOT NULL,
+    height INTEGER NOT NULL,
+    size BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- No cascade: the blob references are released explicitly before a version is deleted
+    CONSTRAINT fk_renditions_file_version FOREIGN KEY (file_version_id) REFERENCES file_versions(id),
+    CONSTRAINT uk_renditions_version_kind UNIQUE (file_version_id, kind)
+);
+
+CREATE TABLE rendition_jobs (
+    file_version_id BIGINT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    next_attempt_at TIMESTAMP NOT NULL,
+    started_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_rendition_jobs_file_version FOREIGN KEY (file_version_id) REFERENCES file_versions(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_rendition_jobs_due ON rendition_jobs(next_attempt_at) WHERE status = 'PENDING';
+
+-- Existing versions get their renditions from the background queue as well
+INSERT INTO rendition_jobs (file_version_id, status, next_attempt_at)
+SELECT id, 'PENDING', CURRENT_TIMESTAMP FROM file_versions
+WHERE content_type IN ('application/pdf', 'image/png', 'image/jpeg');
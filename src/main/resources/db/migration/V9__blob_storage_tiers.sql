@@ -0,0 +1,10 @@
+-- V9__blob_storage_tiers.sql
+-- Blobs not accessed for a long time move to packed, compressed files in a cold directory
+ALTER TABLE blobs ADD COLUMN tier VARCHAR(10) NOT NULL DEFAULT 'HOT';
+ALTER TABLE blobs ADD COLUMN pack_id INTEGER;
+ALTER TABLE blobs ADD COLUMN pack_offset BIGINT;
+ALTER TABLE blobs ADD COLUMN pack_length BIGINT;
+ALTER TABLE file_versions ADD COLUMN last_accessed_at TIMESTAMP;
+
+CREATE INDEX idx_blobs_cold_pending ON blobs(created_at, hash) WHERE tier = 'HOT' AND encoding <> 'DELTA';
+CREATE INDEX idx_blobs_pack ON blobs(pack_id) WHERE tier = 'COLD';
@@ -0,0 +1,50 @@
+package br.com.gabrielvogado.desafiouds.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchedulingConfigTest {
+
+    @Test
+    void deveRodarTarefasCurtasEnquantoUmaManutencaoDorme() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(SchedulingConfig.class, Tasks.class)) {
+            Tasks tasks = context.getBean(Tasks.class);
+
+            assertThat(tasks.maintenanceStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            // A manutenção segue dormindo, e as tarefas curtas continuam no scheduler padrão
+            assertThat(tasks.shortRuns.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(tasks.maintenanceThread.get()).isZero();
+            tasks.release.countDown();
+        }
+    }
+
+    static class Tasks {
+
+        final CountDownLatch maintenanceStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch shortRuns = new CountDownLatch(3);
+        final AtomicInteger maintenanceThread = new AtomicInteger();
+
+        @Scheduled(fixedDelay = 60000, scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+        public void maintenance() throws InterruptedException {
+            maintenanceStarted.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        }
+
+        @Scheduled(fixedDelay = 10)
+        public void shortTask() {
+            if (Thread.currentThread().getName().startsWith("maintenance-")) {
+                maintenanceThread.incrementAndGet();
+            }
+            shortRuns.countDown();
+        }
+    }
+}
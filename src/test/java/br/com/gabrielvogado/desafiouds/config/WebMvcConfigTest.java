@@ -0,0 +1,100 @@
+package br.com.gabrielvogado.desafiouds.config;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebMvcConfigTest {
+
+    private static final int CHUNKS = 15;
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path baseDir;
+
+    private Tomcat tomcat;
+
+    @AfterEach
+    void tearDown() throws LifecycleException {
+        if (tomcat != null) {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    @Test
+    void deveTransmitirExportacaoAlemDoTimeoutPadraoDoContainer() throws Exception {
+        // O timeout do conector faz o papel dos 30s padrão do Tomcat; a exportação leva o triplo
+        int port = start(500);
+
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/export")).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).hasSize(CHUNKS * CHUNK_SIZE);
+    }
+
+    private int start(long containerAsyncTimeout) throws LifecycleException {
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.register(Mvc.class, WebMvcConfig.class, ExportController.class);
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("test", Map.of("file.export.timeout", "PT10S")));
+        context.addBeanFactoryPostProcessor(
+                beanFactory -> beanFactory.setConversionService(ApplicationConversionService.getSharedInstance()));
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(0);
+        tomcat.getConnector().setAsyncTimeout(containerAsyncTimeout);
+        Context servletContext = tomcat.addContext("", baseDir.toString());
+        Tomcat.addServlet(servletContext, "dispatcher", new DispatcherServlet(context)).setAsyncSupported(true);
+        servletContext.addServletMappingDecoded("/", "dispatcher");
+        tomcat.start();
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    @EnableWebMvc
+    static class Mvc {
+    }
+
+    @RestController
+    static class ExportController {
+
+        @GetMapping("/export")
+        StreamingResponseBody export() {
+            return out -> {
+                for (int i = 0; i < CHUNKS; i++) {
+                    out.write(new byte[CHUNK_SIZE]);
+                    out.flush();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ThreadPoolTaskExecutor executor;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(6), executor, meterRegistry, Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void deveCalcularHashNoExecutorEPedirRehashDeCustoMenor() {
+        String hash = encoder.encode("senha123");
+
+        assertThat(encoder.matches("senha123", hash)).isTrue();
+        assertThat(encoder.matches("outra", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("senha123"))).isTrue();
+
+        assertThat(meterRegistry.get("auth.password.hash").tag("operation", "matches").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void deveRecusarNaHoraComAFilaCheia() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        // Uma tarefa ocupa a única thread e outra a única vaga da fila
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+        try {
+            assertThat(meterRegistry.get("auth.password.queue").gauge().value()).isEqualTo(1);
+            assertThatThrownBy(() -> encoder.matches("senha123", "$2a$06$hash"))
+                    .isInstanceOf(ServiceBusyException.class);
+            assertThat(meterRegistry.get("auth.password.rejected").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
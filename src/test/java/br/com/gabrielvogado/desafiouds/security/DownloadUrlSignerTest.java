@@ -0,0 +1,114 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
+import br.com.gabrielvogado.desafiouds.dto.SignedUrlDTO;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DownloadUrlSignerTest {
+
+    private static final String KEY = "a".repeat(64);
+
+    private DownloadUrlSigner signer;
+
+    @BeforeEach
+    void setUp() {
+        signer = new DownloadUrlSigner();
+        ReflectionTestUtils.setField(signer, "secret", "chave-de-teste-para-urls-assinadas-0123456789");
+        ReflectionTestUtils.setField(signer, "ttl", Duration.ofMinutes(5));
+        signer.init();
+    }
+
+    @Test
+    void deveAssinarEConferirUrlComNomeCodificado() {
+        SignedUrlDTO signed = signer.sign(download("relatório final+v2.pdf"), 42L, User.UserRole.ADMIN,
+                UriComponentsBuilder.fromUriString("http://localhost:8080/api"));
+
+        assertThat(signed.getUrl()).startsWith("http://localhost:8080/api/files/7?");
+        // A URL é pública e cacheável: leva o id e a faixa de banda, nunca o nome do usuário
+        assertThat(signed.getUrl()).contains("sub=42").contains("tier=ADMIN").doesNotContain("user=");
+        assertThat(signed.getExpiresAt()).isAfter(Instant.now()).isBefore(Instant.now().plusSeconds(301));
+
+        MultiValueMap<String, String> query = UriComponentsBuilder.fromUriString(signed.getUrl()).build().getQueryParams();
+        FileDownload verified = signer.verify(7L, param(query, "key"), param(query, "name"), param(query, "type"),
+                Long.parseLong(param(query, "size")), Long.parseLong(param(query, "sub")),
+                User.UserRole.valueOf(param(query, "tier")), Long.parseLong(param(query, "expires")), param(query, "signature"));
+
+        assertThat(verified.getFileName()).isEqualTo("relatório final+v2.pdf");
+        assertThat(verified.getFileKey()).isEqualTo(KEY);
+        assertThat(verified.getContentLength()).isEqualTo(2048);
+    }
+
+    @Test
+    void deveRecusarUrlAlteradaOuExpirada() {
+        long expires = Instant.now().plusSeconds(60).getEpochSecond();
+        String signature = signatureFor(expires);
+
+        assertThat(signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expires, signature).getVersionId()).isEqualTo(7L);
+        assertThatThrownBy(() -> signer.verify(8L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expires, signature))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> signer.verify(7L, "b".repeat(64), "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expires, signature))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 43L, User.UserRole.USER, expires, signature))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.ADMIN, expires, signature))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expires + 3600, signature))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expires, "não-é-base64"))
+                .isInstanceOf(UnauthorizedException.class);
+
+        long expired = Instant.now().minusSeconds(1).getEpochSecond();
+        assertThatThrownBy(() -> signer.verify(7L, KEY, "a.pdf", "application/pdf", 2048, 42L, User.UserRole.USER, expired, signatureFor(expired)))
+                .isInstanceOf(UnauthorizedException.class)
+                .hasMessageContaining("expired");
+    }
+
+    @Test
+    void deveFalharNaInicializacaoSemSegredoProprio() {
+        DownloadUrlSigner semSegredo = new DownloadUrlSigner();
+        ReflectionTestUtils.setField(semSegredo, "secret", "");
+        ReflectionTestUtils.setField(semSegredo, "jwtSecret", "chave-do-jwt-com-pelo-menos-trinta-e-dois-bytes");
+        assertThatThrownBy(semSegredo::init)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("file.signed-url.secret");
+
+        DownloadUrlSigner mesmoSegredoDoJwt = new DownloadUrlSigner();
+        ReflectionTestUtils.setField(mesmoSegredoDoJwt, "secret", "chave-do-jwt-com-pelo-menos-trinta-e-dois-bytes");
+        ReflectionTestUtils.setField(mesmoSegredoDoJwt, "jwtSecret", "chave-do-jwt-com-pelo-menos-trinta-e-dois-bytes");
+        assertThatThrownBy(mesmoSegredoDoJwt::init)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("jwt.secret");
+    }
+
+    private String signatureFor(long expires) {
+        return ReflectionTestUtils.invokeMethod(signer, "signature", 7L, KEY, "a.pdf", "application/pdf", 2048L, 42L, User.UserRole.USER, expires);
+    }
+
+    private static FileDownload download(String fileName) {
+        return FileDownload.builder()
+                .versionId(7L)
+                .fileKey(KEY)
+                .fileName(fileName)
+                .contentType("application/pdf")
+                .contentLength(2048)
+                .build();
+    }
+
+    private static String param(MultiValueMap<String, String> query, String name) {
+        return URLDecoder.decode(query.getFirst(name), StandardCharsets.UTF_8);
+    }
+}
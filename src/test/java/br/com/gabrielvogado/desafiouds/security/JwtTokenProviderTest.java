@@ -0,0 +1,95 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtTokenProviderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        provider = newProvider(3600000L, 10);
+    }
+
+    @Test
+    void deveVerificarOTokenUmaUnicaVezEServirAsSeguintesDoCache() {
+        String token = provider.generateToken(user("maria"));
+
+        assertThat(provider.verify(token)).get().extracting(claims -> claims.getSubject()).isEqualTo("maria");
+        assertThat(provider.verify(token)).isPresent();
+        assertThat(provider.getUsernameFromToken(token)).isEqualTo("maria");
+
+        assertThat(meterRegistry.get("jwt.verifications").tag("result", "parsed").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("jwt.verifications").tag("result", "cached").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void deveRecusarTokenAlteradoOuExpirado() {
+        String token = provider.generateToken(user("maria"));
+        provider.verify(token);
+        String[] parts = token.split("\\.");
+        String otherSubject = provider.generateToken(user("admin")).split("\\.")[1];
+
+        assertThat(provider.verify(parts[0] + "." + otherSubject + "." + parts[2])).isEmpty();
+        assertThat(provider.verify(token + "x")).isEmpty();
+        assertThat(provider.validateToken("não-é-um-jwt")).isFalse();
+
+        JwtTokenProvider expiring = newProvider(-1000L, 10);
+        assertThat(expiring.verify(expiring.generateToken(user("maria")))).isEmpty();
+    }
+
+    @Test
+    void deveManterOCacheDentroDoLimite() {
+        for (int i = 0; i < 25; i++) {
+            assertThat(provider.verify(provider.generateToken(user("usuario-" + i)))).isPresent();
+        }
+
+        Map<?, ?> verified = (Map<?, ?>) ReflectionTestUtils.getField(provider, "verified");
+        assertThat(verified).hasSizeLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void deveLevarIdPapelEEpocaDoUsuarioNasClaims() {
+        User admin = User.builder().id(7L).username("admin").role(User.UserRole.ADMIN).tokenEpoch(3).build();
+
+        User fromClaims = provider.getUserFromClaims(provider.verify(provider.generateToken(admin)).orElseThrow())
+                .orElseThrow();
+
+        assertThat(fromClaims.getId()).isEqualTo(7L);
+        assertThat(fromClaims.getUsername()).isEqualTo("admin");
+        assertThat(fromClaims.getRole()).isEqualTo(User.UserRole.ADMIN);
+        assertThat(fromClaims.getTokenEpoch()).isEqualTo(3);
+    }
+
+    @Test
+    void naoDeveMontarUsuarioDeTokenSemClaims() {
+        String token = provider.generateToken(new UsernamePasswordAuthenticationToken("maria", null));
+
+        assertThat(provider.getUserFromClaims(provider.verify(token).orElseThrow())).isEmpty();
+    }
+
+    private static User user(String username) {
+        return User.builder().id((long) username.hashCode()).username(username).role(User.UserRole.USER).build();
+    }
+
+    private JwtTokenProvider newProvider(long expiration, int cacheMaxSize) {
+        JwtTokenProvider tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", "chave-de-teste-para-tokens-jwt-0123456789abcdef");
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpiration", expiration);
+        ReflectionTestUtils.setField(tokenProvider, "cacheMaxSize", cacheMaxSize);
+        tokenProvider.init();
+        return tokenProvider;
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificações de token por segundo no caminho do JwtAuthenticationFilter, com tokens de um conjunto de usuários
+ * two-parses reproduz o filtro anterior (validateToken e depois getUsernameFromToken, montando chave e parser a
+ * cada chamada); single-parse usa a chave e o parser prontos sem cache; cached é o caminho atual
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtVerificationBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "MyVerySecretKeyForJWTTokenGenerationAndValidationInDevEnvironment123!@#";
+
+    @Param({"two-parses", "single-parse", "cached"})
+    private String mode;
+
+    @Param({"1000"})
+    private int users;
+
+    private JwtTokenProvider provider;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpiration", 3600000L);
+        ReflectionTestUtils.setField(provider, "cacheMaxSize", mode.equals("cached") ? 10000 : 0);
+        provider.init();
+
+        tokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            tokens[i] = provider.generateToken(User.builder()
+                    .id((long) i)
+                    .username("usuario-" + i)
+                    .role(User.UserRole.USER)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public String verify() {
+        String token = tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+        if (mode.equals("two-parses")) {
+            parseWithNewKey(token);
+            return parseWithNewKey(token);
+        }
+        return provider.verify(token).orElseThrow().getSubject();
+    }
+
+    private static String parseWithNewKey(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload()
+                .getSubject();
+    }
+}
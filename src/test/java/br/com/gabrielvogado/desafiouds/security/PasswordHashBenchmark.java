@@ -0,0 +1,75 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logins por segundo por núcleo: uma thread conferindo senhas, direto no BCrypt ou pelo BoundedPasswordEncoder
+ * com uma thread de hash, para cada custo
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PasswordHashBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PasswordHashBenchmark {
+
+    @Param({"direct", "bounded"})
+    private String mode;
+
+    @Param({"8", "10", "12"})
+    private int strength;
+
+    private ThreadPoolTaskExecutor executor;
+    private PasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        hash = bcrypt.encode("senha-do-benchmark");
+        if (mode.equals("bounded")) {
+            executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(1);
+            executor.setMaxPoolSize(1);
+            executor.setQueueCapacity(64);
+            executor.initialize();
+            encoder = new BoundedPasswordEncoder(bcrypt, executor, new SimpleMeterRegistry(), Duration.ofSeconds(2));
+        } else {
+            encoder = bcrypt;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean login() {
+        return encoder.matches("senha-do-benchmark", hash);
+    }
+}
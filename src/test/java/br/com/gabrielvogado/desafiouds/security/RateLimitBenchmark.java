@@ -0,0 +1,77 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo por requisição do RateLimitFilter, com clientes sorteados de um conjunto e limites que não chegam a
+ * recusar; baseline passa a mesma requisição só pela MockFilterChain
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RateLimitBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class RateLimitBenchmark {
+
+    @Param({"baseline", "limited"})
+    private String mode;
+
+    @Param({"10000"})
+    private int clients;
+
+    private RateLimitFilter filter;
+    private String[] addresses;
+
+    @Setup
+    public void setUp() {
+        RateLimiter rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "routes",
+                "/auth/login=1000000000/PT1S,/auth/register=1000000000/PT1S,/documents/**=1000000000/PT1S");
+        rateLimiter.init();
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimiter);
+
+        addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        }
+    }
+
+    @Benchmark
+    public int request() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/documents/42");
+        request.setContextPath("/api");
+        request.setRemoteAddr(addresses[ThreadLocalRandom.current().nextInt(addresses.length)]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (mode.equals("baseline")) {
+            new MockFilterChain().doFilter(request, response);
+        } else {
+            filter.doFilter(request, response, new MockFilterChain());
+        }
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "routes", "/auth/login=3/PT1M, /documents/**=100/PT1S, /users/*/tokens/**=1/PT1M");
+        rateLimiter.init();
+    }
+
+    @Test
+    void deveAceitarARajadaERecusarOExcedentePorClienteERota() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.acquire("/auth/login", "ip:10.0.0.1")).isZero();
+        }
+
+        long wait = rateLimiter.acquire("/auth/login", "ip:10.0.0.1");
+        assertThat(wait).isBetween(TimeUnit.SECONDS.toNanos(19), TimeUnit.SECONDS.toNanos(20));
+
+        // Outro cliente, outra rota e caminhos sem rota têm buckets próprios ou nenhum limite
+        assertThat(rateLimiter.acquire("/auth/login", "ip:10.0.0.2")).isZero();
+        assertThat(rateLimiter.acquire("/documents/1", "ip:10.0.0.1")).isZero();
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.acquire("/health", "ip:10.0.0.1")).isZero();
+            assertThat(rateLimiter.acquire("/auth/login-extra", "ip:10.0.0.1")).isZero();
+            assertThat(rateLimiter.acquire("/documentsx", "ip:10.0.0.1")).isZero();
+        }
+        assertThat(rateLimiter.acquire("/users/7/tokens/revoke", "ip:10.0.0.1")).isZero();
+        assertThat(rateLimiter.acquire("/users/7/tokens/revoke", "ip:10.0.0.1")).isPositive();
+        assertThat(meterRegistry.get("rate-limit.throttled").tag("route", "/auth/login").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("rate-limit.throttled").tag("route", "/users/*/tokens/**").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveDescartarBucketsQueJaEncheram() throws InterruptedException {
+        rateLimiter.acquire("/documents/1", "user:maria");
+        rateLimiter.acquire("/auth/login", "user:maria");
+        Map<?, ?> buckets = (Map<?, ?>) ReflectionTestUtils.getField(rateLimiter, "buckets");
+        assertThat(buckets).hasSize(2);
+
+        // O bucket de /documents/** volta a encher em 10ms; o do login leva 20s
+        Thread.sleep(20);
+        rateLimiter.evictIdle();
+
+        assertThat(buckets).hasSize(1);
+    }
+
+    @Test
+    void deveAplicarOLimiteDoLoginACaminhosCodificadosOuNaoNormalizados() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimiter);
+
+        MockHttpServletResponse response = null;
+        for (String uri : List.of("/api/auth/%6Cogin", "/api/auth//login", "/api/auth/./login", "/api/auth/%6C%6Fgin")) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+            request.setContextPath("/api");
+            response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+        }
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isNotNull();
+    }
+
+    @Test
+    void deveResponder429ComRetryAfterPorUsuarioAutenticado() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimiter);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("maria", null, List.of()));
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            for (int i = 0; i < 4; i++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+                request.setContextPath("/api");
+                response = new MockHttpServletResponse();
+                filter.doFilter(request, response, new MockFilterChain());
+            }
+
+            assertThat(response.getStatus()).isEqualTo(429);
+            assertThat(response.getHeader("Retry-After")).isEqualTo("20");
+            assertThat(rateLimiter.acquire("/auth/login", "ip:127.0.0.1")).isZero();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
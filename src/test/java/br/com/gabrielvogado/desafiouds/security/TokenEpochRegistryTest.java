@@ -0,0 +1,71 @@
+package br.com.gabrielvogado.desafiouds.security;
+
+import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenEpochRegistryTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private TokenEpochRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findTokenEpochs()).thenReturn(List.of(epoch(2L, 1)));
+        registry.refresh();
+    }
+
+    @Test
+    void deveRecusarTokensDeEpocaAnteriorAposRevogar() {
+        assertThat(registry.isCurrent(1L, 0)).isTrue();
+
+        when(userRepository.incrementTokenEpoch(1L)).thenReturn(1);
+        when(userRepository.findTokenEpoch(1L)).thenReturn(1);
+        registry.revoke(1L);
+
+        assertThat(registry.isCurrent(1L, 0)).isFalse();
+        assertThat(registry.isCurrent(1L, 1)).isTrue();
+        assertThat(registry.isCurrent(2L, 0)).isFalse();
+
+        // Um refresh com dados anteriores à revogação não a desfaz
+        registry.refresh();
+        assertThat(registry.isCurrent(1L, 0)).isFalse();
+    }
+
+    @Test
+    void deveLancarExcecaoAoRevogarUsuarioInexistente() {
+        when(userRepository.incrementTokenEpoch(99L)).thenReturn(0);
+
+        assertThatThrownBy(() -> registry.revoke(99L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("User not found");
+    }
+
+    private static UserRepository.TokenEpoch epoch(Long id, Integer tokenEpoch) {
+        return new UserRepository.TokenEpoch() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getTokenEpoch() {
+                return tokenEpoch;
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadStatusDTO;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncUploadServiceTest {
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private AsyncUploadService asyncUploadService;
+
+    @TempDir
+    Path storageDir;
+
+    private MockMultipartFile file;
+
+    @BeforeEach
+    void setUp() {
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(asyncUploadService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(asyncUploadService, "maxFileSize", 10485760L);
+        ReflectionTestUtils.setField(asyncUploadService, "statusTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(asyncUploadService, "retryAfter", Duration.ofSeconds(5));
+
+        file = new MockMultipartFile("file", "arquivo.pdf", "application/pdf", "%PDF-1.7 conteudo".getBytes());
+    }
+
+    @Test
+    void deveCriarVersaoNoExecutorEExporStatusConcluido() {
+        Executor direct = Runnable::run;
+        ReflectionTestUtils.setField(asyncUploadService, "uploadExecutor", direct);
+        FileVersionDTO version = FileVersionDTO.builder().id(10L).documentId(1L).fileName("arquivo.pdf").build();
+        when(fileService.registerStagedVersion(eq(1L), any(StagedBlob.class), eq("arquivo.pdf"), eq("testuser")))
+                .thenReturn(version);
+
+        UploadStatusDTO accepted = asyncUploadService.submit(1L, file, "testuser");
+
+        assertThat(accepted.getState()).isEqualTo(UploadStatusDTO.State.PENDING);
+        UploadStatusDTO status = asyncUploadService.getStatus(accepted.getId(), "testuser");
+        assertThat(status.getState()).isEqualTo(UploadStatusDTO.State.COMPLETED);
+        assertThat(status.getVersion().getId()).isEqualTo(10L);
+
+        ArgumentCaptor<StagedBlob> staged = ArgumentCaptor.forClass(StagedBlob.class);
+        verify(fileService).registerStagedVersion(eq(1L), staged.capture(), eq("arquivo.pdf"), eq("testuser"));
+        assertThat(staged.getValue().getUpload().getSize()).isEqualTo(file.getSize());
+    }
+
+    @Test
+    void deveMarcarFalhaQuandoAssinaturaNaoConferir() {
+        Executor direct = Runnable::run;
+        ReflectionTestUtils.setField(asyncUploadService, "uploadExecutor", direct);
+        MockMultipartFile fake = new MockMultipartFile("file", "falso.pdf", "application/pdf", "nao e pdf".getBytes());
+
+        UploadStatusDTO accepted = asyncUploadService.submit(1L, fake, "testuser");
+
+        UploadStatusDTO status = asyncUploadService.getStatus(accepted.getId(), "testuser");
+        assertThat(status.getState()).isEqualTo(UploadStatusDTO.State.FAILED);
+        assertThat(status.getError()).isNotBlank();
+        verify(fileService, never()).registerStagedVersion(any(), any(), any(), any());
+        assertThat(stagedFiles()).isZero();
+    }
+
+    @Test
+    void deveResponderOcupadoEDescartarConteudoQuandoFilaEstiverCheia() {
+        Executor full = task -> {
+            throw new TaskRejectedException("queue full");
+        };
+        ReflectionTestUtils.setField(asyncUploadService, "uploadExecutor", full);
+
+        assertThatThrownBy(() -> asyncUploadService.submit(1L, file, "testuser"))
+                .isInstanceOf(ServiceBusyException.class)
+                .satisfies(e -> assertThat(((ServiceBusyException) e).getRetryAfter()).isEqualTo(Duration.ofSeconds(5)));
+        assertThat(stagedFiles()).isZero();
+    }
+
+    private long stagedFiles() {
+        Path staging = storageDir.resolve(".staging");
+        if (!Files.isDirectory(staging)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(staging)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
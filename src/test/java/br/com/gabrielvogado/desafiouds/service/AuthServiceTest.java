@@ -4,21 +4,26 @@ import br.com.gabrielvogado.desafiouds.dto.AuthRequest;
 import br.com.gabrielvogado.desafiouds.dto.AuthResponse;
 import br.com.gabrielvogado.desafiouds.dto.RegisterRequest;
 import br.com.gabrielvogado.desafiouds.exception.AuthenticationException;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
 import br.com.gabrielvogado.desafiouds.exception.UserAlreadyExistsException;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.UserRepository;
 import br.com.gabrielvogado.desafiouds.security.JwtTokenProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,6 +50,9 @@ class AuthServiceTest {
     @Mock
     private JwtTokenProvider jwtTokenProvider;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private AuthService authService;
 
@@ -99,6 +107,18 @@ class AuthServiceTest {
         verify(jwtTokenProvider, times(1)).generateToken(authToken);
     }
 
+    @Test
+    void deveRepassarRecusaQuandoAFilaDeHashEstaCheia() {
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new ServiceBusyException("Too many logins in progress, try again later", Duration.ofSeconds(2)));
+
+        assertThatThrownBy(() -> authService.login(loginRequest))
+                .isInstanceOf(ServiceBusyException.class);
+
+        assertThat(meterRegistry.get("auth.login").tag("outcome", "rejected").timer().count()).isEqualTo(1);
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
     @Test
     void deveLancarExcecaoQuandoLoginComCredenciaisInvalidas() {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
@@ -124,7 +144,7 @@ class AuthServiceTest {
                 .passwordHash("encrypted-password")
                 .role(User.UserRole.USER)
                 .build());
-        when(jwtTokenProvider.generateToken("newuser")).thenReturn("jwt-token");
+        when(jwtTokenProvider.generateToken(any(User.class))).thenReturn("jwt-token");
 
         AuthResponse response = authService.register(registerRequest);
 
@@ -0,0 +1,125 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BatchUploadServiceTest {
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private BatchUploadService batchUploadService;
+
+    @TempDir
+    Path storageDir;
+
+    @BeforeEach
+    void setUp() {
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(batchUploadService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(batchUploadService, "maxFileSize", 10485760L);
+        ReflectionTestUtils.setField(batchUploadService, "maxFiles", 20);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveGravarEmParaleloERegistrarTodasAsVersoesDeUmaVez() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ReflectionTestUtils.setField(batchUploadService, "uploadExecutor", executor);
+        List<MultipartFile> files = List.of(pdf("a.pdf", "um"), pdf("b.pdf", "dois"), pdf("c.pdf", "tres"));
+
+        try {
+            batchUploadService.upload(List.of(1L, 2L, 1L), files, "testuser");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ArgumentCaptor<List<FileService.StagedUpload>> uploads = ArgumentCaptor.forClass(List.class);
+        verify(fileService).validateBatchUpload(List.of(1L, 2L, 1L), files, "testuser");
+        verify(fileService).registerStagedVersions(uploads.capture(), eq("testuser"));
+        assertThat(uploads.getValue()).extracting(FileService.StagedUpload::documentId).containsExactly(1L, 2L, 1L);
+        assertThat(uploads.getValue()).extracting(FileService.StagedUpload::fileName).containsExactly("a.pdf", "b.pdf", "c.pdf");
+        assertThat(uploads.getValue()).extracting(upload -> upload.blob().getUpload().getSize())
+                .containsExactly(files.get(0).getSize(), files.get(1).getSize(), files.get(2).getSize());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deveGravarNaPropriaThreadQuandoFilaDoExecutorEstiverCheia() {
+        ReflectionTestUtils.setField(batchUploadService, "uploadExecutor", (Executor) task -> {
+            throw new TaskRejectedException("queue full");
+        });
+
+        batchUploadService.upload(List.of(1L), List.of(pdf("a.pdf", "um"), pdf("b.pdf", "dois")), "testuser");
+
+        ArgumentCaptor<List<FileService.StagedUpload>> uploads = ArgumentCaptor.forClass(List.class);
+        verify(fileService).registerStagedVersions(uploads.capture(), eq("testuser"));
+        assertThat(uploads.getValue()).extracting(FileService.StagedUpload::documentId).containsExactly(1L, 1L);
+    }
+
+    @Test
+    void naoDeveRegistrarNenhumaVersaoQuandoUmArquivoForRecusado() {
+        ReflectionTestUtils.setField(batchUploadService, "uploadExecutor", (Executor) Runnable::run);
+        MockMultipartFile fake = new MockMultipartFile("files", "falso.pdf", "application/pdf", "nao e pdf".getBytes());
+
+        assertThatThrownBy(() -> batchUploadService.upload(List.of(1L), List.of(pdf("a.pdf", "um"), fake), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+        verify(fileService, never()).registerStagedVersions(any(), any());
+        assertThat(stagedFiles()).isZero();
+    }
+
+    @Test
+    void deveRecusarQuantidadeDeDocumentosDiferenteDaDeArquivos() {
+        assertThatThrownBy(() -> batchUploadService.upload(List.of(1L, 2L),
+                List.of(pdf("a.pdf", "um"), pdf("b.pdf", "dois"), pdf("c.pdf", "tres")), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+        verify(fileService, never()).validateBatchUpload(any(), any(), any());
+    }
+
+    private static MockMultipartFile pdf(String name, String content) {
+        return new MockMultipartFile("files", name, "application/pdf", ("%PDF-1.7 " + content).getBytes());
+    }
+
+    private long stagedFiles() {
+        Path staging = storageDir.resolve(".staging");
+        if (!Files.isDirectory(staging)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(staging)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.model.StoredBlob;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.ColdLocation;
+import br.com.gabrielvogado.desafiouds.storage.ColdStorage;
+import br.com.gabrielvogado.desafiouds.storage.DeltaCodec;
+import br.com.gabrielvogado.desafiouds.storage.HotBlobCache;
+import br.com.gabrielvogado.desafiouds.storage.GroupCommitSyncer;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlobStorageServiceTest {
+
+    private static final byte[] PDF_CONTENT = "%PDF-1.7 mesmo conteudo".getBytes(StandardCharsets.US_ASCII);
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @InjectMocks
+    private BlobStorageService blobStorageService;
+
+    @TempDir
+    Path storageDir;
+
+    private LocalStorageBackend storageBackend;
+
+    @BeforeEach
+    void setUp() {
+        storageBackend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(storageBackend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(storageBackend, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageBackend, "mounts", "");
+        ReflectionTestUtils.setField(storageBackend, "virtualNodes", 16);
+        storageBackend.init();
+
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(blobStorageService, "storageBackend", storageBackend);
+        HotBlobCache hotBlobCache = new HotBlobCache();
+        ReflectionTestUtils.setField(hotBlobCache, "enabled", false);
+        ReflectionTestUtils.setField(blobStorageService, "hotBlobCache", hotBlobCache);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void deveGravarConteudoRepetidoUmaUnicaVez() throws IOException {
+        StagedBlob first = stagePdf();
+        StagedBlob second = stagePdf();
+
+        String firstKey = blobStorageService.commit(first);
+        String secondKey = blobStorageService.commit(second);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(firstKey).isEqualTo(secondKey).isEqualTo(first.getHash());
+        assertThat(storageBackend.locate(firstKey)).hasBinaryContent(PDF_CONTENT);
+        assertThat(first.getTempFile()).doesNotExist();
+        assertThat(second.getTempFile()).doesNotExist();
+        verify(storedBlobRepository, times(2)).acquire(firstKey, PDF_CONTENT.length, "FULL", PDF_CONTENT.length);
+    }
+
+    @Test
+    void deveRestaurarArquivoRemovidoConcorrentementeAntesDoCommit() throws IOException {
+        StagedBlob staged = stagePdf();
+
+        String key = blobStorageService.commit(staged);
+        Files.delete(storageBackend.locate(key));
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(storageBackend.locate(key)).hasBinaryContent(PDF_CONTENT);
+    }
+
+    @Test
+    void deveApagarArquivoQuandoUltimaReferenciaForLiberada() throws IOException {
+        Path blob = writeBlob("hash-a");
+        when(storedBlobRepository.decrementRefCount("hash-a")).thenReturn(1);
+        when(storedBlobRepository.deleteIfUnreferenced("hash-a")).thenReturn(1);
+        when(storedBlobRepository.existsById("hash-a")).thenReturn(false);
+
+        blobStorageService.release("hash-a");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(blob).doesNotExist();
+    }
+
+    @Test
+    void deveManterArquivoEnquantoHouverReferencias() throws IOException {
+        Path blob = writeBlob("hash-a");
+        when(storedBlobRepository.decrementRefCount("hash-a")).thenReturn(1);
+        when(storedBlobRepository.deleteIfUnreferenced("hash-a")).thenReturn(0);
+
+        blobStorageService.release("hash-a");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(blob).exists();
+        verify(storedBlobRepository, never()).existsById("hash-a");
+    }
+
+    @Test
+    void deveApagarArquivoLegadoSemRegistroDeBlob() throws IOException {
+        Path legacy = Files.write(storageDir.resolve("0b8f5f3e-legacy-uuid"), PDF_CONTENT);
+        when(storedBlobRepository.decrementRefCount("0b8f5f3e-legacy-uuid")).thenReturn(0);
+
+        blobStorageService.release("0b8f5f3e-legacy-uuid");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(legacy).doesNotExist();
+    }
+
+    @Test
+    void deveGuardarEmGzipConteudoQueComprimeBem() throws IOException {
+        enableCompression();
+        byte[] content = ("%PDF-1.7 " + "texto repetido ".repeat(500)).getBytes(StandardCharsets.US_ASCII);
+        StagedBlob staged = blobStorageService.stage(new ByteArrayInputStream(content), "application/pdf", 1 << 20);
+
+        String key = blobStorageService.commit(staged);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        Path compressed = storageBackend.locate(BlobStorageService.gzipKey(key));
+        assertThat(storageBackend.exists(key)).isFalse();
+        assertThat(Files.size(compressed)).isLessThan(content.length / 10);
+        verify(storedBlobRepository).acquire(key, content.length, "GZIP", Files.size(compressed));
+
+        when(storedBlobRepository.findSize(key)).thenReturn((long) content.length);
+        Resource decoded = blobStorageService.open(key).orElseThrow();
+        assertThat(decoded.contentLength()).isEqualTo(content.length);
+        assertThat(decoded.getContentAsByteArray()).isEqualTo(content);
+        try (InputStream in = new GZIPInputStream(blobStorageService.openGzip(key).orElseThrow().getInputStream())) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void naoDeveComprimirTiposJaComprimidos() throws IOException {
+        enableCompression();
+        byte[] content = new byte[4096];
+        System.arraycopy(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, 0, content, 0, 3);
+
+        StagedBlob staged = blobStorageService.stage(new ByteArrayInputStream(content), "image/jpeg", 1 << 20);
+
+        assertThat(staged.getCompressedFile()).isNull();
+        blobStorageService.discard(staged);
+    }
+
+    @Test
+    void deveReconstruirBlobGuardadoComoDelta() throws Exception {
+        byte[] newer = "%PDF-1.7 conteudo da versao mais recente do documento".getBytes(StandardCharsets.US_ASCII);
+        String baseKey = sha256(newer);
+        String key = sha256(PDF_CONTENT);
+        Path base = writeBlob(baseKey, newer);
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        Path target = Files.write(storageDir.resolve("target.tmp"), PDF_CONTENT);
+        DeltaCodec.encode(base, target, delta, 16);
+        writeBlob(BlobStorageService.deltaKey(key, baseKey), delta.toByteArray());
+        when(storedBlobRepository.findBaseHash(key)).thenReturn(baseKey);
+
+        Resource resource = blobStorageService.open(key).orElseThrow();
+
+        assertThat(resource.getContentAsByteArray()).isEqualTo(PDF_CONTENT);
+        assertThat(storageBackend.exists(key)).isFalse();
+    }
+
+    @Test
+    void deveApagarDeltaELiberarBaseQuandoUltimaReferenciaSair() throws IOException {
+        Path delta = writeBlob(BlobStorageService.deltaKey("hash-a", "hash-b"), PDF_CONTENT);
+        Path base = writeBlob("hash-b", PDF_CONTENT);
+        when(storedBlobRepository.decrementRefCount("hash-a")).thenReturn(1);
+        when(storedBlobRepository.findBaseHash("hash-a")).thenReturn("hash-b");
+        when(storedBlobRepository.deleteIfUnreferenced("hash-a")).thenReturn(1);
+        when(storedBlobRepository.decrementRefCount("hash-b")).thenReturn(1);
+        when(storedBlobRepository.deleteIfUnreferenced("hash-b")).thenReturn(0);
+
+        blobStorageService.release("hash-a");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(delta).doesNotExist();
+        assertThat(base).exists();
+    }
+
+    @Test
+    void deveMoverBlobParaCamadaFriaELerDoPacoteAteVoltarParaCamadaQuente() throws Exception {
+        ColdStorage coldStorage = enableColdStorage();
+        String key = sha256(PDF_CONTENT);
+        Path hot = writeBlob(key);
+        StoredBlob blob = StoredBlob.builder().hash(key).size((long) PDF_CONTENT.length).refCount(1).build();
+        when(storedBlobRepository.findById(key)).thenReturn(Optional.of(blob));
+        when(storedBlobRepository.markCold(eq(key), anyInt(), anyLong(), anyLong())).thenReturn(1);
+        when(storedBlobRepository.isCold(key)).thenReturn(true);
+
+        assertThat(blobStorageService.demote(key)).isTrue();
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<Integer> packId = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Long> offset = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Long> length = ArgumentCaptor.forClass(Long.class);
+        verify(storedBlobRepository).markCold(eq(key), packId.capture(), offset.capture(), length.capture());
+        assertThat(hot).doesNotExist();
+        when(storedBlobRepository.findColdLocation(key)).thenReturn(coldLocation(packId.getValue(), offset.getValue(), length.getValue()));
+        assertThat(blobStorageService.isStored(key)).isTrue();
+        assertThat(blobStorageService.open(key).orElseThrow().getContentAsByteArray()).isEqualTo(PDF_CONTENT);
+        assertThat(blobStorageService.open(key).orElseThrow().getContentAsByteArray()).isEqualTo(PDF_CONTENT);
+        assertThat(coldStorage.drainPromotionCandidates(2, Duration.ofHours(1))).containsExactly(key);
+
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        blob.setTier(StoredBlob.Tier.COLD);
+        blob.setPackId(packId.getValue());
+        blob.setPackOffset(offset.getValue());
+        blob.setPackLength(length.getValue());
+        when(storedBlobRepository.markHot(key)).thenReturn(1);
+
+        assertThat(blobStorageService.promote(key)).isTrue();
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(hot).hasBinaryContent(PDF_CONTENT);
+    }
+
+    @Test
+    void deveApagarArquivoPromovidoQuandoTransacaoForDesfeita() throws Exception {
+        ColdStorage coldStorage = enableColdStorage();
+        String key = sha256(PDF_CONTENT);
+        ColdStorage.Location location = coldStorage.append(key, new ByteArrayResource(PDF_CONTENT), false, PDF_CONTENT.length);
+        StoredBlob blob = StoredBlob.builder().hash(key).size((long) PDF_CONTENT.length).refCount(1)
+                .tier(StoredBlob.Tier.COLD).packId(location.packId()).packOffset(location.offset()).packLength(location.length())
+                .build();
+        when(storedBlobRepository.findById(key)).thenReturn(Optional.of(blob));
+        when(storedBlobRepository.markHot(key)).thenReturn(1);
+
+        assertThat(blobStorageService.promote(key)).isTrue();
+        assertThat(storageBackend.exists(key)).isTrue();
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(storageBackend.exists(key)).isFalse();
+    }
+
+    private ColdStorage enableColdStorage() throws IOException {
+        ColdStorage coldStorage = new ColdStorage();
+        ReflectionTestUtils.setField(coldStorage, "coldPath", storageDir.resolve("cold").toString());
+        ReflectionTestUtils.setField(coldStorage, "packMaxSize", 1L << 20);
+        ReflectionTestUtils.setField(coldStorage, "compressionMaxRatio", 0.9);
+        coldStorage.init();
+        ReflectionTestUtils.setField(blobStorageService, "coldStorage", coldStorage);
+        return coldStorage;
+    }
+
+    private static ColdLocation coldLocation(int packId, long offset, long length) {
+        return new ColdLocation() {
+            @Override
+            public int getPackId() {
+                return packId;
+            }
+
+            @Override
+            public long getOffset() {
+                return offset;
+            }
+
+            @Override
+            public long getLength() {
+                return length;
+            }
+        };
+    }
+
+    private void enableCompression() {
+        ReflectionTestUtils.setField(blobStorageService, "compressionEnabled", true);
+        ReflectionTestUtils.setField(blobStorageService, "compressionLevel", 6);
+        ReflectionTestUtils.setField(blobStorageService, "compressionMaxRatio", 0.9);
+        ReflectionTestUtils.setField(blobStorageService, "compressionSkipTypes", "image/png,image/jpeg");
+    }
+
+    private Path writeBlob(String key) throws IOException {
+        return writeBlob(key, PDF_CONTENT);
+    }
+
+    private Path writeBlob(String key, byte[] content) throws IOException {
+        Path blob = storageBackend.locate(key);
+        Files.createDirectories(blob.getParent());
+        return Files.write(blob, content);
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private StagedBlob stagePdf() throws IOException {
+        return blobStorageService.stage(new ByteArrayInputStream(PDF_CONTENT), "application/pdf", 1024);
+    }
+
+    private void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+}
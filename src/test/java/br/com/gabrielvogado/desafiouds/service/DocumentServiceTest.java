@@ -2,11 +2,17 @@ package br.com.gabrielvogado.desafiouds.service;
 
 import br.com.gabrielvogado.desafiouds.dto.DocumentCreateRequest;
 import br.com.gabrielvogado.desafiouds.dto.DocumentDTO;
+import br.com.gabrielvogado.desafiouds.exception.PreconditionFailedException;
 import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
 import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
 import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.security.CustomUserDetails;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,16 +23,23 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +51,15 @@ class DocumentServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private FileVersionRepository fileVersionRepository;
+
+    @Mock
+    private BlobStorageService blobStorageService;
+
+    @Mock
+    private RenditionService renditionService;
+
     @InjectMocks
     private DocumentService documentService;
 
@@ -69,11 +91,20 @@ class DocumentServiceTest {
                 .description("Test Description")
                 .tags(Set.of("tag1", "tag2"))
                 .build();
+
+        AccessEvaluator accessEvaluator = new AccessEvaluator();
+        ReflectionTestUtils.setField(accessEvaluator, "userRepository", userRepository);
+        ReflectionTestUtils.setField(documentService, "accessEvaluator", accessEvaluator);
+        authenticate(testUser);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
     void deveCriarDocumentoComSucesso() {
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
         when(documentRepository.save(any(Document.class))).thenReturn(testDocument);
 
         DocumentDTO result = documentService.createDocument(createRequest, "testuser");
@@ -84,7 +115,7 @@ class DocumentServiceTest {
         assertThat(result.getStatus()).isEqualTo(Document.DocumentStatus.DRAFT);
         assertThat(result.getOwnerUsername()).isEqualTo("testuser");
 
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verifyNoInteractions(userRepository);
         verify(documentRepository, times(1)).save(any(Document.class));
     }
 
@@ -95,8 +126,6 @@ class DocumentServiceTest {
                 .description("Test Description")
                 .build();
 
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-
         assertThatThrownBy(() -> documentService.createDocument(invalidRequest, "testuser"))
                 .isInstanceOf(Exception.class);
     }
@@ -119,7 +148,6 @@ class DocumentServiceTest {
 
         Page<Document> documentPage = new PageImpl<>(Arrays.asList(doc1, doc2), pageable, 2);
 
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
         when(documentRepository.findByOwnerAndTitleContainingAndStatus(
                 testUser, "Document", Document.DocumentStatus.DRAFT, pageable))
                 .thenReturn(new PageImpl<>(Arrays.asList(doc1), pageable, 1));
@@ -135,7 +163,7 @@ class DocumentServiceTest {
         assertThat(result.getContent().get(0).getTitle()).isEqualTo("Document 1");
         assertThat(result.getTotalElements()).isEqualTo(1);
 
-        verify(userRepository, times(1)).findByUsername("testuser");
+        verifyNoInteractions(userRepository);
         verify(documentRepository, times(1)).findByOwnerAndTitleContainingAndStatus(
                 testUser, "Document", Document.DocumentStatus.DRAFT, pageable);
     }
@@ -158,7 +186,6 @@ class DocumentServiceTest {
                 .build();
 
         when(documentRepository.findById(1L)).thenReturn(Optional.of(otherUserDocument));
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
 
         assertThatThrownBy(() -> documentService.getDocumentById(1L, "testuser"))
                 .isInstanceOf(UnauthorizedException.class)
@@ -167,12 +194,35 @@ class DocumentServiceTest {
         verify(documentRepository, times(1)).findById(1L);
     }
 
+    @Test
+    void deveAutorizarAdministradorPeloUsuarioAutenticadoSemConsultarUsuarios() {
+        User admin = User.builder()
+                .id(9L)
+                .username("admin")
+                .role(User.UserRole.ADMIN)
+                .build();
+        authenticate(admin);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+
+        DocumentDTO result = documentService.getDocumentById(1L, "admin");
+
+        assertThat(result.getOwnerUsername()).isEqualTo("testuser");
+        verify(documentRepository, times(1)).findById(1L);
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void deveDeletarDocumentoComSucesso() {
         when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(fileVersionRepository.findForUpdateByDocumentId(1L)).thenReturn(List.of(
+                FileVersion.builder().id(10L).fileKey("hash-a").build(),
+                FileVersion.builder().id(11L).fileKey("hash-b").build()));
 
         documentService.deleteDocument(1L, "testuser");
 
+        verify(renditionService, times(1)).deleteRenditions(List.of(10L, 11L));
+        verify(blobStorageService, times(1)).release("hash-a");
+        verify(blobStorageService, times(1)).release("hash-b");
         verify(documentRepository, times(1)).delete(testDocument);
     }
 
@@ -186,5 +236,34 @@ class DocumentServiceTest {
         assertThat(result).isNotNull();
         verify(documentRepository, times(1)).save(any(Document.class));
     }
-}
 
+    @Test
+    void deveAtualizarDocumentoQuandoIfMatchCorrespondeAVersaoAtual() {
+        testDocument.setUpdatedAt(LocalDateTime.of(2026, 3, 1, 10, 0));
+        when(documentRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testDocument));
+        when(documentRepository.save(any(Document.class))).thenReturn(testDocument);
+
+        documentService.updateDocument(1L, createRequest, "testuser",
+                EntityTags.document(1L, testDocument.getUpdatedAt()));
+
+        verify(documentRepository, times(1)).save(testDocument);
+    }
+
+    @Test
+    void deveRejeitarAtualizacaoComIfMatchDesatualizado() {
+        testDocument.setUpdatedAt(LocalDateTime.of(2026, 3, 1, 10, 0));
+        when(documentRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testDocument));
+        String staleTag = EntityTags.document(1L, LocalDateTime.of(2026, 3, 1, 9, 0));
+
+        assertThatThrownBy(() -> documentService.updateDocument(1L, createRequest, "testuser", staleTag))
+                .isInstanceOf(PreconditionFailedException.class);
+
+        verify(documentRepository, never()).save(any(Document.class));
+    }
+
+    private static void authenticate(User user) {
+        CustomUserDetails details = new CustomUserDetails(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+}
@@ -1,36 +1,63 @@
 package br.com.gabrielvogado.desafiouds.service;
 
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
 import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadByHashRequest;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
 import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
 import br.com.gabrielvogado.desafiouds.model.Document;
 import br.com.gabrielvogado.desafiouds.model.FileVersion;
 import br.com.gabrielvogado.desafiouds.model.User;
 import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
 import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
 import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.security.CustomUserDetails;
+import br.com.gabrielvogado.desafiouds.storage.HotBlobCache;
+import br.com.gabrielvogado.desafiouds.storage.BandwidthScheduler;
+import br.com.gabrielvogado.desafiouds.storage.GroupCommitSyncer;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class FileServiceTest {
 
+    private static final byte[] PDF_CONTENT = "%PDF-1.7 conteudo de teste".getBytes(StandardCharsets.US_ASCII);
+
     @Mock
     private DocumentRepository documentRepository;
 
@@ -40,19 +67,50 @@ class FileServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private RenditionService renditionService;
+
+    @Mock
+    private StorageTieringService storageTieringService;
+
+    @Mock
+    private BandwidthScheduler bandwidthScheduler;
+
     @Mock
     private MultipartFile multipartFile;
 
     @InjectMocks
     private FileService fileService;
 
+    @TempDir
+    Path storageDir;
+
+    private LocalStorageBackend storageBackend;
     private User testUser;
     private Document testDocument;
     private FileVersion testFileVersion;
 
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(fileService, "storagePath", "./test-uploads");
+        storageBackend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(storageBackend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(storageBackend, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageBackend, "mounts", "");
+        ReflectionTestUtils.setField(storageBackend, "virtualNodes", 16);
+        storageBackend.init();
+
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storedBlobRepository", storedBlobRepository);
+        ReflectionTestUtils.setField(blobStorageService, "storageBackend", storageBackend);
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        HotBlobCache hotBlobCache = new HotBlobCache();
+        ReflectionTestUtils.setField(hotBlobCache, "enabled", false);
+        ReflectionTestUtils.setField(blobStorageService, "hotBlobCache", hotBlobCache);
+        ReflectionTestUtils.setField(fileService, "blobStorageService", blobStorageService);
+        TransactionSynchronizationManager.initSynchronization();
         ReflectionTestUtils.setField(fileService, "maxFileSize", 10485760L);
         ReflectionTestUtils.setField(fileService, "allowedTypes", "application/pdf,image/png,image/jpeg");
 
@@ -80,27 +138,45 @@ class FileServiceTest {
                 .fileSize(1024L)
                 .uploadedBy(testUser)
                 .build();
+
+        AccessEvaluator accessEvaluator = new AccessEvaluator();
+        ReflectionTestUtils.setField(accessEvaluator, "userRepository", userRepository);
+        ReflectionTestUtils.setField(fileService, "accessEvaluator", accessEvaluator);
+        CustomUserDetails details = new CustomUserDetails(testUser);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        SecurityContextHolder.clearContext();
     }
 
     @Test
-    void deveFazerUploadDeArquivoValidoComSucesso() throws IOException {
+    void deveFazerUploadDeArquivoValidoComSucesso() throws Exception {
         when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
         when(multipartFile.isEmpty()).thenReturn(false);
         when(multipartFile.getSize()).thenReturn(1024L);
         when(multipartFile.getContentType()).thenReturn("application/pdf");
         when(multipartFile.getOriginalFilename()).thenReturn("test.pdf");
-        when(multipartFile.getBytes()).thenReturn(new byte[]{1, 2, 3});
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PDF_CONTENT));
         when(fileVersionRepository.save(any(FileVersion.class))).thenReturn(testFileVersion);
 
         FileVersionDTO result = fileService.uploadFile(1L, multipartFile, "testuser");
 
+        String expectedKey = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PDF_CONTENT));
+        assertThat(storageBackend.locate(expectedKey)).hasBinaryContent(PDF_CONTENT);
+        verify(storedBlobRepository, times(1)).acquire(expectedKey, PDF_CONTENT.length, "FULL", PDF_CONTENT.length);
+
         assertThat(result).isNotNull();
         assertThat(result.getFileName()).isEqualTo("test.pdf");
         assertThat(result.getContentType()).isEqualTo("application/pdf");
 
         verify(documentRepository, times(1)).findById(1L);
         verify(fileVersionRepository, times(1)).save(any(FileVersion.class));
+        verify(renditionService, times(1)).enqueue(testFileVersion);
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -129,5 +205,144 @@ class FileServiceTest {
 
         verify(fileVersionRepository, never()).save(any(FileVersion.class));
     }
-}
 
+    @Test
+    void deveRejeitarUploadQuandoConteudoNaoCorrespondeAoTipoDeclarado() throws IOException {
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getSize()).thenReturn(1024L);
+        when(multipartFile.getContentType()).thenReturn("application/pdf");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00}));
+
+        assertThatThrownBy(() -> fileService.uploadFile(1L, multipartFile, "testuser"))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("does not match declared type");
+
+        verify(fileVersionRepository, never()).save(any(FileVersion.class));
+        try (var files = Files.walk(storageDir)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void deveAplicarTamanhoMaximoDuranteOStreamingDoUpload() throws IOException {
+        ReflectionTestUtils.setField(fileService, "maxFileSize", 8L);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(multipartFile.isEmpty()).thenReturn(false);
+        when(multipartFile.getSize()).thenReturn(4L);
+        when(multipartFile.getContentType()).thenReturn("application/pdf");
+        when(multipartFile.getInputStream()).thenReturn(new ByteArrayInputStream(PDF_CONTENT));
+
+        assertThatThrownBy(() -> fileService.uploadFile(1L, multipartFile, "testuser"))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("File size exceeds maximum");
+
+        verify(fileVersionRepository, never()).save(any(FileVersion.class));
+        try (var files = Files.walk(storageDir)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void deveCriarVersaoPeloHashSemReceberOConteudo() throws Exception {
+        String key = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PDF_CONTENT));
+        Path blob = storageBackend.locate(key);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, PDF_CONTENT);
+        testFileVersion.setFileKey(key);
+        testFileVersion.setFileSize((long) PDF_CONTENT.length);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(fileVersionRepository.findFirstByFileKeyAndFileSizeAndDocumentOwnerIdOrderByIdDesc(key, (long) PDF_CONTENT.length, 1L))
+                .thenReturn(Optional.of(testFileVersion));
+        when(storedBlobRepository.incrementRefCount(key)).thenReturn(1);
+        when(fileVersionRepository.save(any(FileVersion.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        FileVersionDTO result = fileService.uploadByHash(1L, UploadByHashRequest.builder()
+                .sha256(key.toUpperCase())
+                .size((long) PDF_CONTENT.length)
+                .fileName("contrato.pdf")
+                .build(), "testuser");
+
+        assertThat(result.getFileName()).isEqualTo("contrato.pdf");
+        assertThat(result.getContentType()).isEqualTo("application/pdf");
+        assertThat(result.getChecksum()).isEqualTo(key);
+        verify(storedBlobRepository).incrementRefCount(key);
+        verify(storedBlobRepository, never()).acquire(any(), any(Long.class), any(), any(Long.class));
+    }
+
+    @Test
+    void deveRecusarHashDeConteudoQueOUsuarioNaoPodeLer() {
+        String key = "ab".repeat(32);
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(fileVersionRepository.findFirstByFileKeyAndFileSizeAndDocumentOwnerIdOrderByIdDesc(key, 1024L, 1L))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> fileService.uploadByHash(1L, UploadByHashRequest.builder()
+                .sha256(key)
+                .size(1024L)
+                .fileName("alheio.pdf")
+                .build(), "testuser"))
+                .isInstanceOf(DocumentNotFoundException.class)
+                .hasMessageContaining("upload the file");
+
+        verify(storedBlobRepository, never()).incrementRefCount(any());
+        verify(fileVersionRepository, never()).save(any(FileVersion.class));
+    }
+
+    @Test
+    void deveRetornarRecursoEmDiscoComMetadadosDaVersaoNoDownload() throws IOException {
+        Path blob = storageBackend.locate("test-file-key");
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, PDF_CONTENT);
+        testFileVersion.setFileSize((long) PDF_CONTENT.length);
+        when(fileVersionRepository.findById(1L)).thenReturn(Optional.of(testFileVersion));
+
+        FileDownload download = fileService.downloadFile(1L, "testuser");
+
+        assertThat(download.getFileName()).isEqualTo("test.pdf");
+        assertThat(download.getContentType()).isEqualTo("application/pdf");
+        assertThat(download.getContentLength()).isEqualTo(PDF_CONTENT.length);
+        assertThat(download.getResource().isFile()).isTrue();
+        assertThat(download.getResource().getContentAsByteArray()).isEqualTo(PDF_CONTENT);
+        verify(storageTieringService).recordAccess(1L);
+        verify(fileVersionRepository, times(1)).findById(1L);
+        verifyNoInteractions(userRepository, documentRepository);
+    }
+
+    @Test
+    void deveAbrirDownloadAssinadoNaFaixaDaUrlSemConsultarOBanco() throws IOException {
+        Path blob = storageBackend.locate("test-file-key");
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, PDF_CONTENT);
+        Resource throttled = new ByteArrayResource(PDF_CONTENT);
+        when(bandwidthScheduler.throttle(any(Resource.class), eq(42L), eq(User.UserRole.ADMIN))).thenReturn(throttled);
+        FileDownload metadata = FileDownload.builder()
+                .versionId(1L)
+                .fileKey("test-file-key")
+                .fileName("test.pdf")
+                .contentType("application/pdf")
+                .contentLength(PDF_CONTENT.length)
+                .build();
+
+        FileDownload download = fileService.openDownload(metadata, false, 42L, User.UserRole.ADMIN);
+
+        assertThat(download.getResource()).isSameAs(throttled);
+        verifyNoInteractions(userRepository, documentRepository, fileVersionRepository, storedBlobRepository);
+    }
+
+    @Test
+    void deveEnviarBytesComprimidosQuandoClienteAceitaGzip() throws IOException {
+        byte[] compressed = {0x1f, (byte) 0x8b, 0x08, 0x00};
+        Path blob = storageBackend.locate(BlobStorageService.gzipKey("test-file-key"));
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, compressed);
+        testFileVersion.setFileSize(2048L);
+        when(fileVersionRepository.findById(1L)).thenReturn(Optional.of(testFileVersion));
+
+        FileDownload download = fileService.downloadFile(1L, "testuser", true);
+
+        assertThat(download.getContentEncoding()).isEqualTo("gzip");
+        assertThat(download.getContentLength()).isEqualTo(compressed.length);
+        assertThat(download.getResource().getContentAsByteArray()).isEqualTo(compressed);
+    }
+}
@@ -0,0 +1,180 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileDownload;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.Rendition;
+import br.com.gabrielvogado.desafiouds.model.RenditionJob;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.RenditionJobRepository;
+import br.com.gabrielvogado.desafiouds.repository.RenditionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.storage.BandwidthScheduler;
+import br.com.gabrielvogado.desafiouds.storage.HotBlobCache;
+import br.com.gabrielvogado.desafiouds.storage.GroupCommitSyncer;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RenditionServiceTest {
+
+    private static final String SOURCE_KEY = "c".repeat(64);
+
+    @Mock
+    private RenditionRepository renditionRepository;
+
+    @Mock
+    private RenditionJobRepository renditionJobRepository;
+
+    @Mock
+    private FileVersionRepository fileVersionRepository;
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @InjectMocks
+    private RenditionService renditionService;
+
+    @TempDir
+    Path storageDir;
+
+    private LocalStorageBackend storageBackend;
+    private FileVersion version;
+
+    @BeforeEach
+    void setUp() {
+        storageBackend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(storageBackend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(storageBackend, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageBackend, "mounts", "");
+        ReflectionTestUtils.setField(storageBackend, "virtualNodes", 16);
+        storageBackend.init();
+
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storedBlobRepository", storedBlobRepository);
+        ReflectionTestUtils.setField(blobStorageService, "storageBackend", storageBackend);
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        HotBlobCache hotBlobCache = new HotBlobCache();
+        ReflectionTestUtils.setField(hotBlobCache, "enabled", false);
+        ReflectionTestUtils.setField(blobStorageService, "hotBlobCache", hotBlobCache);
+
+        ReflectionTestUtils.setField(renditionService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(renditionService, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(renditionService, "enabled", true);
+        ReflectionTestUtils.setField(renditionService, "thumbnailSize", 32);
+        ReflectionTestUtils.setField(renditionService, "previewSize", 128);
+        ReflectionTestUtils.setField(renditionService, "maxSourcePixels", 100_000_000L);
+        ReflectionTestUtils.setField(renditionService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(renditionService, "retryDelay", Duration.ofMinutes(1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        version = FileVersion.builder().id(7L).fileKey(SOURCE_KEY).contentType("image/png").build();
+        // Usados pelos testes de process; a entrega de rendições não passa por eles
+        lenient().when(renditionJobRepository.claim(eq(7L), any())).thenReturn(1);
+        lenient().when(fileVersionRepository.findById(7L)).thenReturn(Optional.of(version));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void deveGravarMiniaturaEPreviaComoBlobsERemoverOJob() throws IOException {
+        storeImage(400, 200);
+        when(fileVersionRepository.findForUpdateById(7L)).thenReturn(Optional.of(version));
+
+        renditionService.process(7L);
+
+        ArgumentCaptor<Rendition> saved = ArgumentCaptor.forClass(Rendition.class);
+        verify(renditionRepository, times(2)).save(saved.capture());
+        assertThat(saved.getAllValues()).extracting(Rendition::getKind)
+                .containsExactly(Rendition.Kind.PREVIEW, Rendition.Kind.THUMBNAIL);
+        assertThat(saved.getAllValues()).extracting(Rendition::getWidth).containsExactly(128, 32);
+        assertThat(saved.getAllValues()).extracting(Rendition::getContentType).containsOnly("image/png");
+        for (Rendition rendition : saved.getAllValues()) {
+            assertThat(storageBackend.exists(rendition.getBlobKey())).isTrue();
+        }
+        verify(renditionJobRepository).deleteById(7L);
+    }
+
+    @Test
+    void deveReagendarJobQuandoRenderizacaoFalhar() throws IOException {
+        Path source = Files.write(storageDir.resolve("source"), "nao e imagem".getBytes());
+        storageBackend.put(SOURCE_KEY, source);
+        RenditionJob job = RenditionJob.builder().fileVersionId(7L).status(RenditionJob.Status.PROCESSING).attempts(1).build();
+        when(renditionJobRepository.findById(7L)).thenReturn(Optional.of(job));
+
+        renditionService.process(7L);
+
+        verify(renditionRepository, never()).save(any());
+        assertThat(job.getStatus()).isEqualTo(RenditionJob.Status.PENDING);
+        assertThat(job.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(job.getLastError()).isNotBlank();
+        assertThat(stagedFiles()).isEmpty();
+    }
+
+    @Test
+    void deveEntregarRendicaoNoRitmoDoBandwidthScheduler() throws IOException {
+        storeImage(40, 20);
+        BandwidthScheduler bandwidthScheduler = mock(BandwidthScheduler.class);
+        Resource throttled = new ByteArrayResource(new byte[0]);
+        when(bandwidthScheduler.throttle(any(Resource.class), eq(1L), eq(User.UserRole.USER))).thenReturn(throttled);
+        ReflectionTestUtils.setField(renditionService, "bandwidthScheduler", bandwidthScheduler);
+
+        FileDownload opened = renditionService.openRendition(
+                FileDownload.builder().versionId(7L).fileKey(SOURCE_KEY).build(), 1L, User.UserRole.USER);
+
+        assertThat(opened.getResource()).isSameAs(throttled);
+    }
+
+    private void storeImage(int width, int height) throws IOException {
+        Path source = storageDir.resolve("source.png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", source.toFile());
+        storageBackend.put(SOURCE_KEY, source);
+    }
+
+    private List<Path> stagedFiles() throws IOException {
+        Path staging = storageDir.resolve(".staging");
+        if (!Files.isDirectory(staging)) {
+            return List.of();
+        }
+        try (var files = Files.list(staging)) {
+            return files.toList();
+        }
+    }
+}
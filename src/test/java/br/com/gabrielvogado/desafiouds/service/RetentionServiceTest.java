@@ -0,0 +1,161 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.RetentionReport;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.RetentionPolicy;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository.VersionStamp;
+import br.com.gabrielvogado.desafiouds.repository.RetentionPolicyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 15, 12, 0);
+
+    @Mock
+    private RetentionPolicyRepository retentionPolicyRepository;
+
+    @Mock
+    private FileVersionRepository fileVersionRepository;
+
+    @Mock
+    private BlobStorageService blobStorageService;
+
+    @Mock
+    private RenditionService renditionService;
+
+    @InjectMocks
+    private RetentionService retentionService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(retentionService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(retentionService, "scanBatchSize", 200);
+        ReflectionTestUtils.setField(retentionService, "deleteBatchSize", 2);
+        ReflectionTestUtils.setField(retentionService, "reportMaxDocuments", 100);
+    }
+
+    @Test
+    void deveManterUltimasVersoesEUmaPorDiaEPorMes() {
+        List<VersionStamp> versions = List.of(
+                stamp(6, NOW.minusHours(1)),
+                stamp(5, NOW.minusHours(2)),
+                stamp(4, NOW.minusDays(1)),
+                stamp(3, NOW.minusDays(1).minusHours(3)),
+                stamp(2, NOW.minusMonths(2)),
+                stamp(1, NOW.minusMonths(2).minusDays(1)));
+
+        RetentionPolicy keepLast = RetentionPolicy.builder().keepLast(2).build();
+        assertThat(ids(RetentionService.expired(versions, keepLast, NOW))).containsExactly(4L, 3L, 2L, 1L);
+
+        RetentionPolicy gfs = RetentionPolicy.builder().keepDailyDays(7).keepMonthlyMonths(12).build();
+        assertThat(ids(RetentionService.expired(versions, gfs, NOW))).containsExactly(5L, 3L, 1L);
+    }
+
+    @Test
+    void deveApagarVersoesExpiradasEmLotesLiberandoBlobsERendicoes() {
+        RetentionPolicy global = RetentionPolicy.builder().keepLast(1).build();
+        List<VersionStamp> versions = List.of(
+                stamp(4, NOW.minusDays(1)), stamp(3, NOW.minusDays(2)),
+                stamp(2, NOW.minusDays(3)), stamp(1, NOW.minusDays(4)));
+        when(retentionPolicyRepository.findGlobal()).thenReturn(Optional.of(global));
+        when(retentionPolicyRepository.findDocumentIdsToPrune(true, 0L, 200)).thenReturn(List.of(10L));
+        when(retentionPolicyRepository.findByDocumentIdIn(List.of(10L))).thenReturn(List.of());
+        when(fileVersionRepository.findStampsByDocumentIdIn(anyCollection())).thenReturn(versions);
+        when(fileVersionRepository.findForUpdateByIdIn(anyList()))
+                .thenReturn(List.of(version(3), version(2)))
+                .thenReturn(List.of(version(1)));
+
+        RetentionReport report = retentionService.prune(false);
+
+        assertThat(report.getVersionsExpired()).isEqualTo(3);
+        assertThat(report.getVersionsDeleted()).isEqualTo(3);
+        assertThat(report.getBytesExpired()).isEqualTo(300);
+        verify(fileVersionRepository).findForUpdateByIdIn(List.of(3L, 2L));
+        verify(fileVersionRepository).findForUpdateByIdIn(List.of(1L));
+        verify(renditionService).deleteRenditions(List.of(3L, 2L));
+        verify(renditionService).deleteRenditions(List.of(1L));
+        verify(fileVersionRepository, times(2)).deleteAllInBatch(anyList());
+        verify(blobStorageService).release("key-1");
+        verify(blobStorageService).release("key-2");
+        verify(blobStorageService).release("key-3");
+        verify(blobStorageService, never()).release("key-4");
+    }
+
+    @Test
+    void deveApenasRelatarNoDryRun() {
+        RetentionPolicy own = RetentionPolicy.builder().documentId(10L).keepLast(1).build();
+        when(retentionPolicyRepository.findGlobal()).thenReturn(Optional.empty());
+        when(retentionPolicyRepository.findDocumentIdsToPrune(false, 0L, 200)).thenReturn(List.of(10L));
+        when(retentionPolicyRepository.findByDocumentIdIn(List.of(10L))).thenReturn(List.of(own));
+        when(fileVersionRepository.findStampsByDocumentIdIn(List.of(10L)))
+                .thenReturn(List.of(stamp(2, NOW.minusDays(1)), stamp(1, NOW.minusDays(2))));
+
+        RetentionReport report = retentionService.prune(true);
+
+        assertThat(report.isDryRun()).isTrue();
+        assertThat(report.getVersionsExpired()).isEqualTo(1);
+        assertThat(report.getVersionsDeleted()).isZero();
+        assertThat(report.getDocuments()).singleElement()
+                .satisfies(entry -> assertThat(entry.getExpiredVersionIds()).containsExactly(1L));
+        verify(fileVersionRepository, never()).deleteAllInBatch(any());
+        verify(blobStorageService, never()).release(eq("key-1"));
+    }
+
+    private static List<Long> ids(List<VersionStamp> versions) {
+        return versions.stream().map(VersionStamp::getId).toList();
+    }
+
+    private static FileVersion version(long id) {
+        return FileVersion.builder().id(id).fileKey("key-" + id).build();
+    }
+
+    private static VersionStamp stamp(long id, LocalDateTime uploadedAt) {
+        return new VersionStamp() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getDocumentId() {
+                return 10L;
+            }
+
+            @Override
+            public Long getFileSize() {
+                return 100L;
+            }
+
+            @Override
+            public LocalDateTime getUploadedAt() {
+                return uploadedAt;
+            }
+        };
+    }
+}
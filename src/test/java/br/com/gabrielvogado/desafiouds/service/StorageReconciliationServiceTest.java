@@ -0,0 +1,196 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.model.StoredBlob;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository.BlobLayout;
+import br.com.gabrielvogado.desafiouds.storage.GroupCommitSyncer;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StorageReconciliationServiceTest {
+
+    private static final String REFERENCED = "a".repeat(64);
+    private static final String ORPHAN = "b".repeat(64);
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private FileVersionRepository fileVersionRepository;
+
+    @InjectMocks
+    private StorageReconciliationService reconciliationService;
+
+    @TempDir
+    Path storageDir;
+
+    private LocalStorageBackend storageBackend;
+
+    @BeforeEach
+    void setUp() {
+        storageBackend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(storageBackend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(storageBackend, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageBackend, "mounts", "");
+        ReflectionTestUtils.setField(storageBackend, "virtualNodes", 16);
+        storageBackend.init();
+
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(blobStorageService, "storageBackend", storageBackend);
+        ReflectionTestUtils.setField(blobStorageService, "storedBlobRepository", storedBlobRepository);
+        ReflectionTestUtils.setField(blobStorageService, "fileVersionRepository", fileVersionRepository);
+
+        ReflectionTestUtils.setField(reconciliationService, "storageBackend", storageBackend);
+        ReflectionTestUtils.setField(reconciliationService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(reconciliationService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(reconciliationService, "shardsPerRun", 65537);
+        ReflectionTestUtils.setField(reconciliationService, "verifyPerRun", 100);
+        ReflectionTestUtils.setField(reconciliationService, "batchSize", 10);
+        ReflectionTestUtils.setField(reconciliationService, "maxFilesPerSecond", 0);
+        ReflectionTestUtils.setField(reconciliationService, "minAge", Duration.ofHours(1));
+        ReflectionTestUtils.setField(reconciliationService, "quarantineTtl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(reconciliationService, "stagingTtl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(reconciliationService, "rebuiltTtl", Duration.ofHours(1));
+
+        StoredBlob referenced = StoredBlob.builder().hash(REFERENCED).size(3L).refCount(1).build();
+        when(storedBlobRepository.findLayouts(any())).thenReturn(List.of(layout(REFERENCED)));
+        when(storedBlobRepository.findById(REFERENCED)).thenReturn(Optional.of(referenced));
+        when(storedBlobRepository.findById(ORPHAN)).thenReturn(Optional.empty());
+        when(fileVersionRepository.findExistingFileKeys(any())).thenReturn(List.of());
+        when(fileVersionRepository.findFileKeysAfter(anyString(), anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void deveMoverParaQuarentenaApenasArquivosSemReferencia() throws IOException {
+        Path referenced = storeOld(REFERENCED);
+        Path orphan = storeOld(ORPHAN);
+
+        StorageReconciliationService.Report report = reconciliationService.run();
+
+        assertThat(report.getQuarantined()).isEqualTo(1);
+        assertThat(referenced).exists();
+        assertThat(orphan).doesNotExist();
+        assertThat(storageDir.resolve(".quarantine").resolve(ORPHAN)).exists();
+    }
+
+    @Test
+    void deveIgnorarArquivosRecentesQuePodemSerDeUploadEmAndamento() throws IOException {
+        Path orphan = storeOld(ORPHAN);
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now()));
+
+        StorageReconciliationService.Report report = reconciliationService.run();
+
+        assertThat(report.getQuarantined()).isZero();
+        assertThat(orphan).exists();
+    }
+
+    @Test
+    void deveApagarDaQuarentenaAposOPrazoERestaurarOQueVoltouASerReferenciado() throws IOException {
+        Path quarantine = Files.createDirectories(storageDir.resolve(".quarantine"));
+        Path expired = Files.write(quarantine.resolve(ORPHAN), "old".getBytes());
+        Path revived = Files.write(quarantine.resolve(REFERENCED), "new".getBytes());
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(8)));
+        Files.setLastModifiedTime(expired, old);
+        Files.setLastModifiedTime(revived, old);
+
+        StorageReconciliationService.Report report = reconciliationService.run();
+
+        assertThat(report.getDeleted()).isEqualTo(1);
+        assertThat(report.getRestored()).isEqualTo(1);
+        assertThat(expired).doesNotExist();
+        assertThat(revived).doesNotExist();
+        assertThat(storageBackend.exists(REFERENCED)).isTrue();
+    }
+
+    @Test
+    void deveReportarBlobsReferenciadosQueFaltamNoDisco() throws IOException {
+        storeOld(REFERENCED);
+        when(fileVersionRepository.findFileKeysAfter(eq(""), anyInt())).thenReturn(List.of(REFERENCED, ORPHAN));
+
+        StorageReconciliationService.Report report = reconciliationService.run();
+
+        assertThat(report.getMissing()).containsExactly(ORPHAN);
+    }
+
+    @Test
+    void devePorEmQuarentenaOrfaosDoLayoutPlanoForaDosPontosDeMontagem() throws IOException {
+        ReflectionTestUtils.setField(storageBackend, "mounts", storageDir.resolve("mount-a").toString());
+        storageBackend.init();
+        // Todos os shards do ponto de montagem e, em seguida, a raiz do diretório plano
+        ReflectionTestUtils.setField(reconciliationService, "shardsPerRun", 65538);
+        Path orphan = Files.write(storageDir.resolve(ORPHAN), "old".getBytes());
+        Path referenced = Files.write(storageDir.resolve(REFERENCED), "old".getBytes());
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        Files.setLastModifiedTime(orphan, old);
+        Files.setLastModifiedTime(referenced, old);
+
+        StorageReconciliationService.Report report = reconciliationService.run();
+
+        assertThat(report.getQuarantined()).isEqualTo(1);
+        assertThat(orphan).doesNotExist();
+        assertThat(referenced).exists();
+        assertThat(storageDir.resolve(".quarantine").resolve(ORPHAN)).exists();
+    }
+
+    private Path storeOld(String key) throws IOException {
+        Path source = Files.write(storageDir.resolve(key + ".src"), key.getBytes());
+        storageBackend.put(key, source);
+        Files.delete(source);
+        Path stored = storageBackend.locate(key);
+        Files.setLastModifiedTime(stored, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        return stored;
+    }
+
+    private static BlobLayout layout(String hash) {
+        return new BlobLayout() {
+            @Override
+            public String getHash() {
+                return hash;
+            }
+
+            @Override
+            public StoredBlob.Encoding getEncoding() {
+                return StoredBlob.Encoding.FULL;
+            }
+
+            @Override
+            public String getBaseHash() {
+                return null;
+            }
+
+            @Override
+            public StoredBlob.Tier getTier() {
+                return StoredBlob.Tier.HOT;
+            }
+        };
+    }
+}
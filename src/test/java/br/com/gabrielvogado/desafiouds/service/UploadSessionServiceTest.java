@@ -0,0 +1,358 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.FileVersionDTO;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionCreateRequest;
+import br.com.gabrielvogado.desafiouds.dto.UploadSessionDTO;
+import br.com.gabrielvogado.desafiouds.exception.DocumentNotFoundException;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.exception.ServiceBusyException;
+import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.UploadSession;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.UploadSessionRepository;
+import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.storage.StagedBlob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceTest {
+
+    private static final int CHUNK_SIZE = 65536;
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private UploadSessionService uploadSessionService;
+
+    @TempDir
+    Path storageDir;
+
+    private User testUser;
+    private Document testDocument;
+    private UploadSession session;
+    private byte[] content;
+    private CountingTransactionManager transactionManager;
+    private int transactionsOpenWhileStaging = -1;
+
+    @BeforeEach
+    void setUp() {
+        AccessEvaluator accessEvaluator = new AccessEvaluator();
+        ReflectionTestUtils.setField(accessEvaluator, "userRepository", userRepository);
+        ReflectionTestUtils.setField(uploadSessionService, "accessEvaluator", accessEvaluator);
+        transactionManager = new CountingTransactionManager();
+        BlobStorageService blobStorageService = new BlobStorageService() {
+            @Override
+            public StagedBlob stage(InputStream in, String declaredContentType, long maxBytes) throws IOException {
+                transactionsOpenWhileStaging = transactionManager.open.get();
+                return super.stage(in, declaredContentType, maxBytes);
+            }
+        };
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(uploadSessionService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(uploadSessionService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(uploadSessionService, "maxSessionSize", 1073741824L);
+        ReflectionTestUtils.setField(uploadSessionService, "defaultChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(uploadSessionService, "maxChunkSize", 4 * CHUNK_SIZE);
+        ReflectionTestUtils.setField(uploadSessionService, "sessionTtl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(uploadSessionService, "commitTimeout", Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(uploadSessionService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        TransactionSynchronizationManager.initSynchronization();
+
+        testUser = User.builder()
+                .id(1L)
+                .username("testuser")
+                .role(User.UserRole.USER)
+                .build();
+
+        testDocument = Document.builder()
+                .id(1L)
+                .title("Test Document")
+                .owner(testUser)
+                .build();
+
+        content = new byte[CHUNK_SIZE * 2 + 100];
+        new Random(7).nextBytes(content);
+        System.arraycopy("%PDF-1.7".getBytes(), 0, content, 0, 8);
+
+        session = UploadSession.builder()
+                .id("8b0f7c1e-8f4b-4d8e-9c51-5b1e7a2f0c11")
+                .document(testDocument)
+                .createdBy(testUser)
+                .fileName("grande.pdf")
+                .contentType("application/pdf")
+                .totalSize((long) content.length)
+                .chunkSize(CHUNK_SIZE)
+                .chunkCount(3)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void deveCriarSessaoCalculandoQuantidadeDePartes() {
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UploadSessionDTO result = uploadSessionService.createSession(1L, UploadSessionCreateRequest.builder()
+                .fileName("grande.pdf")
+                .contentType("application/pdf")
+                .totalSize((long) content.length)
+                .build(), "testuser");
+
+        assertThat(result.getChunkCount()).isEqualTo(3);
+        assertThat(result.getChunkSize()).isEqualTo(CHUNK_SIZE);
+        assertThat(result.getReceivedChunks()).isEmpty();
+    }
+
+    @Test
+    void deveRecusarSessaoComParteMaiorQueOLimite() {
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(testDocument));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+
+        assertThatThrownBy(() -> uploadSessionService.createSession(1L, UploadSessionCreateRequest.builder()
+                .fileName("grande.pdf")
+                .contentType("application/pdf")
+                .totalSize((long) content.length)
+                .chunkSize(4 * CHUNK_SIZE + 1)
+                .build(), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+        verify(uploadSessionRepository, never()).save(any());
+    }
+
+    @Test
+    void deveMontarVersaoComPartesEnviadasForaDeOrdem() throws Exception {
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        when(fileService.registerStagedVersion(eq(1L), any(StagedBlob.class), eq("grande.pdf"), eq(session.getId()), eq("testuser")))
+                .thenReturn(FileVersionDTO.builder().id(10L).build());
+
+        for (int index : new int[]{2, 0, 1}) {
+            byte[] chunk = chunk(index);
+            uploadSessionService.putChunk(session.getId(), index, new ByteArrayInputStream(chunk), sha256(chunk), "testuser");
+        }
+
+        assertThat(uploadSessionService.getSession(session.getId(), "testuser").getReceivedChunks())
+                .containsExactly(0, 1, 2);
+
+        FileVersionDTO version = uploadSessionService.commit(session.getId(), "testuser");
+
+        ArgumentCaptor<StagedBlob> staged = ArgumentCaptor.forClass(StagedBlob.class);
+        verify(fileService).registerStagedVersion(eq(1L), staged.capture(), eq("grande.pdf"), eq(session.getId()), eq("testuser"));
+        assertThat(version.getId()).isEqualTo(10L);
+        assertThat(staged.getValue().getHash()).isEqualTo(sha256(content));
+        assertThat(staged.getValue().getTempFile()).hasBinaryContent(content);
+        assertThat(session.getState()).isEqualTo(UploadSession.State.COMMITTED);
+        // Reivindicação e registro em transações curtas; a cópia das partes para staging fica fora delas
+        assertThat(transactionsOpenWhileStaging).isZero();
+        assertThat(transactionManager.committed.get()).isEqualTo(5);
+        assertThat(transactionManager.open.get()).isZero();
+
+        // As partes só são apagadas quando a transação que registrou a versão confirma
+        Path sessionDir = storageDir.resolve(".staging/sessions").resolve(session.getId());
+        assertThat(sessionDir).isDirectory();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(sessionDir).doesNotExist();
+    }
+
+    @Test
+    void deveDevolverAVersaoJaCriadaQuandoOCommitForRepetido() {
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.empty());
+        when(fileService.findUploadSessionVersion(session.getId(), "testuser"))
+                .thenReturn(Optional.of(FileVersionDTO.builder().id(10L).build()));
+
+        FileVersionDTO version = uploadSessionService.commit(session.getId(), "testuser");
+
+        assertThat(version.getId()).isEqualTo(10L);
+        verify(fileService, never()).registerStagedVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deveDevolverAVersaoQuandoASessaoJaFoiConfirmada() {
+        session.setState(UploadSession.State.COMMITTED);
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        when(fileService.findUploadSessionVersion(session.getId(), "testuser"))
+                .thenReturn(Optional.of(FileVersionDTO.builder().id(10L).build()));
+
+        assertThat(uploadSessionService.commit(session.getId(), "testuser").getId()).isEqualTo(10L);
+        verify(fileService, never()).registerStagedVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deveLiberarASessaoQuandoAMontagemFalha() {
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        // Conteúdo que não é PDF: a validação do staging recusa a montagem
+        Arrays.fill(content, 0, 8, (byte) 0);
+        for (int index = 0; index < 3; index++) {
+            byte[] chunk = chunk(index);
+            uploadSessionService.putChunk(session.getId(), index, new ByteArrayInputStream(chunk), sha256(chunk), "testuser");
+        }
+
+        assertThatThrownBy(() -> uploadSessionService.commit(session.getId(), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+
+        assertThat(session.getState()).isEqualTo(UploadSession.State.OPEN);
+        assertThat(session.getCommitStartedAt()).isNull();
+        verify(fileService, never()).registerStagedVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deveRecusarCommitEPartesEnquantoOutroCommitEstaEmAndamento() {
+        session.setState(UploadSession.State.COMMITTING);
+        session.setCommitStartedAt(LocalDateTime.now());
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        byte[] chunk = chunk(0);
+
+        assertThatThrownBy(() -> uploadSessionService.commit(session.getId(), "testuser"))
+                .isInstanceOf(ServiceBusyException.class);
+        assertThatThrownBy(() -> uploadSessionService.putChunk(
+                session.getId(), 0, new ByteArrayInputStream(chunk), sha256(chunk), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+        assertThat(session.getState()).isEqualTo(UploadSession.State.COMMITTING);
+    }
+
+    @Test
+    void deveRecusarCommitRepetidoDeSessaoQueNaoGerouVersao() {
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.empty());
+        when(fileService.findUploadSessionVersion(session.getId(), "other")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> uploadSessionService.commit(session.getId(), "other"))
+                .isInstanceOf(DocumentNotFoundException.class);
+    }
+
+    @Test
+    void deveRecusarParteQueTerminaDepoisDoCommitDaSessao() {
+        // A parte foi aceita no início, mas o commit confirmou a sessão antes de ela ser publicada
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.empty());
+        byte[] chunk = chunk(0);
+
+        assertThatThrownBy(() -> uploadSessionService.putChunk(
+                session.getId(), 0, new ByteArrayInputStream(chunk), sha256(chunk), "testuser"))
+                .isInstanceOf(DocumentNotFoundException.class);
+
+        assertThat(storageDir.resolve(".staging/sessions").resolve(session.getId())).doesNotExist();
+    }
+
+    @Test
+    void deveRejeitarParteComChecksumIncorreto() {
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        byte[] chunk = chunk(0);
+
+        assertThatThrownBy(() -> uploadSessionService.putChunk(
+                session.getId(), 0, new ByteArrayInputStream(chunk), sha256(new byte[]{1}), "testuser"))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("Checksum mismatch");
+
+        assertThat(uploadSessionService.getSession(session.getId(), "testuser").getReceivedChunks()).isEmpty();
+    }
+
+    @Test
+    void naoDeveConfirmarSessaoIncompleta() {
+        when(uploadSessionRepository.findWithCreatorById(session.getId())).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        byte[] chunk = chunk(1);
+        uploadSessionService.putChunk(session.getId(), 1, new ByteArrayInputStream(chunk), sha256(chunk), "testuser");
+
+        assertThatThrownBy(() -> uploadSessionService.commit(session.getId(), "testuser"))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("received 1 of 3");
+
+        verify(fileService, never()).registerStagedVersion(any(), any(), any(), any(), any());
+    }
+
+    /**
+     * Conta as transações abertas, para conferir que a montagem acontece fora delas
+     */
+    private static class CountingTransactionManager implements PlatformTransactionManager {
+
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger committed = new AtomicInteger();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            open.incrementAndGet();
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            open.decrementAndGet();
+            committed.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            open.decrementAndGet();
+        }
+    }
+
+    private byte[] chunk(int index) {
+        int from = index * CHUNK_SIZE;
+        return Arrays.copyOfRange(content, from, Math.min(from + CHUNK_SIZE, content.length));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package br.com.gabrielvogado.desafiouds.service;
+
+import br.com.gabrielvogado.desafiouds.dto.ExportEntry;
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import br.com.gabrielvogado.desafiouds.exception.UnauthorizedException;
+import br.com.gabrielvogado.desafiouds.model.Document;
+import br.com.gabrielvogado.desafiouds.model.FileVersion;
+import br.com.gabrielvogado.desafiouds.model.User;
+import br.com.gabrielvogado.desafiouds.repository.DocumentRepository;
+import br.com.gabrielvogado.desafiouds.repository.FileVersionRepository;
+import br.com.gabrielvogado.desafiouds.repository.StoredBlobRepository;
+import br.com.gabrielvogado.desafiouds.repository.UserRepository;
+import br.com.gabrielvogado.desafiouds.security.AccessEvaluator;
+import br.com.gabrielvogado.desafiouds.storage.HotBlobCache;
+import br.com.gabrielvogado.desafiouds.storage.GroupCommitSyncer;
+import br.com.gabrielvogado.desafiouds.storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VersionExportServiceTest {
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private FileVersionRepository fileVersionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @InjectMocks
+    private VersionExportService versionExportService;
+
+    @TempDir
+    Path storageDir;
+
+    private LocalStorageBackend storageBackend;
+    private User owner;
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        AccessEvaluator accessEvaluator = new AccessEvaluator();
+        ReflectionTestUtils.setField(accessEvaluator, "userRepository", userRepository);
+        ReflectionTestUtils.setField(versionExportService, "accessEvaluator", accessEvaluator);
+        storageBackend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(storageBackend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(storageBackend, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(storageBackend, "mounts", "");
+        ReflectionTestUtils.setField(storageBackend, "virtualNodes", 16);
+        storageBackend.init();
+
+        BlobStorageService blobStorageService = new BlobStorageService();
+        ReflectionTestUtils.setField(blobStorageService, "storedBlobRepository", storedBlobRepository);
+        ReflectionTestUtils.setField(blobStorageService, "storageBackend", storageBackend);
+        ReflectionTestUtils.setField(blobStorageService, "storagePath", storageDir.toString());
+        ReflectionTestUtils.setField(blobStorageService, "compressionSkipTypes", "image/png,image/jpeg");
+        HotBlobCache hotBlobCache = new HotBlobCache();
+        ReflectionTestUtils.setField(hotBlobCache, "enabled", false);
+        ReflectionTestUtils.setField(blobStorageService, "hotBlobCache", hotBlobCache);
+        ReflectionTestUtils.setField(versionExportService, "blobStorageService", blobStorageService);
+        ReflectionTestUtils.setField(versionExportService, "maxDocuments", 100);
+        ReflectionTestUtils.setField(versionExportService, "maxBytes", 1024L);
+
+        owner = User.builder().id(1L).username("testuser").role(User.UserRole.USER).build();
+        document = Document.builder().id(1L).title("Contrato: 2026").owner(owner).build();
+    }
+
+    @Test
+    void deveNumerarVersoesDeCadaDocumentoEmOrdemCronologica() {
+        when(documentRepository.findAllById(any())).thenReturn(List.of(document));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(owner));
+        when(fileVersionRepository.findByDocumentIdsOrderByUploadedAt(any()))
+                .thenReturn(List.of(version(10L, "v1.pdf"), version(11L, "v2.pdf")));
+
+        List<ExportEntry> entries = versionExportService.prepareExport(List.of(1L), "testuser");
+
+        assertThat(entries).extracting(ExportEntry::getVersionNumber).containsExactly(1, 2);
+        assertThat(entries).extracting(ExportEntry::getVersionId).containsExactly(10L, 11L);
+    }
+
+    @Test
+    void deveRecusarExportacaoDeDocumentoDeOutroUsuario() {
+        User other = User.builder().id(2L).username("other").role(User.UserRole.USER).build();
+        when(documentRepository.findAllById(any())).thenReturn(List.of(document));
+        when(userRepository.findByUsername("other")).thenReturn(Optional.of(other));
+
+        assertThatThrownBy(() -> versionExportService.prepareExport(List.of(1L), "other"))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+
+    @Test
+    void deveRecusarExportacaoAcimaDoLimiteDeBytes() {
+        FileVersion first = version(10L, "v1.pdf");
+        first.setFileSize(600L);
+        FileVersion second = version(11L, "v2.pdf");
+        second.setFileSize(600L);
+        when(documentRepository.findAllById(any())).thenReturn(List.of(document));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(owner));
+        when(fileVersionRepository.findByDocumentIdsOrderByUploadedAt(any())).thenReturn(List.of(first, second));
+
+        assertThatThrownBy(() -> versionExportService.prepareExport(List.of(1L), "testuser"))
+                .isInstanceOf(InvalidFileException.class);
+    }
+
+    @Test
+    void deveEscreverZipComUmaEntradaPorVersaoEListarAusentes() throws IOException {
+        byte[] pdf = "%PDF-1.7 conteudo".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        byte[] png = new byte[4096];
+        store("pdf-key", pdf);
+        store("png-key", png);
+
+        List<ExportEntry> entries = List.of(
+                entry(10L, 1, "pdf-key", "v1.pdf", "application/pdf"),
+                entry(11L, 2, "png-key", "v2.png", "image/png"),
+                entry(12L, 3, "missing-key", "v3.pdf", "application/pdf"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        versionExportService.writeZip(entries, out);
+
+        List<String> names = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                names.add(zipEntry.getName());
+                contents.add(zip.readAllBytes());
+            }
+        }
+
+        assertThat(names).containsExactly(
+                "1-Contrato_ 2026/v001-10-v1.pdf",
+                "1-Contrato_ 2026/v002-11-v2.png",
+                "MISSING-FILES.txt");
+        assertThat(contents.get(0)).isEqualTo(pdf);
+        assertThat(contents.get(1)).isEqualTo(png);
+        assertThat(new String(contents.get(2), StandardCharsets.UTF_8)).isEqualTo("1-Contrato_ 2026/v003-12-v3.pdf");
+    }
+
+    private FileVersion version(Long id, String fileName) {
+        return FileVersion.builder()
+                .id(id)
+                .document(document)
+                .fileKey("key-" + id)
+                .fileName(fileName)
+                .contentType("application/pdf")
+                .uploadedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private ExportEntry entry(Long versionId, int number, String fileKey, String fileName, String contentType) {
+        return ExportEntry.builder()
+                .documentId(1L)
+                .documentTitle(document.getTitle())
+                .versionNumber(number)
+                .versionId(versionId)
+                .fileKey(fileKey)
+                .fileName(fileName)
+                .contentType(contentType)
+                .uploadedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private void store(String key, byte[] content) throws IOException {
+        Path source = Files.write(storageDir.resolve(key + ".src"), content);
+        storageBackend.put(key, source);
+        Files.delete(source);
+    }
+}
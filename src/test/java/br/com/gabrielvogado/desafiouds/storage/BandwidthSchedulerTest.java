@@ -0,0 +1,98 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import br.com.gabrielvogado.desafiouds.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BandwidthSchedulerTest {
+
+    private static final int CHUNK = 16 * 1024;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BandwidthScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new BandwidthScheduler();
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "globalRate", 0L);
+        ReflectionTestUtils.setField(scheduler, "userRate", 1024L * 1024);
+        ReflectionTestUtils.setField(scheduler, "adminWeight", 2);
+        ReflectionTestUtils.setField(scheduler, "userWeight", 1);
+        ReflectionTestUtils.setField(scheduler, "chunkSize", CHUNK);
+        ReflectionTestUtils.setField(scheduler, "burst", Duration.ofMillis(10));
+        scheduler.init();
+    }
+
+    @Test
+    void deveLimitarODownloadAoRitmoDoUsuario() throws IOException {
+        byte[] content = new byte[512 * 1024];
+        Resource throttled = scheduler.throttle(new ByteArrayResource(content), 1L, User.UserRole.USER);
+
+        long start = System.nanoTime();
+        byte[] read;
+        try (InputStream in = throttled.getInputStream()) {
+            read = in.readAllBytes();
+        }
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertThat(read).hasSize(content.length);
+        assertThat(throttled.contentLength()).isEqualTo(content.length);
+        // 512 KB a 1 MB/s, descontada a rajada inicial de 10 ms
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(450);
+        assertThat(meterRegistry.get("download.bandwidth.bytes").tag("role", "USER").functionCounter().count())
+                .isEqualTo(content.length);
+    }
+
+    @Test
+    void deveConcederFatiasMaioresAoPapelComMaisPeso() throws IOException {
+        ReflectionTestUtils.setField(scheduler, "userRate", 0L);
+        byte[] content = new byte[CHUNK * 4];
+        byte[] buffer = new byte[content.length];
+
+        try (InputStream user = scheduler.throttle(new ByteArrayResource(content), 2L, User.UserRole.USER).getInputStream();
+             InputStream admin = scheduler.throttle(new ByteArrayResource(content), 3L, User.UserRole.ADMIN).getInputStream()) {
+            assertThat(user.read(buffer, 0, buffer.length)).isEqualTo(CHUNK);
+            assertThat(admin.read(buffer, 0, buffer.length)).isEqualTo(CHUNK * 2);
+            assertThat(meterRegistry.get("download.bandwidth.active.streams").gauge().value()).isEqualTo(2);
+            assertThat(meterRegistry.get("download.bandwidth.active.users").gauge().value()).isEqualTo(2);
+        }
+
+        assertThat(meterRegistry.get("download.bandwidth.active.streams").gauge().value()).isZero();
+        assertThat(meterRegistry.get("download.bandwidth.active.users").gauge().value()).isZero();
+    }
+
+    @Test
+    void deveLiberarOUsuarioSemFecharASaidaOriginal() throws IOException {
+        ReflectionTestUtils.setField(scheduler, "userRate", 0L);
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                throw new AssertionError("the response stream must stay open");
+            }
+        };
+
+        try (OutputStream out = scheduler.throttle(target, 1L, User.UserRole.USER)) {
+            out.write(new byte[CHUNK * 3 + 1]);
+        }
+
+        assertThat(target.size()).isEqualTo(CHUNK * 3 + 1);
+        assertThat(meterRegistry.get("download.bandwidth.bytes").tag("role", "USER").functionCounter().count())
+                .isEqualTo(CHUNK * 3 + 1);
+        assertThat(meterRegistry.get("download.bandwidth.active.users").gauge().value()).isZero();
+    }
+}
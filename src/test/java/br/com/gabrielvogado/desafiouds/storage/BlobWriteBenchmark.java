@@ -0,0 +1,90 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads por segundo no caminho de gravação dos blobs (staging, link no caminho final e sincronização),
+ * sem banco: off não sincroniza, fsync sincroniza cada gravação sozinha e group-commit agrupa as concorrentes
+ * Rodar com: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=BlobWriteBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class BlobWriteBenchmark {
+
+    @Param({"off", "fsync", "group-commit"})
+    private String durability;
+
+    @Param({"65536"})
+    private int blobSize;
+
+    private Path root;
+    private LocalStorageBackend backend;
+    private byte[] content;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("blob-write-benchmark");
+        Files.createDirectories(root.resolve(".staging"));
+
+        GroupCommitSyncer syncer = new GroupCommitSyncer();
+        ReflectionTestUtils.setField(syncer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(syncer, "fsync", !durability.equals("off"));
+        ReflectionTestUtils.setField(syncer, "groupCommit", durability.equals("group-commit"));
+        syncer.init();
+
+        backend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(backend, "syncer", syncer);
+        ReflectionTestUtils.setField(backend, "storagePath", root.toString());
+        ReflectionTestUtils.setField(backend, "mounts", "");
+        ReflectionTestUtils.setField(backend, "virtualNodes", 128);
+        backend.init();
+
+        content = new byte[blobSize];
+        ThreadLocalRandom.current().nextBytes(content);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        byte[] keyBytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(keyBytes);
+        String key = HexFormat.of().formatHex(keyBytes);
+
+        Path staged = root.resolve(".staging").resolve(key + ".tmp");
+        Files.write(staged, content);
+        backend.put(key, staged);
+        Files.delete(staged);
+    }
+}
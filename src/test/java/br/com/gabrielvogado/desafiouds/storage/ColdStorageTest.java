@@ -0,0 +1,114 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColdStorageTest {
+
+    private static final String KEY_A = "a".repeat(64);
+    private static final String KEY_B = "b".repeat(64);
+    private static final String KEY_C = "c".repeat(64);
+
+    @TempDir
+    Path coldDir;
+
+    private ColdStorage coldStorage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        coldStorage = new ColdStorage();
+        ReflectionTestUtils.setField(coldStorage, "coldPath", coldDir.toString());
+        ReflectionTestUtils.setField(coldStorage, "packMaxSize", 1L << 20);
+        ReflectionTestUtils.setField(coldStorage, "compressionMaxRatio", 0.9);
+        coldStorage.init();
+    }
+
+    @Test
+    void deveGuardarVariosBlobsNoMesmoPacoteELerCadaUm() throws IOException {
+        byte[] text = "texto que comprime bem ".repeat(200).getBytes(StandardCharsets.US_ASCII);
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+
+        ColdStorage.Location compressed = coldStorage.append(KEY_A, new ByteArrayResource(text), false, text.length);
+        ColdStorage.Location raw = coldStorage.append(KEY_B, new ByteArrayResource(random), false, random.length);
+        ColdStorage.Location gzipped = coldStorage.append(KEY_C, new ByteArrayResource(gzip(text)), true, text.length);
+
+        assertThat(compressed.packId()).isEqualTo(raw.packId()).isEqualTo(gzipped.packId());
+        assertThat(raw.offset()).isEqualTo(compressed.offset() + compressed.length());
+        assertThat(compressed.length()).isLessThan(text.length / 5);
+        assertThat(coldStorage.open(compressed, KEY_A).getContentAsByteArray()).isEqualTo(text);
+        assertThat(coldStorage.open(raw, KEY_B).getContentAsByteArray()).isEqualTo(random);
+        assertThat(coldStorage.open(raw, KEY_B).contentLength()).isEqualTo(random.length);
+        assertThat(coldStorage.open(gzipped, KEY_C).getContentAsByteArray()).isEqualTo(text);
+        assertThat(coldStorage.openGzipped(raw, KEY_B)).isNull();
+    }
+
+    @Test
+    void deveRecusarEntradaDeOutraChaveOuCorrompida() throws IOException {
+        byte[] content = "conteudo frio ".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        ColdStorage.Location location = coldStorage.append(KEY_A, new ByteArrayResource(content), false, content.length);
+
+        assertThatThrownBy(() -> coldStorage.open(location, KEY_B))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("no entry");
+
+        Path pack = coldDir.resolve("pack-000001.pack");
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), location.offset() + location.length() - 10);
+        }
+        assertThatThrownBy(() -> {
+            try (InputStream in = coldStorage.openGzipped(location, KEY_A)) {
+                in.readAllBytes();
+            }
+        }).isInstanceOf(IOException.class).hasMessageContaining("CRC");
+    }
+
+    @Test
+    void deveApagarSomentePacotesSemEntradasVivasForaDoPacoteAtual() throws IOException {
+        ReflectionTestUtils.setField(coldStorage, "packMaxSize", 1L);
+        byte[] content = "x".getBytes(StandardCharsets.US_ASCII);
+        ColdStorage.Location first = coldStorage.append(KEY_A, new ByteArrayResource(content), false, 1);
+        ColdStorage.Location second = coldStorage.append(KEY_B, new ByteArrayResource(content), false, 1);
+        ColdStorage.Location third = coldStorage.append(KEY_C, new ByteArrayResource(content), false, 1);
+
+        int deleted = coldStorage.deletePacksExcept(Set.of(second.packId()));
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(coldStorage.exists(first.packId())).isFalse();
+        assertThat(coldStorage.exists(second.packId())).isTrue();
+        assertThat(coldStorage.exists(third.packId())).isTrue();
+        try (var files = Files.list(coldDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()).toList())
+                    .containsExactlyInAnyOrder("pack-000002.pack", "pack-000003.pack");
+        }
+        assertThat(List.of(first.packId(), second.packId(), third.packId())).containsExactly(1, 2, 3);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeltaCodecTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deveGerarDeltaPequenoParaAlteracaoLocalizada() throws IOException {
+        byte[] base = random(200_000, 1);
+        byte[] target = base.clone();
+        System.arraycopy(random(500, 2), 0, target, 90_000, 500);
+
+        byte[] delta = encode(base, target);
+
+        assertThat(delta.length).isLessThan(target.length / 50);
+        assertThat(apply(base, delta)).isEqualTo(target);
+    }
+
+    @Test
+    void deveReconstruirConteudoComTrechosInseridosERemovidos() throws IOException {
+        byte[] base = random(100_000, 3);
+        byte[] inserted = random(3_333, 4);
+        byte[] target = concat(
+                Arrays.copyOfRange(base, 0, 40_000),
+                inserted,
+                Arrays.copyOfRange(base, 52_345, base.length));
+
+        byte[] delta = encode(base, target);
+
+        assertThat(delta.length).isLessThan(inserted.length + 2 * DeltaCodec.DEFAULT_BLOCK_SIZE + 200);
+        assertThat(apply(base, delta)).isEqualTo(target);
+    }
+
+    @Test
+    void deveReconstruirConteudoSemNadaEmComum() throws IOException {
+        byte[] base = random(10_000, 5);
+        byte[] target = random(7_777, 6);
+
+        assertThat(apply(base, encode(base, target))).isEqualTo(target);
+    }
+
+    @Test
+    void deveReconstruirAlvoMenorQueUmBloco() throws IOException {
+        byte[] base = random(10_000, 7);
+        byte[] target = Arrays.copyOfRange(base, 100, 600);
+
+        assertThat(apply(base, encode(base, target))).isEqualTo(target);
+    }
+
+    @Test
+    void deveRejeitarBaseDiferenteDaUsadaNaCodificacao() throws IOException {
+        byte[] base = random(10_000, 8);
+        byte[] delta = encode(base, random(10_000, 9));
+
+        assertThatThrownBy(() -> apply(random(9_000, 8), delta))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("expected 10000");
+    }
+
+    private byte[] encode(byte[] base, byte[] target) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeltaCodec.encode(write("base", base), write("target", target), out, DeltaCodec.DEFAULT_BLOCK_SIZE);
+        return out.toByteArray();
+    }
+
+    private byte[] apply(byte[] base, byte[] delta) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeltaCodec.apply(write("base", base), new ByteArrayInputStream(delta), out);
+        return out.toByteArray();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,93 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitSyncerTest {
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private GroupCommitSyncer syncer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        syncer = new GroupCommitSyncer();
+        ReflectionTestUtils.setField(syncer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(syncer, "fsync", true);
+        ReflectionTestUtils.setField(syncer, "groupCommit", true);
+        syncer.init();
+    }
+
+    @Test
+    void deveAtenderGravacoesConcorrentesEmLotes() throws Exception {
+        int writers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                Path file = Files.write(dir.resolve("blob-" + i), new byte[4096]);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 10; round++) {
+                        syncer.sync(List.of(file), List.of(dir));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double requests = meterRegistry.get("storage.fsync.requests").functionCounter().count();
+        double batches = meterRegistry.get("storage.fsync.batches").functionCounter().count();
+        assertThat(requests).isEqualTo(writers * 10);
+        assertThat(batches).isBetween(1.0, requests);
+    }
+
+    @Test
+    void deveRepassarFalhaSemPrenderALideranca() throws IOException {
+        Path missing = dir.resolve("nao-existe");
+
+        assertThatThrownBy(() -> syncer.sync(List.of(), List.of(missing)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("sync");
+
+        // A falha não prende a liderança: o pedido seguinte é atendido normalmente
+        assertThat(meterRegistry.get("storage.fsync.batches").functionCounter().count()).isEqualTo(1);
+        syncer.sync(List.of(), List.of(dir));
+        assertThat(meterRegistry.get("storage.fsync.batches").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void naoDeveSincronizarComFsyncDesligado() throws IOException {
+        ReflectionTestUtils.setField(syncer, "fsync", false);
+
+        syncer.sync(List.of(dir.resolve("nao-existe")), List.of(dir));
+
+        assertThat(meterRegistry.get("storage.fsync.requests").functionCounter().count()).isZero();
+    }
+}
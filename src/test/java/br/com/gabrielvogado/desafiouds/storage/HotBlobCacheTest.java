@@ -0,0 +1,129 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotBlobCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private HotBlobCache cache;
+    private AtomicInteger diskReads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new HotBlobCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 300L);
+        ReflectionTestUtils.setField(cache, "maxEntrySize", 200L);
+        cache.init();
+        diskReads = new AtomicInteger();
+    }
+
+    @Test
+    void deveServirDaMemoriaAPartirDoSegundoDownload() throws IOException {
+        byte[] first = get("template", 100).getContentAsByteArray();
+        byte[] second = get("template", 100).getContentAsByteArray();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(diskReads).hasValue(1);
+        assertThat(meterRegistry.get("blob.cache.requests").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("blob.cache.requests").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("blob.cache.hit.bytes").functionCounter().count()).isEqualTo(100);
+    }
+
+    @Test
+    void naoDeveExpulsarBlobsPopularesPorDownloadsIsolados() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            get("popular-1", 150);
+            get("popular-2", 150);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            get("unico-" + i, 150);
+        }
+
+        diskReads.set(0);
+        get("popular-1", 150);
+        get("popular-2", 150);
+        assertThat(diskReads).hasValue(0);
+        assertThat(cache.size()).isEqualTo(300);
+    }
+
+    @Test
+    void deveLerDoDiscoBlobsMaioresQueOLimiteDeEntrada() throws IOException {
+        get("grande", 250);
+        get("grande", 250);
+
+        assertThat(diskReads).hasValue(2);
+        assertThat(cache.entryCount()).isZero();
+    }
+
+    @Test
+    void deveRemoverEntradaQuandoBlobForApagado() throws IOException {
+        get("template", 100);
+
+        cache.invalidate("template");
+        get("template", 100);
+
+        assertThat(diskReads).hasValue(2);
+    }
+
+    @Test
+    void naoDeveAdmitirBlobInvalidadoDuranteALeitura() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<Resource>> download = executor.submit(() -> cache.get("template", () -> {
+                diskReads.incrementAndGet();
+                loading.countDown();
+                try {
+                    assertThat(invalidated.await(5, TimeUnit.SECONDS)).isTrue();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return Optional.of(new ByteArrayResource(new byte[100]));
+            }));
+
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            cache.invalidate("template");
+            invalidated.countDown();
+
+            assertThat(download.get(5, TimeUnit.SECONDS)).isPresent();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.entryCount()).isZero();
+        get("template", 100);
+        assertThat(diskReads).hasValue(2);
+        assertThat(cache.entryCount()).isEqualTo(1);
+    }
+
+    private Resource get(String key, int length) throws IOException {
+        return cache.get(key, () -> {
+            diskReads.incrementAndGet();
+            byte[] content = new byte[length];
+            content[0] = (byte) key.hashCode();
+            return Optional.of(new ByteArrayResource(content));
+        }).orElseThrow();
+    }
+}
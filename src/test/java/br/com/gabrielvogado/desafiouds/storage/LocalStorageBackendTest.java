@@ -0,0 +1,131 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStorageBackendTest {
+
+    private static final byte[] CONTENT = "%PDF-1.7 blob".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void deveGravarChaveEmDiretoriosDeShard() throws IOException {
+        LocalStorageBackend backend = backend(root.resolve("uploads"), "");
+        Path source = Files.write(root.resolve("source.tmp"), CONTENT);
+
+        backend.put("abc123", source);
+
+        Path stored = backend.locate("abc123");
+        Path relative = root.resolve("uploads").relativize(stored);
+        assertThat(relative.getNameCount()).isEqualTo(3);
+        assertThat(relative.getName(0).toString()).hasSize(2);
+        assertThat(relative.getName(1).toString()).hasSize(2);
+        assertThat(stored).hasBinaryContent(CONTENT);
+        assertThat(source).exists();
+        assertThat(backend.get("abc123")).isPresent();
+    }
+
+    @Test
+    void deveEncontrarEApagarArquivoNoLayoutPlanoAntigo() throws IOException {
+        Path uploads = Files.createDirectories(root.resolve("uploads"));
+        Files.write(uploads.resolve("legacy-key"), CONTENT);
+        LocalStorageBackend backend = backend(uploads, "");
+
+        assertThat(backend.exists("legacy-key")).isTrue();
+        assertThat(backend.delete("legacy-key")).isTrue();
+        assertThat(backend.exists("legacy-key")).isFalse();
+    }
+
+    @Test
+    void deveRedistribuirPoucasChavesAoIncluirPontoDeMontagem() {
+        String twoMounts = root.resolve("a") + "," + root.resolve("b");
+        String threeMounts = twoMounts + "," + root.resolve("c");
+        LocalStorageBackend before = backend(root.resolve("uploads"), twoMounts);
+        LocalStorageBackend after = backend(root.resolve("uploads"), threeMounts);
+
+        long moved = IntStream.range(0, 3000)
+                .mapToObj(i -> UUID.nameUUIDFromBytes(("key-" + i).getBytes()).toString())
+                .filter(key -> !before.locate(key).equals(after.locate(key)))
+                .count();
+
+        // O ideal é 1/3 das chaves; sem hashing consistente seriam cerca de 2/3
+        assertThat(moved).isBetween(600L, 1400L);
+    }
+
+    @Test
+    void deveMigrarLayoutPlanoEChavesNoPontoDeMontagemErrado() throws IOException {
+        Path mountA = Files.createDirectories(root.resolve("a"));
+        Path mountB = Files.createDirectories(root.resolve("b"));
+        LocalStorageBackend singleMount = backend(mountA, mountA.toString());
+        LocalStorageBackend backend = backend(mountA, mountA + "," + mountB);
+
+        for (int i = 0; i < 20; i++) {
+            Files.write(mountA.resolve("flat-" + i), CONTENT);
+            Path sharded = singleMount.locate("sharded-" + i);
+            Files.createDirectories(sharded.getParent());
+            Files.write(sharded, CONTENT);
+        }
+        Files.createDirectories(mountA.resolve(".staging"));
+        Files.write(mountA.resolve(".staging").resolve("upload.tmp"), CONTENT);
+
+        StorageLayoutMigrator migrator = new StorageLayoutMigrator();
+        ReflectionTestUtils.setField(migrator, "storageBackend", backend);
+        int moved = migrator.migrate();
+
+        assertThat(moved).isGreaterThanOrEqualTo(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(backend.locate("flat-" + i)).hasBinaryContent(CONTENT);
+            assertThat(backend.locate("sharded-" + i)).hasBinaryContent(CONTENT);
+        }
+        assertThat(mountA.resolve(".staging").resolve("upload.tmp")).exists();
+        assertThat(migrator.migrate()).isZero();
+    }
+
+    @Test
+    void deveMigrarLayoutPlanoAntigoForaDosPontosDeMontagem() throws IOException {
+        Path uploads = Files.createDirectories(root.resolve("uploads"));
+        String mounts = root.resolve("a") + "," + root.resolve("b");
+        LocalStorageBackend backend = backend(uploads, mounts);
+        for (int i = 0; i < 10; i++) {
+            Files.write(uploads.resolve("legacy-" + i), CONTENT);
+        }
+        Files.createDirectories(uploads.resolve(".staging"));
+        Files.write(uploads.resolve(".staging").resolve("upload.tmp"), CONTENT);
+        Files.write(uploads.resolve(".hidden"), CONTENT);
+
+        StorageLayoutMigrator migrator = new StorageLayoutMigrator();
+        ReflectionTestUtils.setField(migrator, "storageBackend", backend);
+
+        assertThat(migrator.migrate()).isEqualTo(10);
+        for (int i = 0; i < 10; i++) {
+            assertThat(uploads.resolve("legacy-" + i)).doesNotExist();
+            assertThat(backend.locate("legacy-" + i)).hasBinaryContent(CONTENT);
+            assertThat(backend.locate("legacy-" + i).startsWith(uploads)).isFalse();
+        }
+        assertThat(uploads.resolve(".staging").resolve("upload.tmp")).exists();
+        assertThat(uploads.resolve(".hidden")).exists();
+        assertThat(migrator.migrate()).isZero();
+    }
+
+    private LocalStorageBackend backend(Path storagePath, String mounts) {
+        LocalStorageBackend backend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(backend, "syncer", new GroupCommitSyncer());
+        ReflectionTestUtils.setField(backend, "storagePath", storagePath.toString());
+        ReflectionTestUtils.setField(backend, "mounts", mounts);
+        ReflectionTestUtils.setField(backend, "virtualNodes", 128);
+        backend.init();
+        return backend;
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RenditionRendererTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deveReduzirImagemMantendoProporcao() throws IOException {
+        Path source = image("foto.jpg", "jpeg", 2000, 1000);
+
+        BufferedImage preview = RenditionRenderer.render(source, "image/jpeg", 400, 100_000_000);
+        BufferedImage thumbnail = RenditionRenderer.scale(preview, 100, "image/jpeg");
+
+        assertThat(preview.getWidth()).isEqualTo(400);
+        assertThat(preview.getHeight()).isEqualTo(200);
+        assertThat(thumbnail.getWidth()).isEqualTo(100);
+        assertThat(thumbnail.getHeight()).isEqualTo(50);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RenditionRenderer.write(thumbnail, "image/jpeg", out);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(decoded.getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    void deveRenderizarPrimeiraPaginaDoPdf() throws IOException {
+        Path source = dir.resolve("documento.pdf");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(source.toFile());
+        }
+
+        BufferedImage preview = RenditionRenderer.render(source, "application/pdf", 500, 100_000_000);
+
+        assertThat(preview.getHeight()).isEqualTo(500);
+        assertThat(preview.getWidth()).isLessThan(500);
+        assertThat(RenditionRenderer.outputType("application/pdf")).isEqualTo("image/jpeg");
+    }
+
+    @Test
+    void deveRecusarImagemComMaisPixelsQueOLimite() throws IOException {
+        Path source = image("grande.png", "png", 300, 300);
+
+        assertThatThrownBy(() -> RenditionRenderer.render(source, "image/png", 100, 50_000))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("too large");
+    }
+
+    private Path image(String name, String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Path file = dir.resolve(name);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.gabrielvogado.desafiouds.storage;
+
+import br.com.gabrielvogado.desafiouds.exception.InvalidFileException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadPipelineTest {
+
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Test
+    void deveCopiarConteudoCalculandoTamanhoEDigest() throws Exception {
+        byte[] content = pngWithPayload(3 * UploadPipeline.BUFFER_SIZE + 17);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        UploadResult result = UploadPipeline.transfer(new ByteArrayInputStream(content), out, "image/png", Long.MAX_VALUE);
+
+        assertThat(out.toByteArray()).isEqualTo(content);
+        assertThat(result.getSize()).isEqualTo(content.length);
+        assertThat(result.getContentType()).isEqualTo("image/png");
+        assertThat(result.getSha256()).isEqualTo(
+                HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+    }
+
+    @Test
+    void deveDetectarAssinaturaMesmoComLeiturasFragmentadas() throws IOException {
+        byte[] content = pngWithPayload(32);
+        InputStream oneByteAtATime = new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        UploadResult result = UploadPipeline.transfer(oneByteAtATime, new ByteArrayOutputStream(), "image/png", 1024);
+
+        assertThat(result.getContentType()).isEqualTo("image/png");
+        assertThat(result.getSize()).isEqualTo(content.length);
+    }
+
+    @Test
+    void deveInterromperQuandoExcederTamanhoMaximo() {
+        byte[] content = pngWithPayload(UploadPipeline.BUFFER_SIZE * 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> UploadPipeline.transfer(new ByteArrayInputStream(content), out, "image/png", 1000))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("File size exceeds maximum");
+        assertThat(out.size()).isLessThanOrEqualTo(UploadPipeline.BUFFER_SIZE);
+    }
+
+    @Test
+    void deveRejeitarArquivoVazio() {
+        assertThatThrownBy(() -> UploadPipeline.transfer(
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), "application/pdf", 1024))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("File is empty");
+    }
+
+    @Test
+    void deveRejeitarConteudoSemAssinaturaConhecida() {
+        byte[] content = "texto simples".getBytes();
+
+        assertThatThrownBy(() -> UploadPipeline.transfer(
+                new ByteArrayInputStream(content), new ByteArrayOutputStream(), "application/pdf", 1024))
+                .isInstanceOf(InvalidFileException.class)
+                .hasMessageContaining("does not match any allowed type");
+    }
+
+    private static byte[] pngWithPayload(int payloadSize) {
+        byte[] content = new byte[PNG_MAGIC.length + payloadSize];
+        new Random(42).nextBytes(content);
+        System.arraycopy(PNG_MAGIC, 0, content, 0, PNG_MAGIC.length);
+        return content;
+    }
+}